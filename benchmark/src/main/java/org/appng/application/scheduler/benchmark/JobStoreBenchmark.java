@@ -0,0 +1,353 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.appng.application.scheduler.quartz.CompletionNotifyingDataSource;
+import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.Constants;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
+import org.quartz.simpl.SimpleClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.quartz.utils.ConnectionProvider;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * JMH benchmarks for the Quartz {@link JobStoreTX} as it is configured by the scheduler, i.e. using the
+ * {@link DriverDelegateWrapper}. By default, an embedded in-memory HSQLDB is used, but any JDBC URL can be passed
+ * using {@code -p url=...} (the driver then has to be on the classpath).
+ * <p>
+ * The store is filled with {@code jobs} durable jobs having {@code triggersPerJob} simple triggers each. Besides the
+ * full acquire/fire/complete cycle of the scheduler thread, some of the hot paths of the delegate are measured in
+ * isolation.
+ * <p>
+ * Run {@link #main(String[])} to get throughput (ops/s) and sampled latencies (including p99) in one go.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JobStoreBenchmark {
+
+	private static final String SCHEDULER_NAME = "Scheduler_benchmark";
+	private static final String DATASOURCE_NAME = "benchmarkDS";
+	private static final String JOB_GROUP = "benchmark";
+	private static final long FAR_FUTURE = TimeUnit.DAYS.toMillis(365);
+
+	@Param("jdbc:hsqldb:mem:benchmark")
+	String url;
+
+	@Param("sa")
+	String user;
+
+	@Param("")
+	String password;
+
+	@Param("org.quartz.impl.jdbcjobstore.HSQLDBDelegate")
+	String delegate;
+
+	/** classpath resource containing the Quartz DDL, leave empty if the schema already exists */
+	@Param("org/quartz/impl/jdbcjobstore/tables_hsqldb.sql")
+	String schema;
+
+	@Param({ "1000", "5000" })
+	int jobs;
+
+	@Param("2")
+	int triggersPerJob;
+
+	@Param({ "1", "10" })
+	int batchSize;
+
+	/** the maximum number of job details and calendars cached by the delegate, 0 to disable caching */
+	@Param("0")
+	int jobDetailCacheSize;
+
+	private HikariDataSource dataSource;
+	private JobStoreTX jobStore;
+	private DriverDelegateWrapper driverDelegate;
+	private Connection connection;
+	private List<JobKey> jobKeys;
+	private List<TriggerKey> triggerKeys;
+	private final AtomicLong counter = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl(url);
+		config.setUsername(user);
+		config.setPassword(password);
+		config.setMaximumPoolSize(5);
+		dataSource = new HikariDataSource(config);
+		createSchema();
+
+		// like the non-transactional data source of the scheduler
+		DataSource jobStoreDataSource = new CompletionNotifyingDataSource(dataSource);
+		DBConnectionManager.getInstance().addConnectionProvider(DATASOURCE_NAME, new ConnectionProvider() {
+			public Connection getConnection() throws SQLException {
+				return jobStoreDataSource.getConnection();
+			}
+
+			public void shutdown() {
+			}
+
+			public void initialize() {
+			}
+		});
+
+		ClassLoadHelper loadHelper = new SimpleClassLoadHelper();
+		String initString = "delegate=" + delegate;
+		if (jobDetailCacheSize > 0) {
+			initString += "|" + DriverDelegateWrapper.JOB_DETAIL_CACHE_SIZE + "=" + jobDetailCacheSize;
+		}
+
+		jobStore = new JobStoreTX();
+		jobStore.setDataSource(DATASOURCE_NAME);
+		jobStore.setInstanceId("benchmark");
+		jobStore.setInstanceName(SCHEDULER_NAME);
+		jobStore.setDriverDelegateClass(DriverDelegateWrapper.class.getName());
+		jobStore.setDriverDelegateInitString(initString);
+		jobStore.setMisfireThreshold(FAR_FUTURE);
+		jobStore.initialize(loadHelper, new NoOpSignaler());
+		jobStore.clearAllSchedulingData();
+		storeJobs();
+		jobStore.schedulerStarted();
+
+		driverDelegate = new DriverDelegateWrapper();
+		driverDelegate.initialize(LoggerFactory.getLogger(getClass()), Constants.DEFAULT_TABLE_PREFIX, SCHEDULER_NAME,
+				"benchmark", loadHelper, false, initString);
+		connection = dataSource.getConnection();
+		connection.setAutoCommit(true);
+	}
+
+	private void createSchema() throws IOException, SQLException {
+		try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+			if (conn.getMetaData().getDatabaseProductName().toLowerCase().contains("hsql")) {
+				// same as in SchedulerConfig
+				stmt.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+			}
+			if (StringUtils.isBlank(schema)) {
+				return;
+			}
+			String ddl;
+			try (InputStream is = getClass().getClassLoader().getResourceAsStream(schema)) {
+				if (null == is) {
+					throw new IOException("schema " + schema + " not found on classpath");
+				}
+				ddl = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)).lines()
+						.collect(Collectors.joining("\n"));
+			}
+			StringBuilder lines = new StringBuilder();
+			for (String line : ddl.split("\\r?\\n")) {
+				if (!line.trim().startsWith("--")) {
+					lines.append(line).append('\n');
+				}
+			}
+			for (String sql : lines.toString().split(";")) {
+				if (StringUtils.isNotBlank(sql)) {
+					stmt.execute(sql.trim());
+				}
+			}
+		}
+	}
+
+	private void storeJobs() throws SchedulerException {
+		jobKeys = new ArrayList<>(jobs);
+		triggerKeys = new ArrayList<>(jobs * triggersPerJob);
+		Map<JobDetail, Set<? extends Trigger>> jobsAndTriggers = new HashMap<>();
+		for (int i = 0; i < jobs; i++) {
+			JobDetail jobDetail = JobBuilder.newJob(NoOpJob.class).withIdentity("job-" + i, JOB_GROUP).storeDurably()
+					.usingJobData("index", i).usingJobData("description", "benchmark job " + i).build();
+			Set<Trigger> triggers = new HashSet<>();
+			for (int t = 0; t < triggersPerJob; t++) {
+				Trigger trigger = TriggerBuilder.newTrigger().withIdentity("trigger-" + i + "-" + t, JOB_GROUP)
+						.forJob(jobDetail).startNow()
+						.withSchedule(SimpleScheduleBuilder.repeatMinutelyForever()
+								.withMisfireHandlingInstructionNextWithRemainingCount())
+						.build();
+				// usually done by the QuartzScheduler when scheduling a job
+				((OperableTrigger) trigger).computeFirstFireTime(null);
+				triggers.add(trigger);
+				triggerKeys.add(trigger.getKey());
+			}
+			jobsAndTriggers.put(jobDetail, triggers);
+			jobKeys.add(jobDetail.getKey());
+		}
+		jobStore.storeJobsAndTriggers(jobsAndTriggers, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		if (null != connection) {
+			connection.close();
+		}
+		if (null != jobStore) {
+			jobStore.shutdown();
+		}
+		if (null != dataSource) {
+			dataSource.close();
+		}
+	}
+
+	/**
+	 * The work of the {@code QuartzSchedulerThread} for one batch: acquire the next triggers, fire them and mark the
+	 * executions as completed.
+	 */
+	@Benchmark
+	public int acquireFireComplete(Blackhole blackhole) throws SchedulerException {
+		List<OperableTrigger> acquired = jobStore.acquireNextTriggers(System.currentTimeMillis() + FAR_FUTURE,
+				batchSize, 0L);
+		List<TriggerFiredResult> fired = jobStore.triggersFired(acquired);
+		for (TriggerFiredResult result : fired) {
+			TriggerFiredBundle bundle = result.getTriggerFiredBundle();
+			if (null != bundle) {
+				blackhole.consume(bundle.getJobDetail());
+				jobStore.triggeredJobComplete(bundle.getTrigger(), bundle.getJobDetail(),
+						CompletedExecutionInstruction.NOOP);
+			}
+		}
+		return fired.size();
+	}
+
+	/** Loads a {@link JobDetail}, which goes through {@link DriverDelegateWrapper#selectJobDetail}. */
+	@Benchmark
+	public JobDetail retrieveJob() throws SchedulerException {
+		return jobStore.retrieveJob(nextJobKey());
+	}
+
+	@Benchmark
+	public OperableTrigger retrieveTrigger() throws SchedulerException {
+		return jobStore.retrieveTrigger(nextTriggerKey());
+	}
+
+	@Benchmark
+	public int updateTriggerState() throws SQLException {
+		return driverDelegate.updateTriggerState(connection, nextTriggerKey(), Constants.STATE_WAITING);
+	}
+
+	@Benchmark
+	public int insertAndDeleteFiredTrigger() throws Exception {
+		TriggerKey triggerKey = nextTriggerKey();
+		OperableTrigger trigger = driverDelegate.selectTrigger(connection, triggerKey);
+		trigger.setFireInstanceId(UUID.randomUUID().toString());
+		JobDetail jobDetail = driverDelegate.selectJobDetail(connection, trigger.getJobKey(),
+				new SimpleClassLoadHelper());
+		driverDelegate.insertFiredTrigger(connection, trigger, Constants.STATE_EXECUTING, jobDetail);
+		return driverDelegate.deleteFiredTrigger(connection, trigger.getFireInstanceId());
+	}
+
+	private JobKey nextJobKey() {
+		return jobKeys.get((int) (counter.getAndIncrement() % jobKeys.size()));
+	}
+
+	private TriggerKey nextTriggerKey() {
+		return triggerKeys.get((int) (counter.getAndIncrement() % triggerKeys.size()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = JobStoreBenchmark.class.getSimpleName();
+		Options throughput = new OptionsBuilder().include(include).mode(Mode.Throughput)
+				.timeUnit(TimeUnit.SECONDS).build();
+		new Runner(throughput).run();
+
+		Options latency = new OptionsBuilder().include(include).mode(Mode.SampleTime)
+				.timeUnit(TimeUnit.MICROSECONDS).build();
+		new Runner(latency).run();
+	}
+
+	public static class NoOpJob implements Job {
+		public void execute(JobExecutionContext context) {
+		}
+	}
+
+	static class NoOpSignaler implements SchedulerSignaler {
+		public void notifyTriggerListenersMisfired(Trigger trigger) {
+		}
+
+		public void notifySchedulerListenersFinalized(Trigger trigger) {
+		}
+
+		public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+		}
+
+		public void signalSchedulingChange(long candidateNewNextFireTime) {
+		}
+
+		public void notifySchedulerListenersError(String message, SchedulerException jpe) {
+		}
+	}
+
+}
@@ -44,4 +44,11 @@ public class Constants {
 	public static final String THRESHOLD_ERROR = "thresholdError";
 	public static final String THRESHOLD_WARN = "thresholdWarn";
 
+	public static final String INDEX_INCREMENTAL = "incremental";
+	public static final String INDEX_FULL_REBUILD_DAYS = "fullRebuildDays";
+	public static final String INDEX_PARALLELISM = "parallelism";
+	public static final String INDEX_READ_RATE = "readRate";
+	public static final String INDEX_PACING = "pacing";
+	public static final String INDEX_TIME_BUDGET = "timeBudget";
+
 }
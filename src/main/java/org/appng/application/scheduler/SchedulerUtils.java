@@ -15,6 +15,9 @@
  */
 package org.appng.application.scheduler;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -24,7 +27,10 @@ import org.appng.api.FieldProcessor;
 import org.appng.api.Request;
 import org.appng.api.ScheduledJob;
 import org.appng.api.model.Site;
+import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.appng.application.scheduler.quartz.JobOverview;
 import org.appng.application.scheduler.quartz.SchedulerJobDetail;
+import org.appng.application.scheduler.service.SiteVersions;
 import org.appng.xml.platform.FieldDef;
 import org.quartz.CronExpression;
 import org.quartz.CronScheduleBuilder;
@@ -32,6 +38,7 @@ import org.quartz.CronTrigger;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
@@ -39,6 +46,8 @@ import org.quartz.Trigger.TriggerState;
 import org.quartz.TriggerBuilder;
 import org.quartz.TriggerKey;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.utils.DBConnectionManager;
+import org.springframework.scheduling.quartz.LocalDataSourceJobStore;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -69,6 +78,7 @@ public class SchedulerUtils {
 					.withIdentity(new TriggerKey(id + "-simpletrigger-" + hashCode(), jobDetail.getKey().getGroup()))
 					.startNow().forJob(key).build();
 			scheduler.scheduleJob(trigger);
+			SiteVersions.changed(key.getGroup());
 			log.info("Created trigger '{}' for job '{}' with start time '{}'", trigger.getKey(),
 					jobDetail.getJobDataMap().getString(Constants.JOB_SCHEDULED_JOB), trigger.getStartTime());
 			addMessage(request, fp, MessageConstants.JOB_RUNNING, false, false, null, id);
@@ -95,6 +105,7 @@ public class SchedulerUtils {
 		if (cronTrigger != null) {
 			cronTrigger = createCronTrigger(jobDetail, cronExpression, cronTrigger.getKey());
 			scheduler.rescheduleJob(cronTrigger.getKey(), cronTrigger);
+			SiteVersions.changed(jobDetail.getKey().getGroup());
 		}
 		saveJob(jobDetail);
 		addMessage(request, fp, MessageConstants.JOB_UPDATED, false, false, null, id);
@@ -110,6 +121,30 @@ public class SchedulerUtils {
 		return scheduler.getTriggersOfJob(jobDetail.getKey());
 	}
 
+	/**
+	 * Reads the jobs of the given group along with their triggers in bulk, directly from the job store.
+	 * 
+	 * @param group
+	 *              the job group
+	 * @return the jobs, or {@code null} if the job store does not support bulk loading
+	 * @throws SchedulerException
+	 *                            if an error occurs while reading the jobs
+	 */
+	public List<JobOverview> getJobOverviews(String group) throws SchedulerException {
+		String schedulerName = scheduler.getSchedulerName();
+		DriverDelegateWrapper delegate = DriverDelegateWrapper.getBulkLoadingDelegate(schedulerName);
+		if (null == delegate) {
+			return null;
+		}
+		// not taking part in a transaction, so the connection can be closed
+		String dataSource = LocalDataSourceJobStore.NON_TX_DATA_SOURCE_PREFIX + schedulerName;
+		try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource)) {
+			return delegate.selectJobOverviews(connection, group);
+		} catch (SQLException | IOException | ClassNotFoundException e) {
+			throw new JobPersistenceException("error while reading jobs of group " + group, e);
+		}
+	}
+
 	public boolean isRunning(JobDetail jobDetail) throws SchedulerException {
 		List<TriggerKey> triggerKeys = getTriggers(jobDetail).stream().map(Trigger::getKey)
 				.collect(Collectors.toList());
@@ -135,6 +170,7 @@ public class SchedulerUtils {
 			saveJob(jobDetail);
 			boolean unscheduled = scheduler.unscheduleJob(cronTrigger.getKey());
 			if (unscheduled) {
+				SiteVersions.changed(jobDetail.getKey().getGroup());
 				log.info("Deleted trigger '{}' for job '{}' with expression '{}'", cronTrigger.getKey(),
 						jobDetail.getKey(), cronExpression);
 				addMessage(request, fp, MessageConstants.JOB_UNSCHEDULED, false, false, null, id);
@@ -150,6 +186,7 @@ public class SchedulerUtils {
 		CronTrigger cronTrigger = createCronTrigger(jobDetail, cronExpression, id, jobDesc, triggerGroup);
 		if (cronTrigger != null) {
 			scheduler.scheduleJob(cronTrigger);
+			SiteVersions.changed(jobDetail.getKey().getGroup());
 			log.info("Created trigger '{}' for job '{}' with expression '{}'", cronTrigger.getKey(), jobDetail.getKey(),
 					cronExpression);
 			addMessage(request, fp, MessageConstants.JOB_SCHEDULED_EXPR, false, false, null, id, cronExpression);
@@ -182,6 +219,7 @@ public class SchedulerUtils {
 		JobKey key = jobDetail.getKey();
 		if (!isRunning(jobDetail)) {
 			scheduler.deleteJob(key);
+			SiteVersions.changed(key.getGroup());
 			log.info("Deleted job: {}", jobDetail.getKey());
 			addMessage(request, fp, MessageConstants.JOB_DELETED, false, false, null, id);
 		} else {
@@ -263,6 +301,7 @@ public class SchedulerUtils {
 	public void saveJob(JobDetail jobDetail) throws SchedulerException {
 		boolean isExisting = scheduler.checkExists(jobDetail.getKey());
 		scheduler.addJob(jobDetail, true);
+		SiteVersions.changed(jobDetail.getKey().getGroup());
 		if (!isExisting) {
 			log.info("Created job: {}", jobDetail.getKey());
 		} else {
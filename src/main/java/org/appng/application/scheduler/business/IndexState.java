@@ -16,16 +16,23 @@
 package org.appng.application.scheduler.business;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
 
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.NoLockFactory;
 import org.appng.api.DataContainer;
 import org.appng.api.DataProvider;
 import org.appng.api.Environment;
@@ -34,17 +41,19 @@ import org.appng.api.Options;
 import org.appng.api.Platform;
 import org.appng.api.Request;
 import org.appng.api.Scope;
-import org.appng.api.SiteProperties;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
 import org.appng.api.model.Site.SiteState;
 import org.appng.application.scheduler.Constants;
 import org.appng.application.scheduler.SchedulerUtils;
 import org.appng.application.scheduler.job.IndexJob;
+import org.appng.application.scheduler.service.IndexStatistics;
+import org.appng.application.scheduler.service.IndexStatistics.Stats;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import lombok.Getter;
@@ -52,84 +61,138 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * A {@link DataProvider} showing the state of the Lucene Index written by {@link IndexJob}.
+ * A {@link DataProvider} showing the state of the Lucene Index written by {@link IndexJob}. The sites are processed
+ * in parallel, the statistics of each index are taken from {@link IndexStatistics}. A site whose state could not be
+ * read within {@code indexStateTimeout} milliseconds is shown with an error.
  */
 @Slf4j
 @Component
 public class IndexState extends SchedulerAware implements DataProvider {
 
-	public IndexState(Scheduler scheduler) {
+	private final IndexStatistics indexStatistics;
+	private final int threads;
+	private final long timeout;
+	private ExecutorService executor;
+
+	public IndexState(Scheduler scheduler, IndexStatistics indexStatistics,
+			@Value("${indexStateThreads:8}") int threads, @Value("${indexStateTimeout:5000}") long timeout) {
 		super(scheduler);
+		this.indexStatistics = indexStatistics;
+		this.threads = Math.max(1, threads);
+		this.timeout = timeout;
 	}
 
 	@Override
 	public DataContainer getData(Site site, Application application, Environment env, Options options, Request request,
 			FieldProcessor fp) {
 		Map<String, Site> siteMap = env.getAttribute(Scope.PLATFORM, Platform.Environment.SITES);
-		List<IndexInfo> data = new ArrayList<IndexInfo>();
-
-		new TreeSet<>(siteMap.keySet()).forEach(siteName -> {
+		List<String> siteNames = new ArrayList<>();
+		List<Callable<IndexInfo>> tasks = new ArrayList<>();
+		for (String siteName : new TreeSet<>(siteMap.keySet())) {
 			Site theSite = siteMap.get(siteName);
-
 			Application schedulerApp = theSite.getApplication(application.getName());
 			if (null != schedulerApp) {
-
-				IndexInfo indexInfo = new IndexInfo(siteName);
-				indexInfo.siteRunning = theSite.hasState(SiteState.STARTED);
-
-				try {
-					if (indexInfo.siteRunning) {
-
-						Scheduler scheduler = schedulerApp.getBean(Scheduler.class);
-						SchedulerUtils schedulerUtils = new SchedulerUtils(scheduler, fp, request);
-
-						JobKey jobKey = SchedulerUtils.getJobKey(siteName, application.getName(), "indexJob");
-						JobDetail jobDetail = schedulerUtils.getJobDetail(jobKey);
-
-						Map<String, Object> indexJobData = jobDetail.getJobDataMap();
-						indexInfo.indexEnabled = (Boolean) indexJobData.get(Constants.JOB_ENABLED);
-						indexInfo.cronExpression = (String) indexJobData.get(Constants.JOB_CRON_EXPRESSION);
-
-						indexInfo.link = String.format(
-								"/manager/%s/appng-scheduler/jobs/update/appng-scheduler_indexJob#sections_jobs=tab_update",
-								siteName);
-					}
-				} catch (SchedulerException e) {
-					log.error("error reading index for site " + siteName, e);
-				}
-
-				String siteRoot = theSite.getProperties().getString(SiteProperties.SITE_ROOT_DIR);
-				String indexdir = theSite.getProperties().getString(SiteProperties.INDEX_DIR);
-				File indexPath = new File(siteRoot, indexdir);
-				indexInfo.location = indexPath.getAbsolutePath();
-
-				if (indexPath.exists()) {
-					try (FSDirectory dir = FSDirectory.open(indexPath.toPath(), NoLockFactory.INSTANCE);
-							DirectoryReader reader = DirectoryReader.open(dir)) {
-						for (File file : indexPath.listFiles()) {
-							indexInfo.files++;
-							indexInfo.size += file.length();
-							if (null == indexInfo.lastModified
-									|| file.lastModified() > indexInfo.lastModified.getTime()) {
-								indexInfo.lastModified = new Date(file.lastModified());
-							}
-						}
-						indexInfo.numDocs = reader.numDocs();
-					} catch (IOException e) {
-						log.error("error reading index for site " + siteName, e);
-					}
-				}
-				indexInfo.size %= 1000; // size in KB
-				data.add(indexInfo);
+				siteNames.add(siteName);
+				tasks.add(() -> getIndexInfo(theSite, schedulerApp, application, request, fp));
 			}
+		}
 
-		});
+		List<IndexInfo> data = new ArrayList<IndexInfo>();
+		try {
+			// tasks not completed within the timeout are cancelled
+			List<Future<IndexInfo>> results = getExecutor().invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+			for (int i = 0; i < results.size(); i++) {
+				data.add(getResult(siteNames.get(i), results.get(i)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 
 		DataContainer dataContainer = new DataContainer(fp);
 		dataContainer.setItems(data);
 		return dataContainer;
 	}
 
+	private IndexInfo getResult(String siteName, Future<IndexInfo> result) throws InterruptedException {
+		try {
+			return result.get();
+		} catch (CancellationException e) {
+			log.warn("reading the index state of site {} took longer than {}ms", siteName, timeout);
+			return failed(siteName, String.format("timeout after %sms", timeout));
+		} catch (ExecutionException e) {
+			log.error("error reading index state of site " + siteName, e.getCause());
+			return failed(siteName, e.getCause().getMessage());
+		}
+	}
+
+	private IndexInfo failed(String siteName, String error) {
+		IndexInfo indexInfo = new IndexInfo(siteName);
+		indexInfo.error = error;
+		return indexInfo;
+	}
+
+	private IndexInfo getIndexInfo(Site theSite, Application schedulerApp, Application application, Request request,
+			FieldProcessor fp) {
+		String siteName = theSite.getName();
+		IndexInfo indexInfo = new IndexInfo(siteName);
+		indexInfo.siteRunning = theSite.hasState(SiteState.STARTED);
+
+		try {
+			if (indexInfo.siteRunning) {
+
+				Scheduler scheduler = schedulerApp.getBean(Scheduler.class);
+				SchedulerUtils schedulerUtils = new SchedulerUtils(scheduler, fp, request);
+
+				JobKey jobKey = SchedulerUtils.getJobKey(siteName, application.getName(), "indexJob");
+				JobDetail jobDetail = schedulerUtils.getJobDetail(jobKey);
+
+				Map<String, Object> indexJobData = jobDetail.getJobDataMap();
+				indexInfo.indexEnabled = (Boolean) indexJobData.get(Constants.JOB_ENABLED);
+				indexInfo.cronExpression = (String) indexJobData.get(Constants.JOB_CRON_EXPRESSION);
+
+				indexInfo.link = String.format(
+						"/manager/%s/appng-scheduler/jobs/update/appng-scheduler_indexJob#sections_jobs=tab_update",
+						siteName);
+			}
+		} catch (SchedulerException e) {
+			log.error("error reading index for site " + siteName, e);
+		}
+
+		File indexPath = IndexStatistics.getIndexPath(theSite);
+		indexInfo.location = indexPath.getAbsolutePath();
+		Stats stats = indexStatistics.get(indexPath);
+		if (null != stats) {
+			indexInfo.files = stats.getFiles();
+			indexInfo.size = stats.getSize() / 1000; // size in KB
+			indexInfo.lastModified = stats.getLastModified();
+			indexInfo.numDocs = stats.getNumDocs();
+		}
+		return indexInfo;
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (null == executor) {
+			AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), r -> {
+						Thread thread = new Thread(r, "IndexState-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (null != executor) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
 	@Getter
 	@RequiredArgsConstructor
 	public static class IndexInfo {
@@ -143,6 +206,7 @@ public class IndexState extends SchedulerAware implements DataProvider {
 		int files = 0;
 		Date lastModified;
 		String link;
+		String error;
 	}
 
 }
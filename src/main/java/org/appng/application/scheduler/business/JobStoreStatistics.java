@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.business;
+
+import java.util.Collections;
+
+import org.appng.api.ActionProvider;
+import org.appng.api.DataContainer;
+import org.appng.api.DataProvider;
+import org.appng.api.Environment;
+import org.appng.api.FieldProcessor;
+import org.appng.api.Options;
+import org.appng.api.Request;
+import org.appng.api.model.Application;
+import org.appng.api.model.Site;
+import org.appng.application.scheduler.MessageConstants;
+import org.appng.application.scheduler.quartz.DelegateStatistics;
+import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link DataProvider} showing the {@link DelegateStatistics} of the Quartz job store, if enabled by the application
+ * property {@code jobStoreStatistics}. As an {@link ActionProvider}, it resets the statistics.
+ */
+@Slf4j
+@Component
+public class JobStoreStatistics extends SchedulerAware implements DataProvider, ActionProvider<Void> {
+
+	public JobStoreStatistics(Scheduler scheduler) {
+		super(scheduler);
+	}
+
+	@Override
+	public DataContainer getData(Site site, Application application, Environment env, Options options, Request request,
+			FieldProcessor fp) {
+		DelegateStatistics statistics = getStatistics();
+		DataContainer dataContainer = new DataContainer(fp);
+		dataContainer.setItems(null == statistics ? Collections.emptyList() : statistics.getMethods());
+		return dataContainer;
+	}
+
+	@Override
+	public void perform(Site site, Application application, Environment environment, Options options,
+			Request request, Void formBean, FieldProcessor fp) {
+		DelegateStatistics statistics = getStatistics();
+		if (null != statistics) {
+			statistics.reset();
+			fp.addOkMessage(request.getMessage(MessageConstants.JOB_STORE_STATISTICS_RESET_DONE));
+		}
+	}
+
+	private DelegateStatistics getStatistics() {
+		try {
+			return DriverDelegateWrapper.getStatistics(scheduler.getSchedulerName());
+		} catch (SchedulerException e) {
+			log.error("error retrieving job store statistics", e);
+			return null;
+		}
+	}
+
+}
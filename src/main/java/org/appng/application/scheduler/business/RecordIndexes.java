@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.business;
+
+import org.appng.api.ActionProvider;
+import org.appng.api.DataContainer;
+import org.appng.api.DataProvider;
+import org.appng.api.Environment;
+import org.appng.api.FieldProcessor;
+import org.appng.api.Options;
+import org.appng.api.Request;
+import org.appng.api.model.Application;
+import org.appng.api.model.Site;
+import org.appng.application.scheduler.MessageConstants;
+import org.appng.application.scheduler.service.RecordIndexService;
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@link DataProvider} showing the indexes of the job record table, as provided by {@link RecordIndexService}. As an
+ * {@link ActionProvider}, it creates the index serving the record queries.
+ */
+@Component
+public class RecordIndexes implements DataProvider, ActionProvider<Void> {
+
+	private final RecordIndexService recordIndexService;
+
+	public RecordIndexes(RecordIndexService recordIndexService) {
+		this.recordIndexService = recordIndexService;
+	}
+
+	@Override
+	public DataContainer getData(Site site, Application application, Environment env, Options options, Request request,
+			FieldProcessor fp) {
+		DataContainer dataContainer = new DataContainer(fp);
+		dataContainer.setItems(recordIndexService.getIndexes());
+		return dataContainer;
+	}
+
+	@Override
+	public void perform(Site site, Application application, Environment environment, Options options,
+			Request request, Void formBean, FieldProcessor fp) {
+		if (recordIndexService.hasIndex()) {
+			fp.addNoticeMessage(request.getMessage(MessageConstants.RECORD_INDEXES_EXISTS));
+		} else if (recordIndexService.createIndex()) {
+			fp.addOkMessage(request.getMessage(MessageConstants.RECORD_INDEXES_CREATED));
+		} else {
+			fp.addErrorMessage(request.getMessage(MessageConstants.RECORD_INDEXES_CREATE_FAILED));
+		}
+	}
+
+}
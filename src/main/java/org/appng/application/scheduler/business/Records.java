@@ -15,6 +15,9 @@
  */
 package org.appng.application.scheduler.business;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
@@ -35,6 +38,13 @@ import org.appng.api.support.SelectionFactory;
 import org.appng.application.scheduler.MessageConstants;
 import org.appng.application.scheduler.model.JobRecord;
 import org.appng.application.scheduler.service.JobRecordService;
+import org.appng.application.scheduler.service.JobRecordService.PageCursor;
+import org.appng.application.scheduler.service.JobRecordService.RecordPage;
+import org.appng.xml.platform.Label;
+import org.appng.xml.platform.Link;
+import org.appng.xml.platform.Linkmode;
+import org.appng.xml.platform.Linkpanel;
+import org.appng.xml.platform.PanelLocation;
 import org.appng.xml.platform.Selection;
 import org.appng.xml.platform.SelectionGroup;
 import org.springframework.data.domain.Page;
@@ -43,7 +53,8 @@ import org.springframework.stereotype.Component;
 import com.google.common.collect.Lists;
 
 /**
- * A {@link DataProvider} for recorded job executions. It supports some filters.
+ * A {@link DataProvider} for recorded job executions. It supports some filters. If the following page can be read by
+ * seeking, a link to that page is offered, which carries the {@link PageCursor} of the current page.
  * 
  * @author Claus Stümke
  */
@@ -58,6 +69,10 @@ public class Records implements DataProvider {
 	protected static final String START_BEFORE_FILTER = "sb";
 	protected static final String MIN_DURATION_FILTER = "du";
 	protected static final String RESULT_FILTER = "re";
+	protected static final String CURSOR = "cursor";
+	private static final String RECORDS_PAGE = "/records";
+	private static final String SORT_PARAM = "sortRecords";
+	private static final String OTHER_LINKS = "other";
 
 	private JobRecordService jobRecordService;
 
@@ -71,7 +86,7 @@ public class Records implements DataProvider {
 		Integer recordId = options.getInteger("id", "value");
 		String jobId = options.getOptionValue("jobId", "value");
 		if (StringUtils.isNotBlank(jobId)) {
-			Page<JobRecord> records = jobRecordService.getRecords(site.getName(), null, jobId, null, null, null, null,
+			Page<JobRecord> records = jobRecordService.getRecords(site, null, jobId, null, null, null, null,
 					fp.getPageable());
 			dc.setPage(records);
 		} else if (null != recordId) {
@@ -93,13 +108,63 @@ public class Records implements DataProvider {
 			Date startDate = getDate(start);
 			Date endDate = getDate(end);
 
-			Page<JobRecord> records = jobRecordService.getRecords(site.getName(), aFilter, jFilter, startDate, endDate,
-					result, duration, fp.getPageable());
+			RecordPage records = jobRecordService.getRecords(site, aFilter, jFilter, startDate, endDate, result,
+					duration, fp.getPageable(), getCursor(request));
 			dc.setPage(records);
+			if (null != records.getNext()) {
+				addNextLink(request, fp, records);
+			}
 		}
 		return dc;
 	}
 
+	private PageCursor getCursor(Request request) {
+		try {
+			return PageCursor.parse(request.getParameter(CURSOR));
+		} catch (IllegalArgumentException e) {
+			// read the page without seeking
+			return null;
+		}
+	}
+
+	private void addNextLink(Request request, FieldProcessor fp, RecordPage records) {
+		StringBuilder target = new StringBuilder(RECORDS_PAGE).append("?");
+		for (String filter : new String[] { APPLICATION_FILTER, JOB_FILTER, START_AFTER_FILTER, START_BEFORE_FILTER,
+				MIN_DURATION_FILTER, RESULT_FILTER }) {
+			String value = request.getParameter(filter);
+			if (StringUtils.isNotBlank(value)) {
+				target.append(filter).append("=").append(encode(value)).append("&");
+			}
+		}
+		target.append(CURSOR).append("=").append(encode(records.getNext().toString()));
+		target.append("&").append(SORT_PARAM).append("=")
+				.append(encode("page:" + records.getNext().getPage() + ";pageSize:" + records.getSize()));
+
+		Link next = new Link();
+		next.setMode(Linkmode.INTERN);
+		next.setTarget(target.toString());
+		Label label = new Label();
+		label.setValue(request.getMessage(MessageConstants.RECORDS_NEXT));
+		next.setLabel(label);
+
+		Linkpanel links = fp.getLinkPanel(OTHER_LINKS);
+		if (null == links) {
+			links = new Linkpanel();
+			links.setId(OTHER_LINKS);
+			links.setLocation(PanelLocation.BOTH);
+			fp.addLinkPanels(Lists.newArrayList(links));
+		}
+		links.getLinks().add(next);
+	}
+
+	private String encode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public static Date getDate(String value) {
 		if (StringUtils.isNotBlank(value)) {
 			try {
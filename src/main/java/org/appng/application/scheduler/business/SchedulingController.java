@@ -27,7 +27,11 @@ import org.appng.api.model.Site;
 import org.appng.application.scheduler.Constants;
 import org.appng.application.scheduler.PropertyConstants;
 import org.appng.application.scheduler.SchedulerUtils;
+import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.appng.application.scheduler.quartz.JobDetailCacheEvent;
 import org.appng.application.scheduler.quartz.RecordingJobListener;
+import org.appng.application.scheduler.service.JobRecordWriter;
+import org.appng.application.scheduler.service.SchedulerMetrics;
 import org.appng.xml.platform.FieldDef;
 import org.appng.xml.platform.Linkpanel;
 import org.appng.xml.platform.Messages;
@@ -47,14 +51,22 @@ import lombok.extern.slf4j.Slf4j;
 public class SchedulingController extends SchedulerAware implements ApplicationController {
 
 	private RecordingJobListener recordingJobListener;
+	private JobRecordWriter jobRecordWriter;
+	private SchedulerMetrics schedulerMetrics;
 
-	public SchedulingController(RecordingJobListener recordingJobListener, Scheduler scheduler) {
+	public SchedulingController(RecordingJobListener recordingJobListener, JobRecordWriter jobRecordWriter,
+			SchedulerMetrics schedulerMetrics, Scheduler scheduler) {
 		super(scheduler);
 		this.recordingJobListener = recordingJobListener;
+		this.jobRecordWriter = jobRecordWriter;
+		this.schedulerMetrics = schedulerMetrics;
 	}
 
 	public boolean start(Site site, Application application, Environment env) {
 		try {
+			String schedulerName = scheduler.getSchedulerName();
+			DriverDelegateWrapper.setInvalidationListener(schedulerName, (jobKey, calendarName) -> site
+					.sendEvent(new JobDetailCacheEvent(site.getName(), schedulerName, jobKey, calendarName)));
 			SchedulerUtils schedulerUtils = new SchedulerUtils(scheduler, getLoggingFieldProcessor());
 			if (application.getProperties().getBoolean(PropertyConstants.VALIDATE_JOBS_ON_STARTUP)) {
 				validateJobs(site, schedulerUtils);
@@ -87,6 +99,9 @@ public class SchedulingController extends SchedulerAware implements ApplicationC
 				}
 			}
 			scheduler.getListenerManager().addJobListener(recordingJobListener);
+			scheduler.getListenerManager().addSchedulerListener(jobRecordWriter);
+			scheduler.getListenerManager().addTriggerListener(schedulerMetrics);
+			scheduler.getListenerManager().addSchedulerListener(schedulerMetrics);
 			scheduler.start();
 		} catch (SchedulerException e) {
 			log.error("error while starting scheduler", e);
@@ -129,8 +144,10 @@ public class SchedulingController extends SchedulerAware implements ApplicationC
 
 	public boolean removeSite(Site site, Application application, Environment environment) {
 		try {
+			DriverDelegateWrapper.unregister(scheduler.getSchedulerName());
 			scheduler.clear();
 			scheduler.shutdown(false);
+			jobRecordWriter.stop();
 			scheduler.getContext().clear();
 			return true;
 		} catch (SchedulerException e) {
@@ -15,8 +15,11 @@ import org.appng.api.ScheduledJob;
 import org.appng.application.scheduler.Constants;
 import org.appng.application.scheduler.job.IndexJob;
 import org.appng.application.scheduler.job.JobRecordHouseKeepingJob;
+import org.appng.application.scheduler.quartz.CompletionNotifyingDataSource;
 import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.appng.application.scheduler.quartz.JobThreadPool;
 import org.appng.application.scheduler.quartz.SpringQuartzSchedulerFactory;
+import org.appng.application.scheduler.service.JobCounterService;
 import org.appng.application.scheduler.service.JobRecordService;
 import org.appng.application.scheduler.service.JobStateRestController.TimeUnit;
 import org.quartz.impl.StdSchedulerFactory;
@@ -33,6 +36,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.quartz.LocalDataSourceJobStore;
 import org.springframework.scheduling.quartz.SchedulerFactoryBean;
 
 import lombok.extern.slf4j.Slf4j;
@@ -50,6 +54,10 @@ public class SchedulerConfig {
 	private static final String IS_CLUSTERED = JOBSTORE_PREFIX + "isClustered";
 	private static final String SELECT_WITH_LOCK_SQL = JOBSTORE_PREFIX + "selectWithLockSQL";
 
+	private static final String THREAD_COUNT = StdSchedulerFactory.PROP_THREAD_POOL_PREFIX + ".threadCount";
+	private static final String THREAD_POOL_VIRTUAL = "VIRTUAL";
+	private static final String THREAD_POOL_PREFIX = StdSchedulerFactory.PROP_THREAD_POOL_PREFIX + ".";
+
 	private static final String MSSQL_LOCK_SQL = "SELECT * FROM {0}LOCKS WITH (UPDLOCK,ROWLOCK) WHERE SCHED_NAME = {1} AND LOCK_NAME = ?";
 	private static final String MYSQL_LOCK_SQL = "SELECT * FROM {0}LOCKS WHERE SCHED_NAME = {1} AND LOCK_NAME = ? LOCK IN SHARE MODE;";
 
@@ -60,7 +68,10 @@ public class SchedulerConfig {
 
 	@Bean
 	public SchedulerFactoryBean scheduler(JobFactory jobFactory, @Value("${site.name}") String siteName,
-			DataSourceTransactionManager quartzTransactionManager, Properties quartzProperties) throws SQLException {
+			DataSourceTransactionManager quartzTransactionManager, Properties quartzProperties,
+			@Value("${jobDetailCacheSize:0}") int jobDetailCacheSize,
+			@Value("${jobDetailCacheTtl:300}") int jobDetailCacheTtl,
+			@Value("${jobStoreStatistics:false}") boolean jobStoreStatistics) throws SQLException {
 		DataSource dataSource = quartzTransactionManager.getDataSource();
 		SchedulerFactoryBean scheduler = new SchedulerFactoryBean();
 
@@ -68,6 +79,8 @@ public class SchedulerConfig {
 		scheduler.setAutoStartup(false);
 		scheduler.setOverwriteExistingJobs(true);
 		scheduler.setDataSource(dataSource);
+		// the job store commits these transactions by itself, cached job details are invalidated afterwards
+		scheduler.setNonTransactionalDataSource(new CompletionNotifyingDataSource(dataSource));
 		scheduler.setTransactionManager(quartzTransactionManager);
 		scheduler.setJobFactory(jobFactory);
 
@@ -97,7 +110,15 @@ public class SchedulerConfig {
 		if (null != lockSql) {
 			quartzProperties.put(SELECT_WITH_LOCK_SQL, lockSql);
 		}
-		quartzProperties.put(DRIVER_DELEGATE_INIT_STRING, "delegate=" + driverDelegate);
+		String delegateInitString = "delegate=" + driverDelegate;
+		if (jobDetailCacheSize > 0) {
+			delegateInitString += "|" + DriverDelegateWrapper.JOB_DETAIL_CACHE_SIZE + "=" + jobDetailCacheSize + "|"
+					+ DriverDelegateWrapper.JOB_DETAIL_CACHE_TTL + "=" + jobDetailCacheTtl;
+		}
+		if (jobStoreStatistics) {
+			delegateInitString += "|" + DriverDelegateWrapper.STATISTICS + "=true";
+		}
+		quartzProperties.put(DRIVER_DELEGATE_INIT_STRING, delegateInitString);
 
 		if (log.isDebugEnabled()) {
 			log.debug("Quartz properties: {}", quartzProperties);
@@ -115,7 +136,10 @@ public class SchedulerConfig {
 	@Bean
 	Properties quartzProperties(@Value("${site.name}") String siteName,
 			@Value("${platform.messagingEnabled:false}") boolean clustered,
-			@Value("${quartzClusterCheckinInterval:20000}") String clusterCheckinInterval) {
+			@Value("${quartzClusterCheckinInterval:20000}") String clusterCheckinInterval,
+			@Value("${quartzThreadPool:SIMPLE}") String threadPool, @Value("${quartzThreadCount:3}") int threadCount,
+			@Value("${quartzMinThreadCount:0}") int minThreadCount,
+			@Value("${quartzPoolLatencyThreshold:200}") long latencyThreshold) {
 		Properties props = new Properties();
 		props.put(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, SCHEDULER_PREFIX + siteName);
 		props.put(StdSchedulerFactory.PROP_SCHED_THREAD_NAME, SCHEDULER_PREFIX + siteName);
@@ -124,7 +148,19 @@ public class SchedulerConfig {
 		props.put(StdSchedulerFactory.PROP_SCHED_INSTANCE_ID_GENERATOR_CLASS,
 				HostnameInstanceIdGenerator.class.getName());
 
-		props.put("org.quartz.threadPool.threadCount", "3");
+		props.put(THREAD_COUNT, String.valueOf(threadCount));
+		boolean virtual = THREAD_POOL_VIRTUAL.equalsIgnoreCase(threadPool);
+		boolean adaptive = minThreadCount > 0 && minThreadCount < threadCount;
+		if (virtual || adaptive) {
+			props.put(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, JobThreadPool.class.getName());
+			props.put(THREAD_POOL_PREFIX + "virtualThreads", String.valueOf(virtual));
+		}
+		if (adaptive) {
+			props.put(THREAD_POOL_PREFIX + "minThreadCount", String.valueOf(minThreadCount));
+			props.put(THREAD_POOL_PREFIX + "latencyThreshold", String.valueOf(latencyThreshold));
+			props.put(THREAD_POOL_PREFIX + "dataSource",
+					LocalDataSourceJobStore.NON_TX_DATA_SOURCE_PREFIX + SCHEDULER_PREFIX + siteName);
+		}
 		props.put("org.quartz.scheduler.skipUpdateCheck", "true");
 		props.put(IS_CLUSTERED, String.valueOf(clustered));
 		props.put(CLUSTER_CHECKIN_INTERVAL, clusterCheckinInterval);
@@ -134,23 +170,34 @@ public class SchedulerConfig {
 
 	@Bean
 	public ScheduledJob indexJob(@Value("${indexEnabled}") boolean indexEnabled,
-			@Value("${indexExpression}") String indexExpression, @Value("${platform.jspFileType}") String jspFileType) {
+			@Value("${indexExpression}") String indexExpression, @Value("${platform.jspFileType}") String jspFileType,
+			@Value("${indexIncremental:false}") boolean incremental,
+			@Value("${indexFullRebuildDays:7}") int fullRebuildDays, @Value("${indexParallelism:1}") int parallelism,
+			@Value("${indexReadRate:0}") long readRate, @Value("${indexPacing:0}") double pacing,
+			@Value("${indexTimeBudget:0}") int timeBudget) {
 		IndexJob indexJob = new IndexJob();
 		indexJob.setJobDataMap(new HashMap<>());
 		indexJob.setDescription("Indexing of JSPs and static content");
 		indexJob.getJobDataMap().put(Constants.JOB_ENABLED, indexEnabled);
 		indexJob.getJobDataMap().put(Constants.JOB_CRON_EXPRESSION, indexExpression);
 		indexJob.getJobDataMap().put(Platform.Property.JSP_FILE_TYPE, jspFileType);
+		indexJob.getJobDataMap().put(Constants.INDEX_INCREMENTAL, incremental);
+		indexJob.getJobDataMap().put(Constants.INDEX_FULL_REBUILD_DAYS, fullRebuildDays);
+		indexJob.getJobDataMap().put(Constants.INDEX_PARALLELISM, parallelism);
+		indexJob.getJobDataMap().put(Constants.INDEX_READ_RATE, readRate);
+		indexJob.getJobDataMap().put(Constants.INDEX_PACING, pacing);
+		indexJob.getJobDataMap().put(Constants.INDEX_TIME_BUDGET, timeBudget);
 		indexJob.getJobDataMap().put(Constants.THRESHOLD_TIMEUNIT, TimeUnit.DAY.name());
 		indexJob.getJobDataMap().put(Constants.THRESHOLD_ERROR, 1);
 		return indexJob;
 	}
 
 	@Bean
-	public ScheduledJob houseKeepingJob(JobRecordService jobRecordService,
+	public ScheduledJob houseKeepingJob(JobRecordService jobRecordService, JobCounterService jobCounterService,
 			@Value("${houseKeepingEnabled}") boolean houseKeepingEnabled,
 			@Value("${houseKeepingExpression}") String houseKeepingExpression) {
-		JobRecordHouseKeepingJob houseKeepingJob = new JobRecordHouseKeepingJob(jobRecordService);
+		JobRecordHouseKeepingJob houseKeepingJob = new JobRecordHouseKeepingJob(jobRecordService,
+				jobCounterService);
 		houseKeepingJob.setJobDataMap(new HashMap<>());
 		houseKeepingJob.getJobDataMap().put(Constants.JOB_ENABLED, houseKeepingEnabled);
 		houseKeepingJob.getJobDataMap().put(Constants.JOB_CRON_EXPRESSION, houseKeepingExpression);
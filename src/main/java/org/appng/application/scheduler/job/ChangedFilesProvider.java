@@ -0,0 +1,374 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.tika.parser.ParsingReader;
+import org.appng.api.model.Properties;
+import org.appng.api.model.Site;
+import org.appng.api.observe.Observable.Event;
+import org.appng.api.search.Document;
+import org.appng.api.search.DocumentEvent;
+import org.appng.api.search.DocumentProducer;
+import org.appng.search.Search;
+import org.appng.search.indexer.FileSystemProvider;
+import org.appng.search.indexer.IndexConfig;
+import org.appng.search.indexer.IndexConfig.ConfigEntry;
+import org.appng.search.indexer.ParseTags;
+import org.appng.search.indexer.SimpleDocument;
+import org.springframework.util.DigestUtils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link FileSystemProvider} that additionally provides {@link DocumentProducer}s for only those files that have been
+ * added, modified or removed since the given {@link IndexManifest} has been written, and that can index all files
+ * through a {@link DocumentPipeline}. The files are selected and converted to {@link Document}s the same way
+ * {@link FileSystemProvider} does it, which only offers to index all files at once. Since the index is not cleared,
+ * each event replaces the existing document with the same path.
+ */
+@Slf4j
+public class ChangedFilesProvider extends FileSystemProvider {
+
+	private static final String INDEX_PAGE = "indexPage";
+	private static final String CONTENTS = "contents";
+	private static final String TITLE = "title";
+
+	private final IndexConfig config;
+	private final List<String> extensions;
+	private final long timeout;
+	private final int queueSize;
+	private final String jspExtension;
+	private final File dataDir;
+	private final String indexConfig;
+	private final @Getter IndexThrottle throttle;
+	private @Getter int changes;
+	private @Getter int remaining;
+
+	public ChangedFilesProvider(Site site, String jspExtension) {
+		this(site, jspExtension, IndexThrottle.NONE);
+	}
+
+	public ChangedFilesProvider(Site site, String jspExtension, IndexThrottle throttle) {
+		this(site.getProperties(), jspExtension, throttle);
+	}
+
+	private ChangedFilesProvider(Properties properties, String jspExtension, IndexThrottle throttle) {
+		// configured like GlobalIndexer configures the FileSystemProvider
+		super(getConfig(properties), getExtensions(properties), properties.getInteger("indexTimeout", 5000),
+				jspExtension, getDataDir(properties), Collections.emptyList());
+		this.dataDir = getDataDir(properties);
+		this.indexConfig = properties.getString("indexConfig");
+		this.config = getConfig(properties);
+		this.timeout = properties.getInteger("indexTimeout", 5000);
+		this.queueSize = properties.getInteger("indexFileSystemQueueSize", 1000);
+		this.extensions = getExtensions(properties);
+		this.jspExtension = jspExtension;
+		this.throttle = throttle;
+	}
+
+	private static IndexConfig getConfig(Properties properties) {
+		return IndexConfig.getInstance(properties.getString("indexConfig"), properties.getString("tagPrefix"));
+	}
+
+	private static List<String> getExtensions(Properties properties) {
+		return properties.getList("indexFileTypes", ",");
+	}
+
+	private static File getDataDir(Properties properties) {
+		return new File(properties.getString("siteRootDir") + properties.getString("wwwDir")).getAbsoluteFile();
+	}
+
+	/**
+	 * Returns a fingerprint of the index configuration. If it changes, a full rebuild is required.
+	 */
+	public String getFingerprint() {
+		String settings = String.join("|", indexConfig, config.getTagPrefix(), String.valueOf(extensions),
+				jspExtension, dataDir.getPath());
+		return DigestUtils.md5DigestAsHex(settings.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Creates a new manifest for the indexed files, without providing any events.
+	 */
+	public IndexManifest scan(File manifestFile, long fullRebuild) throws IOException {
+		IndexManifest manifest = new IndexManifest(manifestFile, fullRebuild, getFingerprint());
+		for (Folder folder : getFolders()) {
+			for (File file : folder.getFiles()) {
+				manifest.add(IndexManifest.Entry.of(getPath(file), file, null, throttle));
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Compares the files with the given manifest and provides events for all changes. Afterwards, the manifest
+	 * contains the current state of the files. Once the throttle has expired, modified files are only counted as
+	 * remaining, keeping their previous state in the manifest so they're indexed by the next run. Removed files are
+	 * always deleted from the index.
+	 */
+	public Iterable<DocumentProducer> getDocumentProducers(IndexManifest manifest)
+			throws InterruptedException, TimeoutException, IOException {
+		List<DocumentProducer> producers = new ArrayList<>();
+		Set<String> removed = new HashSet<>(manifest.getEntries().keySet());
+		for (Folder folder : getFolders()) {
+			DocumentProducer producer = null;
+			for (File file : folder.getFiles()) {
+				String path = getPath(file);
+				removed.remove(path);
+				IndexManifest.Entry previous = manifest.get(path);
+				if (throttle.isExpired()) {
+					if (null == previous || !previous.matches(file)) {
+						remaining++;
+					}
+					continue;
+				}
+				IndexManifest.Entry current = IndexManifest.Entry.of(path, file, previous, throttle);
+				if (current.isModified(previous)) {
+					DocumentEvent event = createEvent(file, path, folder.entry.getLanguage(),
+							null == previous ? Document.CREATE : Document.UPDATE);
+					if (null == event) {
+						// keep the previous state, so the file is retried next time
+						continue;
+					}
+					if (null == producer) {
+						producer = new DocumentProducer(queueSize, folder.entry.getAnalyzer().getClass(),
+								"update " + folder.dir.getAbsolutePath());
+						producers.add(producer);
+					}
+					producer.putWithTimeout(event, timeout);
+					changes++;
+				}
+				manifest.add(current);
+			}
+		}
+		if (!removed.isEmpty()) {
+			DocumentProducer producer = new DocumentProducer(queueSize, Search.getDefaultAnalyzerClass(),
+					"delete removed files");
+			for (String path : removed) {
+				SimpleDocument document = new SimpleDocument();
+				document.setId(path);
+				document.setPath(path);
+				document.setType(FilenameUtils.getExtension(path));
+				producer.putWithTimeout(new DocumentEvent(document, Document.DELETE), timeout);
+				manifest.getEntries().remove(path);
+				changes++;
+			}
+			producers.add(producer);
+		}
+		log.info("found {} changed file(s) in {}", changes, dataDir);
+		return producers;
+	}
+
+	/**
+	 * Provides the events for all files through the given pipeline, listing and parsing the files of each folder in
+	 * parallel. Each file is added to the given manifest as soon as its event has been passed to the indexer, so files
+	 * that could not be parsed, or have not been parsed since the pipeline's throttle expired, are indexed by the next
+	 * run. The pipeline applies the throttle before passing a file to a worker, each file being read twice (for its
+	 * hash and for parsing it).
+	 */
+	public void index(DocumentPipeline pipeline, IndexManifest manifest)
+			throws InterruptedException, TimeoutException {
+		for (Folder folder : getFolders()) {
+			List<File> files = folder.getFiles(pipeline.getPool());
+			Map<File, IndexManifest.Entry> entries = new ConcurrentHashMap<>();
+			changes += pipeline.index("index " + folder.dir.getAbsolutePath(), folder.entry.getAnalyzer().getClass(),
+					files, file -> 2 * file.length(), file -> {
+						String path = getPath(file);
+						try {
+							// before parsing, so a modification meanwhile is detected next time
+							entries.put(file, IndexManifest.Entry.of(path, file, null, IndexThrottle.NONE));
+						} catch (IOException e) {
+							log.error(String.format("error while reading %s", file.getAbsolutePath()), e);
+							return null;
+						}
+						return parse(file, path, folder.entry.getLanguage(), Document.CREATE);
+					}, (file, event) -> manifest.add(entries.remove(file)));
+		}
+		remaining = pipeline.getRemaining();
+		log.info("indexed {} file(s) in {}", changes, dataDir);
+	}
+
+	private String getPath(File file) {
+		return file.getAbsolutePath().substring(dataDir.getAbsolutePath().length()).replace('\\', '/');
+	}
+
+	private List<Folder> getFolders() {
+		List<Folder> folders = new ArrayList<>();
+		if (!dataDir.isDirectory()) {
+			log.error("{} does not exist or is not a directory", dataDir);
+			return folders;
+		}
+		for (String name : config.getFolders()) {
+			List<File> excluded = new ArrayList<>();
+			for (String other : config.getFolders()) {
+				if (!other.equals(name)) {
+					excluded.add(new File(dataDir, other));
+				}
+			}
+			File dir = new File(dataDir, name);
+			if (dir.exists()) {
+				folders.add(new Folder(config.getEntry(name), dir, excluded));
+			} else {
+				log.warn("The folder {} does not exist, probably the site property {} is misconfigured!",
+						dir.getAbsolutePath(), "indexConfig");
+			}
+		}
+		return folders;
+	}
+
+	/**
+	 * Creates the event for the given file, like {@link FileSystemProvider} does, subject to the throttle. The
+	 * conversion of a single file is not accessible from {@link FileSystemProvider}, so it's done here.
+	 */
+	DocumentEvent createEvent(File file, String path, String language, Event type) {
+		throttle.acquire(file.length());
+		long start = System.nanoTime();
+		try {
+			return parse(file, path, language, type);
+		} finally {
+			throttle.pace(start);
+		}
+	}
+
+	private DocumentEvent parse(File file, String path, String language, Event type) {
+		SimpleDocument document = new SimpleDocument();
+		document.setPath(path);
+		String extension = FilenameUtils.getExtension(file.getName());
+		document.setType(extension);
+		document.setDate(new Date(file.lastModified()));
+		document.setLanguage(language);
+		String content = null;
+		try {
+			if (jspExtension.equals(extension)) {
+				Map<String, StringBuilder> tags;
+				try (InputStream in = Files.newInputStream(file.toPath())) {
+					tags = new ParseTags(config.getTagPrefix()).parse(in);
+				}
+				StringBuilder indexPage = tags.remove(INDEX_PAGE);
+				if (null == indexPage || !"false".equalsIgnoreCase(indexPage.toString())) {
+					StringBuilder contents = tags.remove(CONTENTS);
+					content = null == contents ? null : contents.toString();
+					StringBuilder title = tags.remove(TITLE);
+					if (null != title) {
+						document.setName(title.toString());
+					}
+					for (String name : tags.keySet()) {
+						document.addField(new TextField(name, tags.get(name).toString(), Store.YES));
+					}
+				} else {
+					log.debug("skipping {}", file.getAbsolutePath());
+				}
+			} else {
+				try (Reader reader = new ParsingReader(file)) {
+					content = new String(IOUtils.toByteArray(reader, Charset.defaultCharset()));
+					document.setName(FilenameUtils.getName(file.getName()));
+				}
+			}
+		} catch (IOException e) {
+			log.error(String.format("error while indexing %s", file.getAbsolutePath()), e);
+			return null;
+		}
+		document.setContent(content);
+		document.setId(path);
+		log.debug("{} {}", type, file.getAbsolutePath());
+		return new DocumentEvent(document, type);
+	}
+
+	private class Folder {
+		private final ConfigEntry entry;
+		private final File dir;
+		private final List<File> excluded;
+
+		Folder(ConfigEntry entry, File dir, List<File> excluded) {
+			this.entry = entry;
+			this.dir = dir;
+			this.excluded = excluded;
+		}
+
+		List<File> getFiles() {
+			return new ListFiles(dir).compute();
+		}
+
+		List<File> getFiles(ForkJoinPool pool) {
+			return pool.invoke(new ListFiles(dir));
+		}
+
+		/**
+		 * Lists the files of a directory, forking a subtask for each subdirectory when running on a
+		 * {@link ForkJoinPool}.
+		 */
+		private class ListFiles extends RecursiveTask<List<File>> {
+			private final File directory;
+
+			ListFiles(File directory) {
+				this.directory = directory;
+			}
+
+			@Override
+			protected List<File> compute() {
+				List<File> files = new ArrayList<>();
+				List<ListFiles> subtasks = new ArrayList<>();
+				File[] children = directory.listFiles(
+						f -> f.isDirectory() || FilenameUtils.isExtension(f.getAbsolutePath(), extensions));
+				if (null != children) {
+					Arrays.sort(children);
+					for (File child : children) {
+						if (!child.isDirectory()) {
+							files.add(child);
+						} else if (!excluded.contains(child)) {
+							ListFiles subtask = new ListFiles(child);
+							if (inForkJoinPool()) {
+								subtask.fork();
+								subtasks.add(subtask);
+							} else {
+								files.addAll(subtask.compute());
+							}
+						}
+					}
+				}
+				for (ListFiles subtask : subtasks) {
+					files.addAll(subtask.join());
+				}
+				return files;
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.appng.api.search.Consumer;
+import org.appng.api.search.DocumentEvent;
+import org.appng.api.search.DocumentProducer;
+import org.appng.search.Search;
+import org.appng.search.indexer.DocumentIndexer;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates {@link DocumentEvent}s in parallel and passes them to the indexer through bounded
+ * {@link DocumentProducer}s. The events are created by a pool of worker threads, while the calling thread puts them
+ * into the producer in their original order, so the indexer remains the only writer of the index. At most
+ * {@code 2 * parallelism} events are created ahead, hence the memory used does not depend on the number of documents.
+ * The {@link ForkJoinPool} of the pipeline may be used to list the items in parallel.
+ * <p>
+ * The given {@link IndexThrottle} is applied by the calling thread: it waits before passing an item to a worker until
+ * the item may be read, and pauses for the time a worker spent on a document once it has been created. Once the
+ * throttle has expired, no further items are processed but counted as remaining. A document that has not been created
+ * within the timeout, measured from the moment a worker started to create it, is skipped and its worker is
+ * interrupted. Workers ignoring
+ * the interruption are abandoned when the pipeline is closed. Since the indexer stops reading from a producer if no
+ * event arrived within its timeout, a new producer is started after such a gap.
+ */
+@Slf4j
+public class DocumentPipeline implements AutoCloseable {
+
+	private final Consumer<DocumentEvent, DocumentProducer> indexer;
+	private final @Getter ForkJoinPool pool;
+	private final ThreadPoolExecutor workers;
+	private final int window;
+	private final int queueSize;
+	private final long timeout;
+	private final IndexThrottle throttle;
+	private DocumentEvent pending;
+	private @Getter int documents;
+	private @Getter int skipped;
+	private @Getter int remaining;
+	private @Getter int timedOut;
+
+	DocumentPipeline(Consumer<DocumentEvent, DocumentProducer> indexer, int parallelism, int queueSize, long timeout,
+			IndexThrottle throttle) {
+		this.indexer = indexer;
+		this.throttle = throttle;
+		this.window = 2 * parallelism;
+		this.queueSize = queueSize;
+		this.timeout = timeout;
+		// parsers may rely on the context classloader of the site
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		this.pool = new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setContextClassLoader(classLoader);
+			return thread;
+		}, null, false);
+		// cancelling the tasks of this executor interrupts the workers
+		AtomicInteger count = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread thread = new Thread(r, "DocumentPipeline-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setContextClassLoader(classLoader);
+					return thread;
+				});
+	}
+
+	/**
+	 * Clears the index with the first producer being started, so clearing and re-adding the documents are committed
+	 * together.
+	 */
+	void clearIndex() {
+		pending = new DocumentEvent(null, DocumentIndexer.CLEAR_INDEX);
+	}
+
+	/**
+	 * Creates the events for the given items on the pool and passes them to the indexer.
+	 *
+	 * @param name
+	 *                      the name of the producer(s)
+	 * @param analyzerClass
+	 *                      the type of {@link Analyzer} to use
+	 * @param items
+	 *                      the items to index
+	 * @param size
+	 *                      the number of bytes to read for an item, used for throttling
+	 * @param creator
+	 *                      creates the event for an item, may return {@code null} if the item should be skipped
+	 * @param callback
+	 *                      called on the calling thread after the event of an item has been passed to the indexer
+	 * @return the number of events passed to the indexer
+	 */
+	<T> int index(String name, Class<? extends Analyzer> analyzerClass, Iterable<T> items, ToLongFunction<T> size,
+			Function<T, DocumentEvent> creator, BiConsumer<T, DocumentEvent> callback)
+			throws InterruptedException, TimeoutException {
+		Feed feed = new Feed(name, analyzerClass);
+		Deque<Task<T>> tasks = new ArrayDeque<>();
+		for (T item : items) {
+			if (throttle.isExpired()) {
+				remaining++;
+				continue;
+			}
+			throttle.acquire(size.applyAsLong(item));
+			tasks.add(new Task<>(item, creator));
+			if (tasks.size() > window) {
+				feed.put(tasks.poll(), callback);
+			}
+		}
+		while (!tasks.isEmpty()) {
+			feed.put(tasks.poll(), callback);
+		}
+		documents += feed.count;
+		return feed.count;
+	}
+
+	/**
+	 * Shuts down the pool and the workers. If the index should have been cleared but there was nothing to index, it's
+	 * cleared now.
+	 */
+	public void close() throws InterruptedException, TimeoutException {
+		pool.shutdownNow();
+		workers.shutdownNow();
+		if (!workers.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+			log.warn("abandoning {} worker(s) still creating a document, {} document(s) timed out",
+					workers.getActiveCount(), timedOut);
+		}
+		if (null != pending) {
+			new Feed("clear index", Search.getDefaultAnalyzerClass()).put(null);
+		}
+		if (skipped > 0) {
+			log.warn("skipped {} of {} documents", skipped, documents + skipped);
+		}
+	}
+
+	private class Feed {
+		private final String name;
+		private final Class<? extends Analyzer> analyzerClass;
+		private DocumentProducer producer;
+		private long lastPut;
+		private int count;
+
+		Feed(String name, Class<? extends Analyzer> analyzerClass) {
+			this.name = name;
+			this.analyzerClass = analyzerClass;
+		}
+
+		<T> void put(Task<T> task, BiConsumer<T, DocumentEvent> callback)
+				throws InterruptedException, TimeoutException {
+			DocumentEvent event;
+			try {
+				event = await(task);
+				if (null != task.end) {
+					throttle.pace(task.start, task.end);
+				}
+			} catch (TimeoutException e) {
+				task.future.cancel(true);
+				timedOut++;
+				log.warn("no document created for {} within {}ms, skipping it", task.item, timeout);
+				event = null;
+			} catch (ExecutionException e) {
+				log.error(String.format("error creating document for %s", task.item), e.getCause());
+				event = null;
+			}
+			if (null == event) {
+				skipped++;
+			} else {
+				put(event);
+				count++;
+				callback.accept(task.item, event);
+			}
+		}
+
+		/**
+		 * Waits for the event of the given task, at most until {@code timeout} milliseconds after a worker has
+		 * started to create it. Since workers ignoring an interruption are not available any more, the time to wait
+		 * for a free worker is limited, too.
+		 */
+		private <T> DocumentEvent await(Task<T> task)
+				throws InterruptedException, ExecutionException, TimeoutException {
+			long deadline = System.currentTimeMillis() + window * timeout;
+			while (true) {
+				Long start = task.start;
+				long wait = null == start ? timeout
+						: timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				try {
+					return task.future.get(Math.max(0, wait), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					if (null != start || System.currentTimeMillis() >= deadline) {
+						throw e;
+					}
+					// still waiting for a free worker
+				}
+			}
+		}
+
+		void put(DocumentEvent event) throws InterruptedException, TimeoutException {
+			// with a margin, so the indexer is still waiting for events from the current producer
+			if (null == producer || System.currentTimeMillis() - lastPut > timeout / 2) {
+				producer = new DocumentProducer(queueSize, analyzerClass, name);
+				indexer.putWithTimeout(producer, timeout);
+				if (null != pending) {
+					producer.putWithTimeout(pending, timeout);
+					pending = null;
+				}
+			}
+			if (null != event) {
+				producer.putWithTimeout(event, timeout);
+			}
+			lastPut = System.currentTimeMillis();
+		}
+	}
+
+	private class Task<T> {
+		private final T item;
+		private final Future<DocumentEvent> future;
+		private volatile Long start;
+		private volatile Long end;
+
+		Task(T item, Function<T, DocumentEvent> creator) {
+			this.item = item;
+			this.future = workers.submit(() -> {
+				start = System.nanoTime();
+				try {
+					return creator.apply(item);
+				} finally {
+					end = System.nanoTime();
+				}
+			});
+		}
+	}
+}
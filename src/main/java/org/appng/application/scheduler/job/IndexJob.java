@@ -15,15 +15,23 @@
  */
 package org.appng.application.scheduler.job;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.appng.api.Platform;
 import org.appng.api.ScheduledJob;
+import org.appng.api.ScheduledJobResult;
+import org.appng.api.ScheduledJobResult.ExecutionResult;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
 import org.appng.api.search.Consumer;
 import org.appng.api.search.DocumentEvent;
 import org.appng.api.search.DocumentProducer;
+import org.appng.application.scheduler.Constants;
+import org.appng.application.scheduler.service.IndexStatistics;
+import org.appng.search.DocumentProvider;
 import org.appng.search.indexer.GlobalIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +40,23 @@ import lombok.Data;
 
 /**
  * A {@link ScheduledJob} that builds to global search index for a {@link Site}.
+ * <p>
+ * In incremental mode, an {@link IndexManifest} of the indexed files is kept next to the index directory. Only the
+ * files that have been added, modified or removed since the last run are indexed then (see
+ * {@link ChangedFilesProvider}), while the {@link DocumentProvider}s of the applications are processed as usual. A
+ * full rebuild is done if there is no (valid) manifest, if the index configuration has changed or if the last full
+ * rebuild is older than the number of days given by {@link Constants#INDEX_FULL_REBUILD_DAYS}. To enforce a full
+ * rebuild on the next run, delete the manifest.
+ * <p>
+ * If the parallelism given by {@link Constants#INDEX_PARALLELISM} is greater than one, the files are listed and parsed
+ * in parallel when rebuilding the index (see {@link DocumentPipeline}).
+ * <p>
+ * To reduce the load on the serving node, the number of bytes read per second ({@link Constants#INDEX_READ_RATE}) and
+ * the CPU usage ({@link Constants#INDEX_PACING}) can be limited (see {@link IndexThrottle}). After the time budget
+ * given by {@link Constants#INDEX_TIME_BUDGET} no further files are indexed. In that case, the manifest serves as a
+ * checkpoint: the next (incremental) run indexes the remaining files. Without incremental mode, the time budget is
+ * ignored, because the index is cleared on each run. The progress is reported as the custom data of the
+ * {@link ScheduledJobResult}.
  * 
  * @author Matthias Müller
  *
@@ -42,14 +67,128 @@ public class IndexJob implements ScheduledJob {
 
 	private static final Logger LOG = LoggerFactory.getLogger(IndexJob.class);
 
+	private ScheduledJobResult result;
 	private Map<String, Object> jobDataMap;
 	private String description;
 
 	public void execute(Site site, Application application) throws Exception {
 		LOG.debug("started IndexJob ({}) for site {}", description, site.getName());
+		long start = System.currentTimeMillis();
 		Consumer<DocumentEvent, DocumentProducer> indexer = application.getFeatureProvider().getIndexer();
 		String jspFileType = (String) getJobDataMap().get(Platform.Property.JSP_FILE_TYPE);
+		boolean incremental = Boolean.TRUE.equals(getJobDataMap().get(Constants.INDEX_INCREMENTAL));
+		ChangedFilesProvider files = new ChangedFilesProvider(site, jspFileType, getThrottle(start, incremental));
+		String customData;
+		if (incremental) {
+			customData = indexIncremental(site, indexer, jspFileType, files);
+		} else {
+			customData = indexAll(site, indexer, jspFileType, files, null);
+		}
+		customData += String.format(" within %sms", System.currentTimeMillis() - start);
+		if (files.getRemaining() > 0) {
+			customData += String.format(", time budget exceeded, %s remaining file(s) will be indexed by the next run",
+					files.getRemaining());
+		}
+		this.result = new ScheduledJobResult();
+		this.result.setResult(ExecutionResult.SUCCESS);
+		this.result.setCustomData(customData);
+		LOG.debug("finished IndexJob ({}) for site {}: {}", description, site.getName(), customData);
+	}
+
+	private IndexThrottle getThrottle(long start, boolean incremental) {
+		long timeBudget = getNumber(Constants.INDEX_TIME_BUDGET, 0);
+		if (timeBudget > 0 && !incremental) {
+			// the index is cleared, stopping early would leave it incomplete until the next run
+			LOG.warn("ignoring the time budget of {}s, since the index is not built incrementally", timeBudget);
+			timeBudget = 0;
+		}
+		long deadline = timeBudget > 0 ? start + TimeUnit.SECONDS.toMillis(timeBudget) : 0;
+		Object pacing = getJobDataMap().get(Constants.INDEX_PACING);
+		return new IndexThrottle(getNumber(Constants.INDEX_READ_RATE, 0),
+				null == pacing ? 0 : ((Number) pacing).doubleValue(), deadline);
+	}
+
+	private String indexIncremental(Site site, Consumer<DocumentEvent, DocumentProducer> indexer,
+			String jspFileType, ChangedFilesProvider changedFiles) throws Exception {
+		File manifestFile = IndexManifest.getFile(IndexStatistics.getIndexPath(site));
+		IndexManifest manifest = IndexManifest.read(manifestFile);
+		long maxAge = TimeUnit.DAYS.toMillis(getNumber(Constants.INDEX_FULL_REBUILD_DAYS, 7));
+
+		if (null == manifest || !manifest.getFingerprint().equals(changedFiles.getFingerprint())
+				|| System.currentTimeMillis() - manifest.getFullRebuild() >= maxAge) {
+			LOG.info("full rebuild of the index for site {}", site.getName());
+			return indexAll(site, indexer, jspFileType, changedFiles, manifestFile);
+		}
+
+		Integer timeout = site.getProperties().getInteger("indexTimeout", 5000);
+		for (DocumentProducer producer : changedFiles.getDocumentProducers(manifest)) {
+			indexer.putWithTimeout(producer, timeout);
+		}
+		indexApplications(site, indexer, timeout);
+		manifest.write();
+		LOG.info("indexed {} changed file(s) for site {}", changedFiles.getChanges(), site.getName());
+		return String.format("%s changed file(s) have been indexed for site %s", changedFiles.getChanges(),
+				site.getName());
+	}
+
+	/**
+	 * Rebuilds the whole index. With a parallelism greater than one or when throttling, the files are indexed using a
+	 * {@link DocumentPipeline}, otherwise {@link GlobalIndexer} is used.
+	 */
+	private String indexAll(Site site, Consumer<DocumentEvent, DocumentProducer> indexer, String jspFileType,
+			ChangedFilesProvider files, File manifestFile) throws Exception {
+		long now = System.currentTimeMillis();
+		int parallelism = (int) getNumber(Constants.INDEX_PARALLELISM, 1);
+		if (parallelism > 1 || files.getThrottle().isActive()) {
+			Integer timeout = site.getProperties().getInteger("indexTimeout", 5000);
+			Integer queueSize = site.getProperties().getInteger("indexFileSystemQueueSize", 1000);
+			IndexManifest manifest = new IndexManifest(manifestFile, now, files.getFingerprint());
+			int skipped;
+			try (DocumentPipeline pipeline = new DocumentPipeline(indexer, Math.max(1, parallelism), queueSize,
+					timeout, files.getThrottle())) {
+				pipeline.clearIndex();
+				files.index(pipeline, manifest);
+				skipped = pipeline.getSkipped();
+			}
+			indexApplications(site, indexer, timeout);
+			if (null != manifestFile) {
+				manifest.write();
+			}
+			return String.format("the index for site %s has been rebuilt with %s file(s), %s skipped",
+					site.getName(), files.getChanges(), skipped);
+		} else if (null != manifestFile) {
+			// scan before indexing, so files modified meanwhile are indexed again next time
+			IndexManifest manifest = files.scan(manifestFile, now);
+			new GlobalIndexer(indexer).doIndex(site, jspFileType);
+			manifest.write();
+			return String.format("the index for site %s has been rebuilt with %s file(s)", site.getName(),
+					manifest.getEntries().size());
+		}
 		new GlobalIndexer(indexer).doIndex(site, jspFileType);
-		LOG.debug("finished IndexJob ({}) for site {}", description, site.getName());
+		return String.format("the index for site %s has been rebuilt", site.getName());
+	}
+
+	private void indexApplications(Site site, Consumer<DocumentEvent, DocumentProducer> indexer, Integer timeout)
+			throws InterruptedException {
+		for (Application application : site.getApplications()) {
+			for (String name : application.getBeanNames(DocumentProvider.class)) {
+				DocumentProvider provider = application.getBean(name, DocumentProvider.class);
+				try {
+					Iterable<DocumentProducer> producers = provider.getDocumentProducers(site, application);
+					if (null != producers) {
+						for (DocumentProducer producer : producers) {
+							indexer.putWithTimeout(producer, timeout);
+						}
+					}
+				} catch (TimeoutException e) {
+					LOG.error(String.format("Timeout while processing %s", provider.getClass().getName()), e);
+				}
+			}
+		}
+	}
+
+	private long getNumber(String key, long defaultValue) {
+		Object value = getJobDataMap().get(key);
+		return null == value ? defaultValue : ((Number) value).longValue();
 	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.util.DigestUtils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The manifest of the files that have been indexed by {@link IndexJob}, containing the path, size, modification time
+ * and MD5 hash of each file. It is saved next to the index directory, as a tab separated text file with a header
+ * line holding the time of the last full rebuild and a fingerprint of the index configuration.
+ */
+@Slf4j
+@Getter
+public class IndexManifest {
+
+	private static final String HEADER = "#";
+	private static final String SEPARATOR = "\t";
+
+	private final File file;
+	private final long fullRebuild;
+	private final String fingerprint;
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	IndexManifest(File file, long fullRebuild, String fingerprint) {
+		this.file = file;
+		this.fullRebuild = fullRebuild;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Returns the manifest file for the given index directory.
+	 */
+	static File getFile(File indexDir) {
+		return new File(indexDir.getParentFile(), indexDir.getName() + ".manifest");
+	}
+
+	/**
+	 * Reads the manifest from the given file.
+	 * 
+	 * @return the manifest, or {@code null} if the file does not exist or can not be read
+	 */
+	static IndexManifest read(File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String[] header = reader.readLine().substring(HEADER.length()).split(SEPARATOR);
+			IndexManifest manifest = new IndexManifest(file, Long.parseLong(header[0]), header[1]);
+			String line;
+			while (null != (line = reader.readLine())) {
+				String[] parts = line.split(SEPARATOR);
+				manifest.add(new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+			}
+			return manifest;
+		} catch (IOException | RuntimeException e) {
+			log.warn("error reading {}, a full rebuild is required ({})", file, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the manifest to a temporary file, which then replaces the manifest file.
+	 */
+	void write() throws IOException {
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(HEADER + fullRebuild + SEPARATOR + fingerprint);
+			writer.newLine();
+			for (Entry entry : entries.values()) {
+				writer.write(String.join(SEPARATOR, entry.path, String.valueOf(entry.size),
+						String.valueOf(entry.lastModified), entry.hash));
+				writer.newLine();
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	void add(Entry entry) {
+		entries.put(entry.path, entry);
+	}
+
+	Entry get(String path) {
+		return entries.get(path);
+	}
+
+	@Getter
+	@AllArgsConstructor
+	static class Entry {
+		private final String path;
+		private final long size;
+		private final long lastModified;
+		private final String hash;
+
+		/**
+		 * Creates an entry for the given file, reusing the hash of the previous entry if size and modification time
+		 * did not change. Reading the file for calculating the hash is subject to the given throttle.
+		 */
+		static Entry of(String path, File file, Entry previous, IndexThrottle throttle) throws IOException {
+			if (null != previous && previous.matches(file)) {
+				return previous;
+			}
+			long size = file.length();
+			long lastModified = file.lastModified();
+			throttle.acquire(size);
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				return new Entry(path, size, lastModified, DigestUtils.md5DigestAsHex(in));
+			}
+		}
+
+		/**
+		 * Whether size and modification time of the given file match this entry.
+		 */
+		boolean matches(File file) {
+			return size == file.length() && lastModified == file.lastModified();
+		}
+
+		boolean isModified(Entry previous) {
+			return null == previous || !previous.hash.equals(hash);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the resources used by {@link IndexJob}, shared by all threads reading and parsing files:
+ * <ul>
+ * <li>the number of bytes read per second</li>
+ * <li>the CPU usage, by pausing after each document for the time spent on it, multiplied with a pacing factor</li>
+ * <li>the time after which no further documents should be created</li>
+ * </ul>
+ */
+public class IndexThrottle {
+
+	static final IndexThrottle NONE = new IndexThrottle(0, 0, 0);
+
+	private final long readRate;
+	private final double pacing;
+	private final long deadline;
+	private long nextRead;
+
+	/**
+	 * Creates a new throttle.
+	 *
+	 * @param readRate
+	 *                 the maximum number of bytes to read per second, 0 for no limit
+	 * @param pacing
+	 *                 the factor for the time to pause after creating a document, 0 for no pauses
+	 * @param deadline
+	 *                 the time in milliseconds after which no further documents should be created, 0 for no limit
+	 */
+	IndexThrottle(long readRate, double pacing, long deadline) {
+		this.readRate = readRate;
+		this.pacing = pacing;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Waits until the given number of bytes may be read.
+	 */
+	void acquire(long bytes) {
+		if (readRate > 0) {
+			long wait;
+			synchronized (this) {
+				long now = System.nanoTime();
+				long start = Math.max(now, nextRead);
+				nextRead = start + TimeUnit.SECONDS.toNanos(bytes) / readRate;
+				wait = start - now;
+			}
+			sleep(wait);
+		}
+	}
+
+	/**
+	 * Pauses according to the pacing factor, after a document has been created.
+	 *
+	 * @param start
+	 *              the value of {@link System#nanoTime()} when the creation started
+	 */
+	void pace(long start) {
+		pace(start, System.nanoTime());
+	}
+
+	/**
+	 * Pauses according to the pacing factor, for a document that has been created by another thread.
+	 *
+	 * @param start
+	 *              the value of {@link System#nanoTime()} when the creation started
+	 * @param end
+	 *              the value of {@link System#nanoTime()} when the creation ended
+	 */
+	void pace(long start, long end) {
+		if (pacing > 0) {
+			sleep((long) ((end - start) * pacing));
+		}
+	}
+
+	/**
+	 * Whether the deadline has passed, so no further documents should be created.
+	 */
+	boolean isExpired() {
+		return deadline > 0 && System.currentTimeMillis() >= deadline;
+	}
+
+	boolean isActive() {
+		return readRate > 0 || pacing > 0 || deadline > 0;
+	}
+
+	private void sleep(long nanos) {
+		if (nanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -22,12 +22,15 @@ import org.appng.api.ScheduledJobResult;
 import org.appng.api.ScheduledJobResult.ExecutionResult;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
+import org.appng.application.scheduler.service.JobCounterService;
 import org.appng.application.scheduler.service.JobRecordService;
+import org.appng.application.scheduler.service.JobRecordService.CleanUpResult;
 
 import lombok.Data;
 
 /**
- * A {@link ScheduledJob} to remove old job records from the database.
+ * A {@link ScheduledJob} to remove old job records from the database and to maintain the execution counters and
+ * the cached filter values.
  * 
  * @author Claus Stümke
  */
@@ -36,6 +39,8 @@ public class JobRecordHouseKeepingJob implements ScheduledJob {
 
 	private final JobRecordService jobRecordService;
 
+	private final JobCounterService jobCounterService;
+
 	private ScheduledJobResult result;
 
 	private Map<String, Object> jobDataMap;
@@ -43,10 +48,23 @@ public class JobRecordHouseKeepingJob implements ScheduledJob {
 	private String description;
 
 	public void execute(Site site, Application application) throws Exception {
-		Integer deleted = jobRecordService.cleanUp(site, application);
+		CleanUpResult cleanUp = jobRecordService.cleanUp(site, application);
+		jobRecordService.refreshDistinctValues(site.getName());
 		this.result = new ScheduledJobResult();
 		this.result.setResult(ExecutionResult.SUCCESS);
-		this.result.setCustomData(String.format("%s records have been deleted for site %s", deleted, site.getName()));
+		String customData = String.format("%s records have been deleted for site %s in %s chunk(s) within %sms",
+				cleanUp.getDeleted(), site.getName(), cleanUp.getChunks(), cleanUp.getDuration());
+		if (cleanUp.getArchived() > 0) {
+			customData += String.format(", %s of them have been archived", cleanUp.getArchived());
+		}
+		if (!cleanUp.isComplete()) {
+			customData += ", time budget exceeded, remaining records will be deleted by the next run";
+		}
+		if (jobCounterService.isEnabled()) {
+			int days = jobCounterService.maintain(site.getName(), jobRecordService.getOutdated(application));
+			customData += String.format(", counters of %s day(s) have been rebuilt", days);
+		}
+		this.result.setCustomData(customData);
 	}
 
 }
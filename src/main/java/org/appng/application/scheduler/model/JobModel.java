@@ -15,9 +15,11 @@
  */
 package org.appng.application.scheduler.model;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -30,13 +32,15 @@ import org.appng.api.model.Site;
 import org.appng.application.scheduler.Constants;
 import org.appng.application.scheduler.MessageConstants;
 import org.appng.application.scheduler.SchedulerUtils;
-import org.quartz.CronTrigger;
+import org.appng.application.scheduler.quartz.JobOverview;
+import org.appng.application.scheduler.quartz.JobOverview.TriggerOverview;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.springframework.context.MessageSource;
 
@@ -66,6 +70,7 @@ public class JobModel implements Named<String>, Comparable<Named<String>> {
 	private boolean beanAvailable;
 	private String stateName;
 	private String jobData;
+	private Map<String, Object> jobDataMap;
 
 	private static final ObjectWriter JSON_WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
 
@@ -89,8 +94,28 @@ public class JobModel implements Named<String>, Comparable<Named<String>> {
 		return getName().compareTo(other.getName());
 	}
 
+	/**
+	 * Returns the job data as pretty-printed JSON. The JSON is only created on demand, since it's only shown in the
+	 * detail view.
+	 */
+	public String getJobData() {
+		if (null == jobData && null != jobDataMap) {
+			try {
+				jobData = JSON_WRITER.writeValueAsString(new TreeMap<>(jobDataMap));
+			} catch (JsonProcessingException e) {
+				log.error("error writing job data for " + name, e);
+			}
+		}
+		return jobData;
+	}
+
 	public static List<JobModel> getJobs(Scheduler scheduler, Site site, MessageSource messageSource, Locale locale)
 			throws SchedulerException {
+		List<JobOverview> jobOverviews = new SchedulerUtils(scheduler, null).getJobOverviews(site.getName());
+		if (null != jobOverviews) {
+			return jobOverviews.stream().map(jo -> getJob(jo.getJobKey(), jo.getJobDataMap(), jo.getTriggers(),
+					messageSource, locale, site)).sorted().collect(Collectors.toList());
+		}
 		Set<JobKey> jobKeys = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(site.getName()));
 		return jobKeys.stream().map(jk -> getJob(scheduler, messageSource, locale, jk.getName(), site))
 				.filter(jm -> null != jm).sorted().collect(Collectors.toList());
@@ -98,61 +123,62 @@ public class JobModel implements Named<String>, Comparable<Named<String>> {
 
 	public static JobModel getJob(Scheduler scheduler, MessageSource messageSource, Locale locale, String jobName,
 			Site site) {
-		JobModel jobModel = null;
 		JobKey jobKey = new JobKey(jobName, site.getName());
 		try {
 			JobDetail jobDetail = scheduler.getJobDetail(jobKey);
 			if (null != jobDetail) {
-				JobDataMap jobDataMap = jobDetail.getJobDataMap();
-				String jobClass = jobDataMap.getString(Constants.JOB_SCHEDULED_JOB);
-				String origin = jobDataMap.getString(Constants.JOB_ORIGIN);
-				String beanName = jobDataMap.getString(Constants.JOB_BEAN_NAME);
-				Application application = site.getApplication(origin);
-				jobModel = new JobModel();
-				jobModel.setName(jobName);
-				jobModel.setBeanName(beanName);
-				jobModel.setJobClass(jobClass);
-				jobModel.setOrigin(origin);
-				String jobDataJson = JSON_WRITER.writeValueAsString(new TreeMap<>(jobDataMap));
-				jobModel.setJobData(jobDataJson);
-				boolean beanAvailable = null != application
-						&& null != application.getBean(beanName, ScheduledJob.class);
-				jobModel.setBeanAvailable(beanAvailable);
-
-				String stateKey = beanAvailable ? MessageConstants.JOB_STATE_AVAILABLE
-						: MessageConstants.JOB_STATE_ERROR;
-
-				List<? extends Trigger> triggers = scheduler.getTriggersOfJob(jobDetail.getKey());
-
-				if (triggers.size() > 0) {
-					for (Trigger trigger : triggers) {
-						if (trigger instanceof CronTrigger) {
-							CronTrigger cronTrigger = (CronTrigger) trigger;
-							String cronExpression = cronTrigger.getCronExpression();
-							Date previousFireTime = cronTrigger.getPreviousFireTime();
-							Date nextFireTime = cronTrigger.getNextFireTime();
-							jobModel.setCronExpression(cronExpression);
-							jobModel.setPreviousFireTime(previousFireTime);
-							jobModel.setNextFireTime(nextFireTime);
-							stateKey = MessageConstants.JOB_STATE_SCHEDULED;
-						} else {
-							jobModel.setPreviousFireTime(trigger.getStartTime());
-						}
-					}
-					if (new SchedulerUtils(scheduler, null).isRunning(jobDetail)) {
-						jobModel.setRunning(true);
-						stateKey = MessageConstants.JOB_STATE_RUNNING;
-					}
-				} else {
-					String cronExpression = jobDataMap.getString(Constants.JOB_CRON_EXPRESSION);
-					jobModel.setCronExpression(cronExpression);
+				List<TriggerOverview> triggers = new ArrayList<>();
+				for (Trigger trigger : scheduler.getTriggersOfJob(jobKey)) {
+					triggers.add(TriggerOverview.of(trigger, scheduler.getTriggerState(trigger.getKey())));
 				}
-				String stateName = messageSource.getMessage(stateKey, new Object[0], locale);
-				jobModel.setStateName(stateName);
+				return getJob(jobKey, jobDetail.getJobDataMap(), triggers, messageSource, locale, site);
 			}
-		} catch (SchedulerException | JsonProcessingException e) {
+		} catch (SchedulerException e) {
 			log.error("error creating model for " + jobKey, e);
 		}
+		return null;
+	}
+
+	private static JobModel getJob(JobKey jobKey, JobDataMap jobDataMap, List<TriggerOverview> triggers,
+			MessageSource messageSource, Locale locale, Site site) {
+		String jobClass = jobDataMap.getString(Constants.JOB_SCHEDULED_JOB);
+		String origin = jobDataMap.getString(Constants.JOB_ORIGIN);
+		String beanName = jobDataMap.getString(Constants.JOB_BEAN_NAME);
+		Application application = site.getApplication(origin);
+		JobModel jobModel = new JobModel();
+		jobModel.setName(jobKey.getName());
+		jobModel.setBeanName(beanName);
+		jobModel.setJobClass(jobClass);
+		jobModel.setOrigin(origin);
+		jobModel.setJobDataMap(jobDataMap);
+		boolean beanAvailable = null != application && null != application.getBean(beanName, ScheduledJob.class);
+		jobModel.setBeanAvailable(beanAvailable);
+
+		String stateKey = beanAvailable ? MessageConstants.JOB_STATE_AVAILABLE : MessageConstants.JOB_STATE_ERROR;
+
+		if (triggers.size() > 0) {
+			boolean running = false;
+			for (TriggerOverview trigger : triggers) {
+				if (trigger.isCron()) {
+					jobModel.setCronExpression(trigger.getCronExpression());
+					jobModel.setPreviousFireTime(trigger.getPreviousFireTime());
+					jobModel.setNextFireTime(trigger.getNextFireTime());
+					stateKey = MessageConstants.JOB_STATE_SCHEDULED;
+				} else {
+					jobModel.setPreviousFireTime(trigger.getStartTime());
+				}
+				running |= TriggerState.COMPLETE.equals(trigger.getState());
+			}
+			if (running) {
+				jobModel.setRunning(true);
+				stateKey = MessageConstants.JOB_STATE_RUNNING;
+			}
+		} else {
+			String cronExpression = jobDataMap.getString(Constants.JOB_CRON_EXPRESSION);
+			jobModel.setCronExpression(cronExpression);
+		}
+		String stateName = messageSource.getMessage(stateKey, new Object[0], locale);
+		jobModel.setStateName(stateName);
 		return jobModel;
 	}
 
@@ -22,6 +22,7 @@ import org.appng.api.ScheduledJobResult.ExecutionResult;
 import org.appng.core.domain.JobExecutionRecord;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Data;
 
@@ -47,6 +48,37 @@ public class JobRecord extends JobResult {
 
 	private String stacktraces;
 
+	@JsonIgnore
+	private ExecutionResult executionResult;
+
+	public JobRecord() {
+
+	}
+
+	/**
+	 * Creates a record from the columns of the job record table, used as constructor expression in queries. Since there
+	 * is no custom data, no {@link ScheduledJobResult} is created.
+	 */
+	public JobRecord(Integer id, String siteName, String applicationName, String jobName, String triggerName,
+			boolean runOnce, Integer duration, Date start, Date end, String result, String stacktraces) {
+		this.id = id;
+		setSiteName(siteName);
+		setApplicationName(applicationName);
+		setJobName(jobName);
+		setTriggerName(triggerName);
+		setRunOnce(runOnce);
+		this.duration = null == duration ? null : duration.longValue();
+		this.start = start;
+		this.end = end;
+		this.executionResult = null == result ? null : ExecutionResult.valueOf(result);
+		this.stacktraces = stacktraces;
+	}
+
+	@Override
+	public ExecutionResult getResult() {
+		return null == executionResult ? super.getResult() : executionResult;
+	}
+
 	public static JobRecord fromDomain(JobExecutionRecord r) {
 		JobRecord jobRecord = new JobRecord();
 		jobRecord.setId(r.getId());
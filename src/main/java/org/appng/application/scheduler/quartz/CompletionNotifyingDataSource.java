@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link DataSource} for the transactions the Quartz job store commits by itself (the non-managed transactions of
+ * {@link org.quartz.impl.jdbcjobstore.JobStoreCMT}). Its connections implement {@link TransactionCompletion}, so code
+ * working with such a connection can defer actions until the transaction has been committed or rolled back. Closing a
+ * connection with pending callbacks is treated as a rollback.
+ */
+@Slf4j
+public class CompletionNotifyingDataSource extends DelegatingDataSource {
+
+	/** Receives callbacks to be run when the current transaction of a connection has been completed */
+	public interface TransactionCompletion {
+
+		/**
+		 * Registers a callback for the completion of the current transaction.
+		 *
+		 * @param callback
+		 *                 receives {@code true} if the transaction has been committed, {@code false} otherwise
+		 */
+		void afterCompletion(Consumer<Boolean> callback);
+	}
+
+	public CompletionNotifyingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return notifying(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return notifying(super.getConnection(username, password));
+	}
+
+	private Connection notifying(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Connection.class, TransactionCompletion.class }, new Handler(connection));
+	}
+
+	private static class Handler implements InvocationHandler, TransactionCompletion {
+		private final Connection target;
+		private final List<Consumer<Boolean>> callbacks = new ArrayList<>();
+
+		Handler(Connection target) {
+			this.target = target;
+		}
+
+		public void afterCompletion(Consumer<Boolean> callback) {
+			callbacks.add(callback);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			boolean noArgs = null == args || 0 == args.length;
+			if (TransactionCompletion.class.equals(method.getDeclaringClass())) {
+				afterCompletion(cast(args[0]));
+				return null;
+			} else if ("isWrapperFor".equals(name) && TransactionCompletion.class.equals(args[0])) {
+				return true;
+			} else if ("unwrap".equals(name) && TransactionCompletion.class.equals(args[0])) {
+				return proxy;
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("close".equals(name)) {
+				// not committed
+				completed(false);
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if ("commit".equals(name) && noArgs) {
+				completed(true);
+			} else if ("rollback".equals(name) && noArgs) {
+				completed(false);
+			}
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Consumer<Boolean> cast(Object callback) {
+			return (Consumer<Boolean>) callback;
+		}
+
+		private void completed(boolean committed) {
+			List<Consumer<Boolean>> completed = new ArrayList<>(callbacks);
+			callbacks.clear();
+			for (Consumer<Boolean> callback : completed) {
+				try {
+					callback.accept(committed);
+				} catch (RuntimeException e) {
+					log.warn("error after completing transaction", e);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.impl.jdbcjobstore.DriverDelegate;
+
+/**
+ * Collects the number of calls, the total and maximum time, the number of affected or returned rows and the number of
+ * errors for each method of a {@link DriverDelegate}, which is wrapped by a proxy using
+ * {@link #instrument(DriverDelegate)}. Overloaded methods share their statistics.
+ * 
+ * @see DriverDelegateWrapper#getStatistics(String)
+ */
+public class DelegateStatistics {
+
+	private final Map<String, MethodStatistics> methods = new ConcurrentHashMap<>();
+	private volatile long since = System.currentTimeMillis();
+
+	/**
+	 * Returns a proxy for the given delegate that records statistics for each call.
+	 * 
+	 * @param delegate
+	 *                 the delegate to instrument
+	 * @return the instrumented delegate
+	 */
+	public DriverDelegate instrument(DriverDelegate delegate) {
+		return (DriverDelegate) Proxy.newProxyInstance(DriverDelegate.class.getClassLoader(),
+				new Class<?>[] { DriverDelegate.class }, (proxy, method, args) -> invoke(delegate, method, args));
+	}
+
+	private Object invoke(DriverDelegate delegate, Method method, Object[] args) throws Throwable {
+		if (Object.class.equals(method.getDeclaringClass())) {
+			return method.invoke(delegate, args);
+		}
+		MethodStatistics statistics = methods.computeIfAbsent(method.getName(), MethodStatistics::new);
+		long start = System.nanoTime();
+		try {
+			Object result = method.invoke(delegate, args);
+			statistics.record(System.nanoTime() - start, getRows(result));
+			return result;
+		} catch (InvocationTargetException e) {
+			statistics.record(System.nanoTime() - start, 0);
+			statistics.errors.increment();
+			throw e.getCause();
+		}
+	}
+
+	private static long getRows(Object result) {
+		if (result instanceof Integer) {
+			// the number of updated rows, or the result of a count
+			return Math.max(0, (Integer) result);
+		} else if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		} else if (result instanceof Boolean) {
+			return Boolean.TRUE.equals(result) ? 1 : 0;
+		}
+		return null == result ? 0 : 1;
+	}
+
+	/**
+	 * Returns the statistics of all methods called so far, the most expensive first.
+	 * 
+	 * @return the statistics
+	 */
+	public List<MethodStatistics> getMethods() {
+		List<MethodStatistics> list = new ArrayList<>(methods.values());
+		list.sort(Comparator.comparingLong(MethodStatistics::getTotalNanos).reversed());
+		return list;
+	}
+
+	/**
+	 * Resets all statistics.
+	 */
+	public void reset() {
+		methods.clear();
+		since = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the time in milliseconds since when statistics are collected.
+	 */
+	public long getSince() {
+		return since;
+	}
+
+	public static class MethodStatistics {
+		private final String method;
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+
+		MethodStatistics(String method) {
+			this.method = method;
+		}
+
+		void record(long nanos, long rows) {
+			this.calls.increment();
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+			this.rows.add(rows);
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public long getRows() {
+			return rows.sum();
+		}
+
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		public double getTotalMillis() {
+			return getTotalNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		public double getMaxMillis() {
+			return getMaxNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		public double getAverageMillis() {
+			long count = getCalls();
+			return count == 0 ? 0 : getTotalMillis() / count;
+		}
+	}
+
+}
@@ -16,58 +16,395 @@
 package org.appng.application.scheduler.quartz;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
+import org.appng.application.scheduler.quartz.CompletionNotifyingDataSource.TransactionCompletion;
+import org.appng.application.scheduler.quartz.JobOverview.TriggerOverview;
 import org.quartz.Calendar;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.JobPersistenceException;
+import org.quartz.Trigger.TriggerState;
 import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.Constants;
 import org.quartz.impl.jdbcjobstore.DriverDelegate;
 import org.quartz.impl.jdbcjobstore.FiredTriggerRecord;
 import org.quartz.impl.jdbcjobstore.NoSuchDelegateException;
 import org.quartz.impl.jdbcjobstore.SchedulerStateRecord;
+import org.quartz.impl.jdbcjobstore.StdJDBCConstants;
+import org.quartz.impl.jdbcjobstore.StdJDBCDelegate;
 import org.quartz.impl.jdbcjobstore.TriggerStatus;
+import org.quartz.impl.jdbcjobstore.Util;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.spi.ClassLoadHelper;
 import org.quartz.spi.OperableTrigger;
 import org.quartz.utils.Key;
 import org.slf4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * A custom {@link DriverDelegate} that uses {@link SchedulerJobDetail}. This is a workaround for
  * <a href="https://github.com/quartz-scheduler/quartz/issues/184">Quartz issue #184</a>.
+ * <p>
+ * Optionally, {@link JobDetail}s and {@link Calendar}s are cached, which is enabled by adding
+ * {@value #JOB_DETAIL_CACHE_SIZE}{@code =<max-entries>} (and optionally {@value #JOB_DETAIL_CACHE_TTL}{@code =<seconds>})
+ * to the init string, separated by {@code |}. The cache is invalidated on every write to the respective entry, and
+ * again after the writing transaction has been completed. Until then, no entries are cached, so a concurrent read can
+ * not cache a value that is about to change. The completion is detected through the connection
+ * ({@link CompletionNotifyingDataSource} for the transactions of the job store, a Spring managed transaction otherwise).
+ * Since other cluster nodes may also write to the database, the invalidations of a scheduler can be propagated using
+ * {@link #setInvalidationListener(String, BiConsumer)} after the transaction has been committed, the receiving node
+ * then calls {@link #invalidate(String, JobKey, String)}.
+ * <p>
+ * By adding {@value #STATISTICS}{@code =true} to the init string, the number of calls, the time spent and the number
+ * of rows is recorded for each method of the delegate, see {@link #getStatistics(String)}.
  * 
  * @author Matthias Müller
  */
 public class DriverDelegateWrapper implements DriverDelegate {
 
+	public static final String JOB_DETAIL_CACHE_SIZE = "jobDetailCacheSize";
+	public static final String JOB_DETAIL_CACHE_TTL = "jobDetailCacheTtl";
+	public static final String STATISTICS = "statistics";
+	private static final long DEFAULT_CACHE_TTL = 300;
+
+	// the table prefix is substituted for {0}, like in StdJDBCConstants
+	private static final String PREFIX = StdJDBCConstants.TABLE_PREFIX_SUBST;
+	private static final String SELECT_JOB_DATA = "SELECT JOB_NAME, JOB_DATA FROM " + PREFIX
+			+ Constants.TABLE_JOB_DETAILS + " WHERE SCHED_NAME = ? AND JOB_GROUP = ?";
+	private static final String SELECT_TRIGGERS = "SELECT t.JOB_NAME, t.TRIGGER_NAME, t.TRIGGER_GROUP, t.TRIGGER_STATE, t.START_TIME, t.PREV_FIRE_TIME, t.NEXT_FIRE_TIME, c.CRON_EXPRESSION"
+			+ " FROM " + PREFIX + Constants.TABLE_TRIGGERS + " t LEFT JOIN " + PREFIX + Constants.TABLE_CRON_TRIGGERS
+			+ " c ON c.SCHED_NAME = t.SCHED_NAME AND c.TRIGGER_NAME = t.TRIGGER_NAME AND c.TRIGGER_GROUP = t.TRIGGER_GROUP"
+			+ " WHERE t.SCHED_NAME = ? AND t.JOB_GROUP = ?";
+
+	private static final Map<String, DriverDelegateWrapper> DELEGATES = new ConcurrentHashMap<>();
+	private static final Map<String, DriverDelegateWrapper> CACHING_DELEGATES = new ConcurrentHashMap<>();
+	private static final Map<String, BiConsumer<JobKey, String>> INVALIDATION_LISTENERS = new ConcurrentHashMap<>();
+
 	DriverDelegate delegate;
+	private DriverDelegate target;
+	private DelegateStatistics statistics;
+	private String schedName;
+	private String tablePrefix;
+	private ClassLoadHelper classLoadHelper;
+	private boolean bulkLoading;
+	private Cache<JobKey, JobDetail> jobDetails;
+	private Cache<String, Calendar> calendars;
+	/** incremented on every eviction, a read must not be cached if an eviction happened meanwhile */
+	private final AtomicLong evictions = new AtomicLong();
+	/** the number of invalidations whose transaction has not been completed yet */
+	private final AtomicInteger uncompleted = new AtomicInteger();
 
 	public void initialize(Logger logger, String tablePrefix, String schedName, String instanceId,
 			ClassLoadHelper classLoadHelper, boolean useProperties, String initString) throws NoSuchDelegateException {
 		if (StringUtils.isBlank(initString) || !StringUtils.contains(initString, "delegate=")) {
 			throw new NoSuchDelegateException("initString must contain delegate=<delegate-class-name>");
 		}
-		String[] realDelegate = initString.split("\\|")[0].split("=");
-		String delegateClass = realDelegate[1];
+		Map<String, String> params = new HashMap<>();
+		for (String param : initString.split("\\|")) {
+			params.put(StringUtils.substringBefore(param, "=").trim(), StringUtils.substringAfter(param, "=").trim());
+		}
+		String delegateClass = params.get("delegate");
 		try {
-			this.delegate = classLoadHelper.loadClass(delegateClass, DriverDelegate.class).newInstance();
-			this.delegate.initialize(logger, tablePrefix, schedName, instanceId, classLoadHelper, useProperties, null);
+			this.target = classLoadHelper.loadClass(delegateClass, DriverDelegate.class).newInstance();
+			this.target.initialize(logger, tablePrefix, schedName, instanceId, classLoadHelper, useProperties, null);
 		} catch (ReflectiveOperationException e) {
 			throw new NoSuchDelegateException(delegateClass, e);
 		}
+		this.delegate = target;
+		if (Boolean.parseBoolean(params.get(STATISTICS))) {
+			this.statistics = new DelegateStatistics();
+			this.delegate = statistics.instrument(target);
+			logger.info("collecting statistics for {}", delegateClass);
+		}
+		this.schedName = schedName;
+		this.tablePrefix = tablePrefix;
+		this.classLoadHelper = classLoadHelper;
+		// otherwise, the job data is stored as properties or in a non-standard way
+		this.bulkLoading = !useProperties && target instanceof StdJDBCDelegate;
+		if (null != schedName) {
+			DELEGATES.put(schedName, this);
+		}
+		long cacheSize = Long.parseLong(params.getOrDefault(JOB_DETAIL_CACHE_SIZE, "0"));
+		if (cacheSize > 0) {
+			long ttl = Long.parseLong(params.getOrDefault(JOB_DETAIL_CACHE_TTL, String.valueOf(DEFAULT_CACHE_TTL)));
+			this.jobDetails = CacheBuilder.newBuilder().maximumSize(cacheSize).expireAfterWrite(ttl, TimeUnit.SECONDS)
+					.build();
+			this.calendars = CacheBuilder.newBuilder().maximumSize(cacheSize)
+					.expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+			if (null != schedName) {
+				CACHING_DELEGATES.put(schedName, this);
+			}
+			logger.info("caching up to {} job details and calendars for {}s", cacheSize, ttl);
+		}
+	}
+
+	/**
+	 * Sets the listener to be notified when a cached {@link JobDetail} or {@link Calendar} of the given scheduler has
+	 * been invalidated due to a write operation.
+	 * 
+	 * @param schedName
+	 *                  the name of the scheduler
+	 * @param listener
+	 *                  receives the {@link JobKey} or the name of the calendar (the other one being {@code null}),
+	 *                  both are {@code null} if all entries have been invalidated. Pass {@code null} to remove the
+	 *                  listener.
+	 */
+	public static void setInvalidationListener(String schedName, BiConsumer<JobKey, String> listener) {
+		if (null == listener) {
+			INVALIDATION_LISTENERS.remove(schedName);
+		} else {
+			INVALIDATION_LISTENERS.put(schedName, listener);
+		}
+	}
+
+	/**
+	 * Removes the delegate, the cache and the invalidation listener of the given scheduler, to be called when the scheduler is shut
+	 * down.
+	 * 
+	 * @param schedName
+	 *                  the name of the scheduler
+	 */
+	public static void unregister(String schedName) {
+		DELEGATES.remove(schedName);
+		CACHING_DELEGATES.remove(schedName);
+		INVALIDATION_LISTENERS.remove(schedName);
+	}
+
+	/**
+	 * Invalidates cached entries of the given scheduler without notifying the invalidation listener, used when
+	 * receiving an invalidation from another node.
+	 * 
+	 * @param schedName
+	 *                     the name of the scheduler
+	 * @param jobKey
+	 *                     the {@link JobKey} to invalidate
+	 * @param calendarName
+	 *                     the name of the calendar to invalidate
+	 * @see #setInvalidationListener(String, BiConsumer)
+	 */
+	public static void invalidate(String schedName, JobKey jobKey, String calendarName) {
+		DriverDelegateWrapper wrapper = CACHING_DELEGATES.get(schedName);
+		if (null != wrapper) {
+			wrapper.evict(jobKey, calendarName);
+		}
+	}
+
+	/**
+	 * Returns the delegate of the given scheduler, if it supports bulk loading of jobs.
+	 * 
+	 * @param schedName
+	 *                  the name of the scheduler
+	 * @return the delegate, or {@code null}
+	 * @see #selectJobOverviews(Connection, String)
+	 */
+	public static DriverDelegateWrapper getBulkLoadingDelegate(String schedName) {
+		DriverDelegateWrapper wrapper = DELEGATES.get(schedName);
+		return null == wrapper || !wrapper.bulkLoading ? null : wrapper;
+	}
+
+	/**
+	 * Returns the statistics of the delegate of the given scheduler.
+	 * 
+	 * @param schedName
+	 *                  the name of the scheduler
+	 * @return the statistics, or {@code null} if the scheduler is unknown or no statistics are collected
+	 * @see #STATISTICS
+	 */
+	public static DelegateStatistics getStatistics(String schedName) {
+		DriverDelegateWrapper wrapper = null == schedName ? null : DELEGATES.get(schedName);
+		return null == wrapper ? null : wrapper.statistics;
+	}
+
+	/**
+	 * Selects all jobs of the given group along with their triggers, using one query for the jobs and one for the
+	 * triggers.
+	 * 
+	 * @param conn
+	 *                 the connection to use
+	 * @param jobGroup
+	 *                 the job group
+	 * @return a {@link JobOverview} for each job
+	 */
+	public List<JobOverview> selectJobOverviews(Connection conn, String jobGroup)
+			throws SQLException, IOException, ClassNotFoundException {
+		Map<String, JobOverview> jobs = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement(Util.rtp(SELECT_JOB_DATA, tablePrefix, null))) {
+			ps.setString(1, schedName);
+			ps.setString(2, jobGroup);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					String jobName = rs.getString(1);
+					Map<?, ?> map = readJobData(rs, 2);
+					JobDataMap jobDataMap = null == map ? new JobDataMap() : new JobDataMap(map);
+					jobs.put(jobName, new JobOverview(new JobKey(jobName, jobGroup), jobDataMap, new ArrayList<>()));
+				}
+			}
+		}
+		try (PreparedStatement ps = conn.prepareStatement(Util.rtp(SELECT_TRIGGERS, tablePrefix, null))) {
+			ps.setString(1, schedName);
+			ps.setString(2, jobGroup);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					JobOverview job = jobs.get(rs.getString(1));
+					if (null != job) {
+						TriggerKey triggerKey = new TriggerKey(rs.getString(2), rs.getString(3));
+						job.getTriggers().add(new TriggerOverview(triggerKey, getTriggerState(rs.getString(4)),
+								rs.getString(8), getDate(rs.getLong(5)), getDate(rs.getLong(6)),
+								getDate(rs.getLong(7))));
+					}
+				}
+			}
+		}
+		return new ArrayList<>(jobs.values());
+	}
+
+	/**
+	 * Reads the serialized job data like {@link StdJDBCDelegate} does, but through {@link ResultSet#getBinaryStream(int)},
+	 * which is supported for all the column types the delegates use (BLOB, BYTEA, VARBINARY).
+	 */
+	private Map<?, ?> readJobData(ResultSet rs, int column) throws SQLException, IOException, ClassNotFoundException {
+		try (InputStream in = rs.getBinaryStream(column)) {
+			if (null == in) {
+				return null;
+			}
+			try (ObjectInputStream objects = new ObjectInputStream(in) {
+				@Override
+				protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+					try {
+						return classLoadHelper.loadClass(desc.getName());
+					} catch (ClassNotFoundException e) {
+						return super.resolveClass(desc);
+					}
+				}
+			}) {
+				return (Map<?, ?>) objects.readObject();
+			}
+		}
+	}
+
+	private static Date getDate(long millis) {
+		return millis > 0 ? new Date(millis) : null;
+	}
+
+	// same mapping as JobStoreSupport.getTriggerState(Connection, TriggerKey)
+	private static TriggerState getTriggerState(String state) {
+		if (null == state || Constants.STATE_DELETED.equals(state)) {
+			return TriggerState.NONE;
+		} else if (Constants.STATE_COMPLETE.equals(state)) {
+			return TriggerState.COMPLETE;
+		} else if (Constants.STATE_PAUSED.equals(state) || Constants.STATE_PAUSED_BLOCKED.equals(state)) {
+			return TriggerState.PAUSED;
+		} else if (Constants.STATE_ERROR.equals(state)) {
+			return TriggerState.ERROR;
+		} else if (Constants.STATE_BLOCKED.equals(state)) {
+			return TriggerState.BLOCKED;
+		}
+		return TriggerState.NORMAL;
+	}
+
+	private boolean isCaching() {
+		return null != jobDetails;
+	}
+
+	private void evict(JobKey jobKey, String calendarName) {
+		evictions.incrementAndGet();
+		if (null == jobKey && null == calendarName) {
+			jobDetails.invalidateAll();
+			calendars.invalidateAll();
+		} else if (null != jobKey) {
+			jobDetails.invalidate(jobKey);
+		} else {
+			calendars.invalidate(calendarName);
+		}
+	}
+
+	/**
+	 * Evicts the written entry, and again after the transaction of the given connection has been completed. Only then,
+	 * the invalidation listener is notified, since other nodes would read the previous value before.
+	 */
+	private void invalidate(Connection conn, JobKey jobKey, String calendarName) throws SQLException {
+		if (!isCaching()) {
+			return;
+		}
+		evict(jobKey, calendarName);
+		uncompleted.incrementAndGet();
+		Consumer<Boolean> completion = committed -> completed(jobKey, calendarName, committed);
+		if (conn.getAutoCommit()) {
+			completion.accept(true);
+		} else if (conn.isWrapperFor(TransactionCompletion.class)) {
+			conn.unwrap(TransactionCompletion.class).afterCompletion(completion);
+		} else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					completion.accept(STATUS_COMMITTED == status);
+				}
+			});
+		} else {
+			// the end of the transaction is unknown
+			completion.accept(true);
+		}
+	}
+
+	private void completed(JobKey jobKey, String calendarName, boolean committed) {
+		evict(jobKey, calendarName);
+		uncompleted.decrementAndGet();
+		BiConsumer<JobKey, String> listener = null == schedName ? null : INVALIDATION_LISTENERS.get(schedName);
+		if (committed && null != listener) {
+			listener.accept(jobKey, calendarName);
+		}
+	}
+
+	/**
+	 * Whether a value read after the given number of evictions may be cached.
+	 */
+	private boolean mayCache(long evictionsBeforeRead) {
+		return isCaching() && 0 == uncompleted.get() && evictionsBeforeRead == evictions.get();
 	}
 
 	public SchedulerJobDetail selectJobDetail(Connection conn, JobKey jobKey, ClassLoadHelper loadHelper)
 			throws ClassNotFoundException, IOException, SQLException {
-		JobDetail jobDetail = delegate.selectJobDetail(conn, jobKey, loadHelper);
-		return null != jobDetail ? new SchedulerJobDetail(jobDetail) : null;
+		JobDetail jobDetail = isCaching() ? jobDetails.getIfPresent(jobKey) : null;
+		if (null == jobDetail) {
+			long evictionsBeforeRead = evictions.get();
+			jobDetail = delegate.selectJobDetail(conn, jobKey, loadHelper);
+			if (null == jobDetail) {
+				return null;
+			}
+			if (mayCache(evictionsBeforeRead)) {
+				jobDetails.put(jobKey, (JobDetail) jobDetail.clone());
+			}
+		} else {
+			// the JobDataMap is mutable, so never hand out the cached instance
+			jobDetail = (JobDetail) jobDetail.clone();
+		}
+		return new SchedulerJobDetail(jobDetail);
 	}
 
 	// delegate methods
@@ -112,11 +449,15 @@ public class DriverDelegateWrapper implements DriverDelegate {
 	}
 
 	public int insertJobDetail(Connection conn, JobDetail job) throws IOException, SQLException {
-		return delegate.insertJobDetail(conn, job);
+		int rows = delegate.insertJobDetail(conn, job);
+		invalidate(conn, job.getKey(), null);
+		return rows;
 	}
 
 	public int updateJobDetail(Connection conn, JobDetail job) throws IOException, SQLException {
-		return delegate.updateJobDetail(conn, job);
+		int rows = delegate.updateJobDetail(conn, job);
+		invalidate(conn, job.getKey(), null);
+		return rows;
 	}
 
 	public List<TriggerKey> selectTriggerKeysForJob(Connection conn, JobKey jobKey) throws SQLException {
@@ -124,7 +465,9 @@ public class DriverDelegateWrapper implements DriverDelegate {
 	}
 
 	public int deleteJobDetail(Connection conn, JobKey jobKey) throws SQLException {
-		return delegate.deleteJobDetail(conn, jobKey);
+		int rows = delegate.deleteJobDetail(conn, jobKey);
+		invalidate(conn, jobKey, null);
+		return rows;
 	}
 
 	public boolean isJobNonConcurrent(Connection conn, JobKey jobKey) throws SQLException {
@@ -136,7 +479,9 @@ public class DriverDelegateWrapper implements DriverDelegate {
 	}
 
 	public int updateJobData(Connection conn, JobDetail job) throws IOException, SQLException {
-		return delegate.updateJobData(conn, job);
+		int rows = delegate.updateJobData(conn, job);
+		invalidate(conn, job.getKey(), null);
+		return rows;
 	}
 
 	public int selectNumJobs(Connection conn) throws SQLException {
@@ -296,12 +641,16 @@ public class DriverDelegateWrapper implements DriverDelegate {
 
 	public int insertCalendar(Connection conn, String calendarName, Calendar calendar)
 			throws IOException, SQLException {
-		return delegate.insertCalendar(conn, calendarName, calendar);
+		int rows = delegate.insertCalendar(conn, calendarName, calendar);
+		invalidate(conn, null, calendarName);
+		return rows;
 	}
 
 	public int updateCalendar(Connection conn, String calendarName, Calendar calendar)
 			throws IOException, SQLException {
-		return delegate.updateCalendar(conn, calendarName, calendar);
+		int rows = delegate.updateCalendar(conn, calendarName, calendar);
+		invalidate(conn, null, calendarName);
+		return rows;
 	}
 
 	public boolean calendarExists(Connection conn, String calendarName) throws SQLException {
@@ -310,7 +659,16 @@ public class DriverDelegateWrapper implements DriverDelegate {
 
 	public Calendar selectCalendar(Connection conn, String calendarName)
 			throws ClassNotFoundException, IOException, SQLException {
-		return delegate.selectCalendar(conn, calendarName);
+		Calendar calendar = isCaching() ? calendars.getIfPresent(calendarName) : null;
+		if (null == calendar) {
+			long evictionsBeforeRead = evictions.get();
+			calendar = delegate.selectCalendar(conn, calendarName);
+			if (null != calendar && mayCache(evictionsBeforeRead)) {
+				calendars.put(calendarName, (Calendar) calendar.clone());
+			}
+			return calendar;
+		}
+		return (Calendar) calendar.clone();
 	}
 
 	public boolean calendarIsReferenced(Connection conn, String calendarName) throws SQLException {
@@ -318,7 +676,9 @@ public class DriverDelegateWrapper implements DriverDelegate {
 	}
 
 	public int deleteCalendar(Connection conn, String calendarName) throws SQLException {
-		return delegate.deleteCalendar(conn, calendarName);
+		int rows = delegate.deleteCalendar(conn, calendarName);
+		invalidate(conn, null, calendarName);
+		return rows;
 	}
 
 	public int selectNumCalendars(Connection conn) throws SQLException {
@@ -406,6 +766,7 @@ public class DriverDelegateWrapper implements DriverDelegate {
 
 	public void clearData(Connection conn) throws SQLException {
 		delegate.clearData(conn);
+		invalidate(conn, null, null);
 	}
 
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A single execution of a hard interruptable job. The job runs on a thread of the given executor, while the Quartz
+ * worker calling {@link #run(Runnable)} waits for it to complete. {@link #interrupt()} cancels the job, the worker then
+ * waits at most {@code waitTime} milliseconds for the job to stop. A job that has not been started yet, e.g. because
+ * the executor is busy, is not started at all, and the worker is released immediately.
+ */
+@Slf4j
+public class InterruptableExecution {
+
+	private final ExecutorService executor;
+	private final JobKey jobKey;
+	private final long waitTime;
+	/** claimed either by the job when it starts or by the worker when the job is cancelled before */
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile Future<?> future;
+	private volatile boolean interrupted;
+
+	public InterruptableExecution(ExecutorService executor, JobKey jobKey, long waitTime) {
+		this.executor = executor;
+		this.jobKey = jobKey;
+		this.waitTime = waitTime;
+	}
+
+	/**
+	 * Runs the given job and waits until it has completed or, after an interruption, until it has stopped or
+	 * {@code waitTime} has passed.
+	 *
+	 * @param job
+	 *            the job to run
+	 * @throws JobExecutionException
+	 *                               if the job could not be started or failed with an {@link Error}
+	 */
+	public void run(Runnable job) throws JobExecutionException {
+		try {
+			future = executor.submit(() -> {
+				if (started.compareAndSet(false, true)) {
+					try {
+						job.run();
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			throw new JobExecutionException(String.format("job %s could not be started", jobKey), e);
+		}
+		if (interrupted) {
+			future.cancel(true);
+		}
+		try {
+			future.get();
+		} catch (CancellationException e) {
+			awaitCancellation();
+		} catch (InterruptedException e) {
+			log.info("Worker for job {} was interrupted while waiting", jobKey);
+			future.cancel(true);
+			awaitCancellation();
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new JobExecutionException(e.getCause());
+		}
+	}
+
+	private void awaitCancellation() {
+		if (started.compareAndSet(false, true)) {
+			log.debug("Job {} was cancelled before it started", jobKey);
+			return;
+		}
+		try {
+			if (!done.await(waitTime, TimeUnit.MILLISECONDS)) {
+				log.warn("Job {} did not stop within {}ms after being interrupted", jobKey, waitTime);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Cancels the job, interrupting its thread if it's already running.
+	 */
+	public void interrupt() {
+		interrupted = true;
+		Future<?> running = future;
+		if (null != running) {
+			running.cancel(true);
+		}
+	}
+
+}
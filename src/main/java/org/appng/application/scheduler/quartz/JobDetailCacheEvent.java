@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import org.appng.api.BusinessException;
+import org.appng.api.Environment;
+import org.appng.api.InvalidConfigurationException;
+import org.appng.api.messaging.Event;
+import org.appng.api.model.Site;
+import org.quartz.JobKey;
+
+/**
+ * An {@link Event} informing the other cluster nodes that a {@link org.quartz.JobDetail} or
+ * {@link org.quartz.Calendar} has been written, so the cached copy held by the {@link DriverDelegateWrapper} must be
+ * invalidated.
+ */
+public class JobDetailCacheEvent extends Event {
+
+	private static final long serialVersionUID = -4523218127906744713L;
+	private final String schedulerName;
+	private final JobKey jobKey;
+	private final String calendarName;
+
+	/**
+	 * Creates a new event
+	 * 
+	 * @param siteName
+	 *                      the name of the site
+	 * @param schedulerName
+	 *                      the name of the scheduler
+	 * @param jobKey
+	 *                      the {@link JobKey} to invalidate, may be {@code null}
+	 * @param calendarName
+	 *                      the name of the calendar to invalidate, may be {@code null}
+	 */
+	public JobDetailCacheEvent(String siteName, String schedulerName, JobKey jobKey, String calendarName) {
+		super(siteName);
+		this.schedulerName = schedulerName;
+		this.jobKey = jobKey;
+		this.calendarName = calendarName;
+	}
+
+	public void perform(Environment environment, Site site) throws InvalidConfigurationException, BusinessException {
+		DriverDelegateWrapper.invalidate(schedulerName, jobKey, calendarName);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[site: " + getSiteName() + ", scheduler: " + schedulerName + ", job: "
+				+ jobKey + ", calendar: " + calendarName + "]";
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import java.util.Date;
+import java.util.List;
+
+import org.quartz.CronTrigger;
+import org.quartz.JobDataMap;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The data of a job and its triggers as needed for displaying a list of jobs, read in bulk by
+ * {@link DriverDelegateWrapper#selectJobOverviews(java.sql.Connection, String)}.
+ */
+@Getter
+@AllArgsConstructor
+public class JobOverview {
+
+	private final JobKey jobKey;
+	private final JobDataMap jobDataMap;
+	private final List<TriggerOverview> triggers;
+
+	@Getter
+	@AllArgsConstructor
+	public static class TriggerOverview {
+		private final TriggerKey triggerKey;
+		private final TriggerState state;
+		private final String cronExpression;
+		private final Date startTime;
+		private final Date previousFireTime;
+		private final Date nextFireTime;
+
+		public static TriggerOverview of(Trigger trigger, TriggerState state) {
+			String cronExpression = trigger instanceof CronTrigger ? ((CronTrigger) trigger).getCronExpression()
+					: null;
+			return new TriggerOverview(trigger.getKey(), state, cronExpression, trigger.getStartTime(),
+					trigger.getPreviousFireTime(), trigger.getNextFireTime());
+		}
+
+		public boolean isCron() {
+			return null != cronExpression;
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.impl.jdbcjobstore.Constants;
+import org.quartz.spi.ThreadPool;
+import org.quartz.utils.DBConnectionManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link ThreadPool} that runs each job in a new virtual thread (Java 21+). If virtual threads are disabled or not
+ * supported by the JVM, a cached pool of platform threads is used instead. In both cases, at most {@code threadCount}
+ * jobs run concurrently. Since virtual threads are cheap, this count can be considerably higher than for
+ * {@link org.quartz.simpl.SimpleThreadPool} when jobs are mostly waiting for I/O.
+ * <p>
+ * When {@code minThreadCount} is lower than {@code threadCount} and a {@code dataSource} is set, the number of jobs
+ * that may run concurrently is adapted every {@code adaptInterval} milliseconds according to the
+ * {@link PoolSizingPolicy}, based on the number of due and misfired triggers and the time needed to count them.
+ * <p>
+ * Configured with {@code org.quartz.threadPool.class=org.appng.application.scheduler.quartz.JobThreadPool} and
+ * {@code org.quartz.threadPool.<property>}.
+ */
+@Slf4j
+public class JobThreadPool implements ThreadPool {
+
+	private static final String COUNT_DUE_TRIGGERS = "SELECT COUNT(*), SUM(CASE WHEN NEXT_FIRE_TIME < ? THEN 1 ELSE 0 END) FROM %sTRIGGERS WHERE SCHED_NAME = ? AND TRIGGER_STATE = ? AND NEXT_FIRE_TIME <= ?";
+	/** weight of the latest sample for the moving average of the latency */
+	private static final double LATENCY_WEIGHT = 0.3;
+
+	private final Object lock = new Object();
+	private int threadCount = 10;
+	private int minThreadCount = -1;
+	private boolean virtualThreads = true;
+	private long adaptInterval = 10000;
+	private long latencyThreshold = 200;
+	private long misfireThreshold = 60000;
+	private String dataSource;
+	private String tablePrefix = Constants.DEFAULT_TABLE_PREFIX;
+	private String instanceName = "JobThreadPool";
+
+	private int limit;
+	private int active;
+	private boolean shutdown;
+	private boolean virtual;
+	private double latency = -1;
+	private ThreadFactory threadFactory;
+	private ExecutorService platformExecutor;
+	private ScheduledExecutorService sizer;
+
+	public void initialize() throws SchedulerConfigException {
+		if (threadCount <= 0) {
+			throw new SchedulerConfigException("threadCount must be > 0");
+		}
+		limit = threadCount;
+		String prefix = instanceName + "_Worker-";
+		threadFactory = virtualThreads ? createVirtualThreadFactory(prefix) : null;
+		virtual = null != threadFactory;
+		if (virtual) {
+			log.info("running up to {} jobs in virtual threads", threadCount);
+		} else {
+			AtomicInteger count = new AtomicInteger();
+			threadFactory = r -> new Thread(r, prefix + count.incrementAndGet());
+			// the number of jobs is limited by this pool, a job releases its slot before its thread becomes idle
+			platformExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<>(), threadFactory);
+			log.info("running up to {} jobs in platform threads", threadCount);
+		}
+		if (minThreadCount > 0 && minThreadCount < threadCount && null != dataSource) {
+			PoolSizingPolicy policy = new PoolSizingPolicy(minThreadCount, threadCount, latencyThreshold);
+			sizer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, instanceName + "_PoolSizer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			sizer.scheduleWithFixedDelay(() -> adapt(policy), adaptInterval, adaptInterval, TimeUnit.MILLISECONDS);
+			log.info("adapting the number of concurrent jobs between {} and {}", minThreadCount, threadCount);
+		}
+	}
+
+	/**
+	 * Creates a factory for virtual threads using {@code Thread.ofVirtual().name(prefix, 1).factory()}.
+	 * 
+	 * @return the factory, or {@code null} if virtual threads are not supported by the JVM
+	 */
+	static ThreadFactory createVirtualThreadFactory(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			Method name = builderType.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, prefix, 1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// not available or a preview feature
+			return null;
+		}
+	}
+
+	void adapt(PoolSizingPolicy policy) {
+		try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource)) {
+			long start = System.nanoTime();
+			long now = System.currentTimeMillis();
+			int due;
+			int misfired;
+			try (PreparedStatement ps = connection
+					.prepareStatement(String.format(COUNT_DUE_TRIGGERS, tablePrefix))) {
+				ps.setLong(1, now - misfireThreshold);
+				ps.setString(2, instanceName);
+				ps.setString(3, Constants.STATE_WAITING);
+				ps.setLong(4, now);
+				try (ResultSet rs = ps.executeQuery()) {
+					rs.next();
+					due = rs.getInt(1);
+					misfired = rs.getInt(2);
+				}
+			}
+			double sample = (System.nanoTime() - start) / 1000000d;
+			synchronized (lock) {
+				latency = latency < 0 ? sample : LATENCY_WEIGHT * sample + (1 - LATENCY_WEIGHT) * latency;
+				int next = policy.adapt(limit, active, due, misfired, latency);
+				if (next != limit) {
+					log.debug("changing limit of concurrent jobs from {} to {} ({} active, {} due, {} misfired, {}ms latency)",
+							limit, next, active, due, misfired, Math.round(latency));
+					limit = next;
+					lock.notifyAll();
+				}
+			}
+		} catch (SQLException | RuntimeException e) {
+			log.debug("error while adapting the limit of concurrent jobs", e);
+		}
+	}
+
+	public boolean runInThread(Runnable runnable) {
+		if (null == runnable) {
+			return false;
+		}
+		synchronized (lock) {
+			while (active >= limit && !shutdown) {
+				try {
+					lock.wait(500);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			if (shutdown) {
+				return false;
+			}
+			active++;
+		}
+		Runnable job = () -> {
+			try {
+				runnable.run();
+			} catch (RuntimeException e) {
+				log.error("error while executing job", e);
+			} finally {
+				release();
+			}
+		};
+		try {
+			if (virtual) {
+				threadFactory.newThread(job).start();
+			} else {
+				platformExecutor.execute(job);
+			}
+		} catch (RuntimeException e) {
+			release();
+			log.error("error starting thread", e);
+			return false;
+		}
+		return true;
+	}
+
+	private void release() {
+		synchronized (lock) {
+			active--;
+			lock.notifyAll();
+		}
+	}
+
+	public int blockForAvailableThreads() {
+		synchronized (lock) {
+			while (active >= limit && !shutdown) {
+				try {
+					lock.wait(500);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return Math.max(0, limit - active);
+		}
+	}
+
+	public void shutdown(boolean waitForJobsToComplete) {
+		if (null != sizer) {
+			sizer.shutdownNow();
+		}
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+			if (waitForJobsToComplete) {
+				while (active > 0) {
+					try {
+						lock.wait(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+		}
+		if (null != platformExecutor) {
+			platformExecutor.shutdown();
+		}
+	}
+
+	public int getPoolSize() {
+		return threadCount;
+	}
+
+	/**
+	 * Returns the number of jobs that may currently run concurrently.
+	 */
+	public int getLimit() {
+		synchronized (lock) {
+			return limit;
+		}
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public int getMinThreadCount() {
+		return minThreadCount;
+	}
+
+	public void setMinThreadCount(int minThreadCount) {
+		this.minThreadCount = minThreadCount;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public long getAdaptInterval() {
+		return adaptInterval;
+	}
+
+	public void setAdaptInterval(long adaptInterval) {
+		this.adaptInterval = adaptInterval;
+	}
+
+	public long getLatencyThreshold() {
+		return latencyThreshold;
+	}
+
+	public void setLatencyThreshold(long latencyThreshold) {
+		this.latencyThreshold = latencyThreshold;
+	}
+
+	public long getMisfireThreshold() {
+		return misfireThreshold;
+	}
+
+	public void setMisfireThreshold(long misfireThreshold) {
+		this.misfireThreshold = misfireThreshold;
+	}
+
+	public String getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(String dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public String getTablePrefix() {
+		return tablePrefix;
+	}
+
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	public void setInstanceId(String schedInstId) {
+	}
+
+	public void setInstanceName(String schedName) {
+		this.instanceName = schedName;
+	}
+
+}
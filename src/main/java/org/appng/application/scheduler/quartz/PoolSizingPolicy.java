@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.quartz;
+
+/**
+ * Computes the number of jobs a {@link JobThreadPool} may run concurrently, following an AIMD (additive increase,
+ * multiplicative decrease) scheme:
+ * <ul>
+ * <li>when the database is slow, the limit is halved, since more concurrent jobs would only add to the load</li>
+ * <li>when triggers are due or misfired but can't be acquired because all threads are busy, the limit is increased
+ * by one</li>
+ * <li>when there's no backlog and less than half of the threads are busy, the limit is decreased by one</li>
+ * </ul>
+ * The limit always stays between the configured bounds.
+ */
+public class PoolSizingPolicy {
+
+	private final int min;
+	private final int max;
+	private final long latencyThreshold;
+
+	/**
+	 * @param min
+	 *                         the minimum limit
+	 * @param max
+	 *                         the maximum limit
+	 * @param latencyThreshold
+	 *                         the database latency in milliseconds above which the database is considered slow
+	 */
+	public PoolSizingPolicy(int min, int max, long latencyThreshold) {
+		this.min = Math.max(1, Math.min(min, max));
+		this.max = Math.max(1, max);
+		this.latencyThreshold = latencyThreshold;
+	}
+
+	/**
+	 * Computes the new limit.
+	 * 
+	 * @param limit
+	 *                  the current limit
+	 * @param active
+	 *                  the number of running jobs
+	 * @param due
+	 *                  the number of triggers that are due, but have not been acquired yet
+	 * @param misfired
+	 *                  the number of misfired triggers
+	 * @param latency
+	 *                  the observed database latency in milliseconds
+	 * @return the new limit
+	 */
+	public int adapt(int limit, int active, int due, int misfired, double latency) {
+		int next = limit;
+		if (latency > latencyThreshold) {
+			next = limit / 2;
+		} else if ((due > 0 || misfired > 0) && active >= limit) {
+			next = limit + 1;
+		} else if (due == 0 && misfired == 0 && active < limit / 2) {
+			next = limit - 1;
+		}
+		return Math.max(min, Math.min(max, next));
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+}
@@ -19,6 +19,8 @@ import java.util.Date;
 
 import org.appng.application.scheduler.model.JobResult;
 import org.appng.application.scheduler.service.JobRecordService;
+import org.appng.application.scheduler.service.JobRecordWriter;
+import org.appng.application.scheduler.service.SchedulerMetrics;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.quartz.JobListener;
@@ -28,20 +30,23 @@ import org.springframework.stereotype.Component;
 
 /**
  * A {@link JobListener} to be added to the {@link Scheduler} to get triggered when a job has ended. It saves some data
- * about the job in a database. Such as start- and endtime, runtime and result.
+ * about the job in a database. Such as start- and endtime, runtime and result. Writing is delegated to the
+ * {@link JobRecordWriter}, which may do so asynchronously. Additionally, the {@link SchedulerMetrics} are updated.
  * 
  * @author Claus Stümke
  */
 @Component
 public class RecordingJobListener implements JobListener {
 
-	private JobRecordService jobRecordService;
+	private JobRecordWriter jobRecordWriter;
+	private SchedulerMetrics schedulerMetrics;
 
 	@Value("${enableJobRecord:true}")
 	private boolean enabled;
 
-	public RecordingJobListener(JobRecordService jobRecordService) {
-		this.jobRecordService = jobRecordService;
+	public RecordingJobListener(JobRecordWriter jobRecordWriter, SchedulerMetrics schedulerMetrics) {
+		this.jobRecordWriter = jobRecordWriter;
+		this.schedulerMetrics = schedulerMetrics;
 	}
 
 	@Override
@@ -51,7 +56,7 @@ public class RecordingJobListener implements JobListener {
 
 	@Override
 	public void jobToBeExecuted(JobExecutionContext context) {
-		// we are not interested on jobs to be executed, we just want to get triggered when the job is done
+		schedulerMetrics.jobStarted(context);
 	}
 
 	@Override
@@ -61,12 +66,13 @@ public class RecordingJobListener implements JobListener {
 
 	@Override
 	public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+		schedulerMetrics.jobExecuted(context, jobException);
 		if (enabled) {
 			Object result = context.getResult();
 			if (result instanceof JobResult) {
-				jobRecordService.recordJob((JobResult) result, context.getFireTime(), new Date(),
-						context.getJobRunTime(), context.getJobDetail().getJobDataMap(), jobException,
-						context.getTrigger().getKey().toString());
+				jobRecordWriter.write(JobRecordService.createRecord((JobResult) result, context.getFireTime(),
+						new Date(), context.getJobRunTime(), context.getJobDetail().getJobDataMap(), jobException,
+						context.getTrigger().getKey().toString()));
 			}
 		}
 	}
@@ -15,6 +15,8 @@
  */
 package org.appng.application.scheduler.quartz;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
@@ -39,6 +41,7 @@ import org.quartz.spi.JobFactory;
 import org.quartz.spi.TriggerFiredBundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.scheduling.quartz.AdaptableJobFactory;
@@ -50,7 +53,7 @@ import org.springframework.web.context.WebApplicationContext;
  * @author Matthias Müller
  * @author Claus Stümke
  */
-public class SpringQuartzSchedulerFactory extends AdaptableJobFactory {
+public class SpringQuartzSchedulerFactory extends AdaptableJobFactory implements DisposableBean {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SpringQuartzSchedulerFactory.class);
 
@@ -59,6 +62,8 @@ public class SpringQuartzSchedulerFactory extends AdaptableJobFactory {
 
 	private AtomicInteger id = new AtomicInteger(1);
 
+	private ExecutorService executor;
+
 	@Override
 	protected Job createJobInstance(TriggerFiredBundle bundle) throws Exception {
 		final JobDetail jobDetail = bundle.getJobDetail();
@@ -102,10 +107,12 @@ public class SpringQuartzSchedulerFactory extends AdaptableJobFactory {
 
 	/**
 	 * Returns an {@link InterruptableJob} that is is being interrupted by quartz when shutting down a {@link Scheduler}
-	 * , e.g. on site reload. This is done by using a separate thread, which is interrupted when
-	 * {@link InterruptableJob#interrupt()} is being called. It does not care about open resources, so use
-	 * {@value #JOBDATA_HARD_INTERRUPTABLE}{@code =true} only for {@link ScheduledJob}s that can safely be stopped by
-	 * interrupting its thread.
+	 * , e.g. on site reload. This is done by running the job in a separate thread, which is interrupted when
+	 * {@link InterruptableJob#interrupt()} is being called. The Quartz worker thread waits for the job to complete and
+	 * is released as soon as it does. After an interruption, the worker waits at most {@code interruptableWaitTime}
+	 * milliseconds for the job to stop (see {@link InterruptableExecution}). It does not care about open resources, so use
+	 * {@value Constants#JOB_HARD_INTERRUPTABLE}{@code =true} only for {@link ScheduledJob}s that can safely be stopped
+	 * by interrupting its thread.
 	 */
 	private Job getInterruptableJob(final JobDetail jobDetail, final JobKey jobKey, final Site site,
 			final Environment environment, final String eventId) {
@@ -114,13 +121,17 @@ public class SpringQuartzSchedulerFactory extends AdaptableJobFactory {
 		final Integer waitTime = platformProps.getInteger("interruptableWaitTime", 5000);
 
 		return new InterruptableJob() {
-			private Thread thread;
+			private final InterruptableExecution execution = new InterruptableExecution(getExecutor(), jobKey,
+					waitTime);
 
 			public void execute(JobExecutionContext context) throws JobExecutionException {
 				final RunJobEvent runJobEvent = new RunJobEvent(eventId, jobKey, site.getName());
-				Runnable runnable = new Runnable() {
-					@Override
-					public void run() {
+				// run the job in a separate thread so it can be interrupted.
+				execution.run(() -> {
+					Thread current = Thread.currentThread();
+					String threadName = current.getName();
+					current.setName(jobKey.getName());
+					try {
 						try {
 							runJobEvent.perform(environment, site);
 							context.setResult(runJobEvent.getJobResult());
@@ -129,28 +140,37 @@ public class SpringQuartzSchedulerFactory extends AdaptableJobFactory {
 							LOGGER.error("Caught Exception on job execution: ", e);
 						}
 						sendRunOnceEvent(jobDetail, jobKey, site, runJobEvent);
+					} finally {
+						current.setName(threadName);
 					}
-				};
-				// run the job in a separate thread so it can be interrupted.
-				thread = new Thread(runnable, jobKey.getName());
-				thread.start();
-				boolean keepGoing = true;
-				while (keepGoing) {
-					try {
-						Thread.sleep(waitTime);
-					} catch (InterruptedException e) {
-						LOGGER.info("Thread " + thread.getName() + " was interrupted while sleeping");
-					}
-					keepGoing = (thread.isAlive() && !thread.isInterrupted());
-				}
+				});
 			}
 
 			public void interrupt() throws UnableToInterruptJobException {
-				thread.interrupt();
+				execution.interrupt();
 			}
 		};
 	}
 
+	private synchronized ExecutorService getExecutor() {
+		if (null == executor) {
+			AtomicInteger threadId = new AtomicInteger(1);
+			executor = Executors.newCachedThreadPool(r -> {
+				Thread thread = new Thread(r, "InterruptableJob-" + threadId.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	public synchronized void destroy() {
+		if (null != executor) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
 	private void sendRunOnceEvent(final JobDetail jobDetail, final JobKey jobKey, final Site site,
 			RunJobEvent runJobEvent) {
 		if (jobDetail.getJobDataMap().getBoolean(Constants.JOB_RUN_ONCE)) {
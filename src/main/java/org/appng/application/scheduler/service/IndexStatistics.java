@@ -0,0 +1,139 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.NoLockFactory;
+import org.appng.api.SiteProperties;
+import org.appng.api.model.Site;
+import org.springframework.stereotype.Component;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches {@link Stats} about the Lucene index of a site. The number of documents is read from the segment infos of
+ * the latest commit, so no reader has to be opened.
+ * <p>
+ * The index of a site is written by the scheduler of that site, while the index overview is shown by the scheduler
+ * of another site, each having its own instance of this cache. Therefore, a cached entry is not invalidated by the
+ * writer, but validated against the index directory on each access: it is valid as long as neither the modification
+ * time of the directory nor the generation of the latest commit have changed. Both change whenever Lucene creates or
+ * deletes a file, so only the directory itself has to be listed instead of reading the size of each file and the
+ * segment infos.
+ */
+@Slf4j
+@Component
+public class IndexStatistics {
+
+	private final Map<Path, Stats> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the directory of the Lucene index for the given site.
+	 */
+	public static File getIndexPath(Site site) {
+		String siteRoot = site.getProperties().getString(SiteProperties.SITE_ROOT_DIR);
+		String indexdir = site.getProperties().getString(SiteProperties.INDEX_DIR);
+		return new File(siteRoot, indexdir);
+	}
+
+	/**
+	 * Returns the (possibly cached) statistics of the given index directory.
+	 * 
+	 * @param indexPath
+	 *                  the directory of the index
+	 * @return the statistics, or {@code null} if the directory does not exist
+	 */
+	public Stats get(File indexPath) {
+		if (!indexPath.isDirectory()) {
+			return null;
+		}
+		Path path = indexPath.toPath().toAbsolutePath();
+		// read the version before the statistics, so a concurrent change makes the entry outdated
+		String version = getVersion(path);
+		return cache.compute(path, (p, cached) -> {
+			if (null != cached && null != version && version.equals(cached.version)) {
+				return cached;
+			}
+			Stats stats = read(p.toFile());
+			stats.version = version;
+			return stats;
+		});
+	}
+
+	private String getVersion(Path path) {
+		try (FSDirectory dir = FSDirectory.open(path, NoLockFactory.INSTANCE)) {
+			return Files.getLastModifiedTime(path) + "/" + SegmentInfos.getLastCommitGeneration(dir.listAll());
+		} catch (IOException e) {
+			log.debug("error reading version of {} ({})", path, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the statistics of the given index directory.
+	 */
+	static Stats read(File indexPath) {
+		Stats stats = new Stats(indexPath.getAbsolutePath());
+		File[] files = indexPath.listFiles();
+		if (null != files) {
+			for (File file : files) {
+				stats.files++;
+				stats.size += file.length();
+				if (null == stats.lastModified || file.lastModified() > stats.lastModified.getTime()) {
+					stats.lastModified = new Date(file.lastModified());
+				}
+			}
+		}
+		try (FSDirectory dir = FSDirectory.open(indexPath.toPath(), NoLockFactory.INSTANCE)) {
+			for (SegmentCommitInfo segment : SegmentInfos.readLatestCommit(dir)) {
+				stats.numDocs += segment.info.maxDoc() - segment.getDelCount();
+			}
+		} catch (IndexNotFoundException e) {
+			log.debug("no index found in {}", indexPath);
+		} catch (IOException e) {
+			log.error("error reading index in " + indexPath, e);
+		}
+		return stats;
+	}
+
+	@Getter
+	public static class Stats {
+		private final String location;
+		private long numDocs;
+		private long size;
+		private int files;
+		private Date lastModified;
+		@Getter(AccessLevel.NONE)
+		private String version;
+
+		Stats(String location) {
+			this.location = location;
+		}
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.core.domain.JobExecutionRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains pre-aggregated counters of successful and failed job executions per hour and per day, so the number of
+ * executions within a given period can be determined without scanning the records. Hours and days are those of UTC,
+ * independent of the time zone of the server.
+ * <p>
+ * The counters are incremented within the transaction saving the records. Since this only covers the executions since
+ * the feature has been enabled, {@link #maintain(String, Date)} (called by the housekeeping job) rebuilds the counters
+ * from the records. Initially, this is done for the whole history, afterwards only for the previous day, to correct
+ * possible deviations. Counters are only used by {@link #getCounts(String, String, String, Date, Date)} when they are
+ * known to be complete, i.e. when incrementing started before the end of the last rebuild.
+ * <p>
+ * The tables are created by the {@link SchemaMigrationService}.
+ */
+@Slf4j
+@Component
+@DependsOn("schemaMigrationService")
+public class JobCounterService {
+
+	static final String COUNTER_TABLE = "job_execution_counter";
+	static final String STATE_TABLE = "job_execution_counter_state";
+	private static final String RECORD_TABLE = "job_execution_record";
+
+	private static final String UPDATE_COUNTER = "UPDATE " + COUNTER_TABLE
+			+ " SET success = success + ?, failed = failed + ? WHERE site = ? AND application = ? AND job_name = ? AND bucket = ? AND bucket_start = ?";
+	private static final String INSERT_COUNTER = "INSERT INTO " + COUNTER_TABLE
+			+ " (success, failed, site, application, job_name, bucket, bucket_start) VALUES (?, ?, ?, ?, ?, ?, ?)";
+	private static final String BUCKET_RANGE = "(c.bucket = ? AND c.bucket_start >= ? AND c.bucket_start < ?)";
+	private static final String SUM_COUNTERS = "SELECT s.incrementing_since, s.rebuilt_until,"
+			+ " COALESCE(SUM(c.success), 0), COALESCE(SUM(c.failed), 0) FROM " + STATE_TABLE + " s LEFT JOIN "
+			+ COUNTER_TABLE + " c ON c.site = s.site AND c.application = ? AND c.job_name = ? AND (" + BUCKET_RANGE
+			+ " OR " + BUCKET_RANGE + " OR " + BUCKET_RANGE
+			+ ") WHERE s.site = ? GROUP BY s.incrementing_since, s.rebuilt_until";
+	private static final String COUNT_RECORDS = "SELECT result, COUNT(*) FROM " + RECORD_TABLE
+			+ " WHERE site = ? AND application = ? AND job_name = ?"
+			+ " AND ((start_time >= ? AND start_time < ?) OR (start_time >= ? AND start_time <= ?)) GROUP BY result";
+
+	/** The size of a bucket, in UTC */
+	enum Bucket {
+		HOUR("H", ChronoUnit.HOURS), DAY("D", ChronoUnit.DAYS);
+
+		private final String id;
+		private final ChronoUnit unit;
+
+		private Bucket(String id, ChronoUnit unit) {
+			this.id = id;
+			this.unit = unit;
+		}
+
+		Date start(Date date) {
+			return Date.from(Instant.ofEpochMilli(date.getTime()).truncatedTo(unit));
+		}
+
+		Date end(Date date) {
+			Date start = start(date);
+			return start.getTime() == date.getTime() ? start : next(start);
+		}
+
+		Date next(Date start) {
+			return Date.from(start.toInstant().plus(1, unit));
+		}
+
+		Date previous(Date start) {
+			return Date.from(start.toInstant().minus(1, unit));
+		}
+	}
+
+	private final String siteName;
+	private final Clock clock;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private boolean enabled;
+
+	@Autowired
+	public JobCounterService(EntityManagerFactory entityManagerFactory,
+			@Value("${jobCountersEnabled:false}") boolean enabled, @Value("${site.name}") String siteName) {
+		this(entityManagerFactory, enabled, siteName, Clock.systemUTC());
+	}
+
+	public JobCounterService(EntityManagerFactory entityManagerFactory, boolean enabled, String siteName,
+			Clock clock) {
+		this.enabled = enabled;
+		this.siteName = siteName;
+		this.clock = clock;
+		DataSource dataSource = ((EntityManagerFactoryInfo) entityManagerFactory).getDataSource();
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	@PostConstruct
+	public void initialize() {
+		if (!tableExists(STATE_TABLE)) {
+			if (enabled) {
+				log.warn("table {} does not exist, counters are disabled", STATE_TABLE);
+				enabled = false;
+			}
+			return;
+		}
+		if (enabled) {
+			Timestamp now = new Timestamp(clock.millis());
+			jdbcTemplate.update("UPDATE " + STATE_TABLE
+					+ " SET incrementing_since = ? WHERE site = ? AND incrementing_since IS NULL", now, siteName);
+			if (null == getState(siteName)) {
+				jdbcTemplate.update("INSERT INTO " + STATE_TABLE + " (site, incrementing_since) VALUES (?, ?)",
+						siteName, now);
+			}
+		} else {
+			// counters won't be incremented from now on, so they can't be trusted anymore
+			jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET incrementing_since = NULL WHERE site = ?", siteName);
+		}
+	}
+
+	private boolean tableExists(String name) {
+		return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			DatabaseMetaData metaData = connection.getMetaData();
+			for (String tableName : Arrays.asList(name, name.toUpperCase())) {
+				try (ResultSet tables = metaData.getTables(null, null, tableName, new String[] { "TABLE" })) {
+					if (tables.next()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		});
+	}
+
+	private Date[] getState(String site) {
+		List<Date[]> state = jdbcTemplate.query(
+				"SELECT incrementing_since, rebuilt_until FROM " + STATE_TABLE + " WHERE site = ?",
+				(rs, i) -> new Date[] { rs.getTimestamp(1), rs.getTimestamp(2) }, site);
+		return state.isEmpty() ? null : state.get(0);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Increments the counters for the given records, within the current transaction (if any). A failure does not
+	 * affect the records, the counters are then corrected by the next housekeeping.
+	 *
+	 * @param records
+	 *                the records that have been saved
+	 */
+	public void recorded(Collection<JobExecutionRecord> records) {
+		if (!enabled || records.isEmpty()) {
+			return;
+		}
+		Map<Key, int[]> counters = new HashMap<>();
+		for (JobExecutionRecord record : records) {
+			boolean success = ExecutionResult.SUCCESS.name().equals(record.getResult());
+			for (Bucket bucket : Bucket.values()) {
+				Key key = new Key(record.getSite(), record.getApplication(), record.getJobName(), bucket,
+						bucket.start(record.getStartTime()));
+				counters.computeIfAbsent(key, k -> new int[2])[success ? 0 : 1]++;
+			}
+		}
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			// some databases abort the whole transaction on an error, so roll back to where the counting started
+			Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+			try {
+				for (Map.Entry<Key, int[]> counter : counters.entrySet()) {
+					increment(connection, counter.getKey(), counter.getValue());
+				}
+			} catch (RuntimeException e) {
+				if (null != savepoint) {
+					connection.rollback(savepoint);
+				}
+				log.warn("error while incrementing counters, they will be corrected by the next housekeeping", e);
+			}
+			return null;
+		});
+	}
+
+	private void increment(Connection connection, Key key, int[] count) throws SQLException {
+		Object[] args = key.args(count[0], count[1]);
+		if (0 == jdbcTemplate.update(UPDATE_COUNTER, args)) {
+			Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+			try {
+				jdbcTemplate.update(INSERT_COUNTER, args);
+			} catch (DuplicateKeyException e) {
+				// inserted concurrently by another thread or node
+				if (null != savepoint) {
+					connection.rollback(savepoint);
+				}
+				jdbcTemplate.update(UPDATE_COUNTER, args);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of successful and failed executions of a job within the given period.
+	 *
+	 * @param site
+	 *                    the name of the site
+	 * @param application
+	 *                    the name of the application
+	 * @param jobName
+	 *                    the name of the job
+	 * @param from
+	 *                    the start of the period (inclusive)
+	 * @param to
+	 *                    the end of the period (inclusive)
+	 * @return an array containing the number of successful and failed executions, or {@code null} if the counters are
+	 *         disabled or not complete yet
+	 */
+	public int[] getCounts(String site, String application, String jobName, Date from, Date to) {
+		if (!enabled || null == from) {
+			return null;
+		}
+
+		// raw records for the incomplete hours at both ends, full days in between, full hours otherwise
+		Date hourStart = Bucket.HOUR.end(from);
+		Date hourEnd = Bucket.HOUR.start(to);
+		Date dayStart = Bucket.DAY.end(hourStart);
+		Date dayEnd = Bucket.DAY.start(hourEnd);
+		if (!hourStart.before(hourEnd)) {
+			hourStart = hourEnd = dayStart = dayEnd = from;
+		} else if (!dayStart.before(dayEnd)) {
+			dayStart = dayEnd = hourEnd;
+		}
+
+		int[] counts = new int[2];
+		List<Date[]> state = jdbcTemplate.query(SUM_COUNTERS, (rs, i) -> {
+			counts[0] += rs.getInt(3);
+			counts[1] += rs.getInt(4);
+			return new Date[] { rs.getTimestamp(1), rs.getTimestamp(2) };
+		}, application, jobName, Bucket.HOUR.id, timestamp(hourStart), timestamp(dayStart), Bucket.DAY.id,
+				timestamp(dayStart), timestamp(dayEnd), Bucket.HOUR.id, timestamp(dayEnd), timestamp(hourEnd), site);
+		if (state.isEmpty() || null == state.get(0)[0] || null == state.get(0)[1]
+				|| state.get(0)[0].after(state.get(0)[1])) {
+			return null;
+		}
+
+		jdbcTemplate.query(COUNT_RECORDS, rs -> {
+			counts[ExecutionResult.SUCCESS.name().equals(rs.getString(1)) ? 0 : 1] += rs.getInt(2);
+		}, site, application, jobName, timestamp(from), timestamp(hourStart), timestamp(hourEnd), timestamp(to));
+		return counts;
+	}
+
+	private static Timestamp timestamp(Date date) {
+		return new Timestamp(date.getTime());
+	}
+
+	/**
+	 * Rebuilds the counters of the given site from the records, up to the start of the current day. On the first run,
+	 * the whole history is processed, afterwards the day before the last rebuild. Also removes outdated counters.
+	 *
+	 * @param site
+	 *                 the name of the site
+	 * @param outdated
+	 *                 counters for executions before this date are deleted, may be {@code null}
+	 * @return the number of days that have been rebuilt
+	 */
+	public int maintain(String site, Date outdated) {
+		if (!enabled) {
+			return 0;
+		}
+		if (null != outdated) {
+			jdbcTemplate.update("DELETE FROM " + COUNTER_TABLE + " WHERE site = ? AND bucket_start < ?", site,
+					timestamp(Bucket.DAY.start(outdated)));
+		}
+		Date end = Bucket.DAY.start(new Date(clock.millis()));
+		Date[] state = getState(site);
+		Date day;
+		if (null != state && null != state[1]) {
+			day = Bucket.DAY.previous(state[1]);
+		} else {
+			Timestamp first = jdbcTemplate.queryForObject(
+					"SELECT MIN(start_time) FROM " + RECORD_TABLE + " WHERE site = ?", Timestamp.class, site);
+			day = null == first ? end : Bucket.DAY.start(first);
+		}
+		int days = 0;
+		for (; day.before(end); day = Bucket.DAY.next(day), days++) {
+			rebuild(site, day, Bucket.DAY.next(day));
+		}
+		jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET rebuilt_until = ? WHERE site = ?", timestamp(end), site);
+		log.debug("rebuilt counters of {} day(s) for site {}", days, site);
+		return days;
+	}
+
+	private void rebuild(String site, Date from, Date to) {
+		Timestamp start = timestamp(from);
+		Timestamp end = timestamp(to);
+		transactionTemplate.execute(s -> {
+			Map<Key, int[]> counters = new HashMap<>();
+			jdbcTemplate.query("SELECT application, job_name, result, start_time FROM " + RECORD_TABLE
+					+ " WHERE site = ? AND start_time >= ? AND start_time < ?", rs -> {
+						boolean success = ExecutionResult.SUCCESS.name().equals(rs.getString(3));
+						Date startTime = rs.getTimestamp(4);
+						for (Bucket bucket : Bucket.values()) {
+							Key key = new Key(site, rs.getString(1), rs.getString(2), bucket, bucket.start(startTime));
+							counters.computeIfAbsent(key, k -> new int[2])[success ? 0 : 1]++;
+						}
+					}, site, start, end);
+			jdbcTemplate.update(
+					"DELETE FROM " + COUNTER_TABLE + " WHERE site = ? AND bucket_start >= ? AND bucket_start < ?",
+					site, start, end);
+			List<Object[]> args = new ArrayList<>();
+			counters.forEach((k, v) -> args.add(k.args(v[0], v[1])));
+			jdbcTemplate.batchUpdate(INSERT_COUNTER, args);
+			return null;
+		});
+	}
+
+	@AllArgsConstructor
+	@EqualsAndHashCode
+	private static class Key {
+		private final String site;
+		private final String application;
+		private final String jobName;
+		private final Bucket bucket;
+		private final Date start;
+
+		Object[] args(int success, int failed) {
+			return new Object[] { success, failed, site, StringUtils.defaultString(application),
+					StringUtils.defaultString(jobName), bucket.id, timestamp(start) };
+		}
+	}
+
+}
@@ -15,12 +15,36 @@
  */
 package org.appng.application.scheduler.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import javax.sql.DataSource;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.appng.api.ScheduledJobResult;
 import org.appng.api.ScheduledJobResult.ExecutionResult;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
@@ -34,14 +58,28 @@ import org.appng.core.repository.JobRecordRepository;
 import org.appng.persistence.repository.SearchQuery;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service class to deal with saving, deleting and querying for saved job
@@ -50,8 +88,8 @@ import lombok.RequiredArgsConstructor;
  * @author Claus Stümke
  * @author Matthias Müller
  */
+@Slf4j
 @Component
-@RequiredArgsConstructor
 @Transactional(transactionManager = "coreTxManager")
 public class JobRecordService {
 
@@ -61,14 +99,112 @@ public class JobRecordService {
 	private static final String FIELD_JOB_NAME = "jobName";
 	private static final String FIELD_SITE = "site";
 	private static final String FIELD_APPLICATION = "application";
+	private static final String SELECT_OUTDATED = "SELECT id FROM job_execution_record WHERE site = ? AND start_time <= ? ORDER BY id";
+	private static final String SELECT_STREAM = "SELECT id, site, application, job_name, triggername, result, run_once, duration, start_time, end_time, stacktraces FROM job_execution_record";
+	private static final int STREAM_PAGE_SIZE = 500;
+	private static final String COUNT_RESULTS = "SELECT job_name, result%s FROM job_execution_record WHERE site = ? AND start_time <= ?%s GROUP BY job_name, result";
+	private static final String SELECT_OLDEST = "SELECT MIN(start_time) FROM job_execution_record WHERE site = ?";
+	private static final String SELECT_FIRST_RUNS = "SELECT job_name, MIN(start_time) FROM job_execution_record WHERE site = ? GROUP BY job_name";
+	private static final String DELETE_OUTDATED = "DELETE FROM job_execution_record WHERE site = ? AND start_time <= ? AND id >= ? AND id <= ?";
+	private static final String SELECT_RECORDS = "SELECT NEW " + JobRecord.class.getName()
+			+ "(r.id, r.site, r.application, r.jobName, r.triggername, r.runOnce, r.duration, r.startTime, r.endTime, r.result, r.stacktraces) FROM JobExecutionRecord r";
+	private static final String COUNT_RECORDS = "SELECT COUNT(r) FROM JobRecord r";
+	private static final List<String> SORT_FIELDS = Arrays.asList("id", FIELD_SITE, FIELD_APPLICATION, FIELD_JOB_NAME,
+			"triggername", "runOnce", FIELD_DURATION, FIELD_START, "endTime", FIELD_RESULT);
+
+	/** Defines how the total number of records is determined when paging through the records */
+	public enum PagingTotal {
+		/** the records are counted for each page */
+		EXACT,
+		/** the records are counted for the first page, pages reached by a {@link PageCursor} reuse that count */
+		ESTIMATED,
+		/** the records are never counted, only whether there's a next page is known */
+		UNKNOWN;
+	}
 
 	private final JobExecutionRecordRepository recordRepositoryFull;
 
 	private final JobRecordRepository recordRepository;
 
+	private final JobCounterService jobCounterService;
+
+	private final int cleanUpChunkSize;
+
+	private final int cleanUpTimeBudget;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JdbcTemplate chunkTemplate;
+
+	private final TransactionTemplate cleanUpTransaction;
+
+	private final long filterValuesLifetime;
+
+	private final Map<String, FilterValues> filterValues = new ConcurrentHashMap<>();
+
+	private final EntityManager entityManager;
+
+	private final PagingTotal pagingTotal;
+
+	private final RecordArchive recordArchive;
+
+	private final StacktraceService stacktraceService;
+
+	public JobRecordService(JobExecutionRecordRepository recordRepositoryFull, JobRecordRepository recordRepository,
+			JobCounterService jobCounterService, EntityManagerFactory entityManagerFactory,
+			@Value("${recordCleanUpChunkSize:1000}") int cleanUpChunkSize,
+			@Value("${recordCleanUpTimeBudget:300}") int cleanUpTimeBudget,
+			@Value("${recordFilterCacheLifetime:3600}") int filterValuesLifetime,
+			@Value("${recordPagingTotal:EXACT}") PagingTotal pagingTotal, RecordArchive recordArchive,
+			StacktraceService stacktraceService) {
+		this.recordRepositoryFull = recordRepositoryFull;
+		this.recordRepository = recordRepository;
+		this.jobCounterService = jobCounterService;
+		this.cleanUpChunkSize = Math.max(1, cleanUpChunkSize);
+		this.cleanUpTimeBudget = cleanUpTimeBudget;
+		this.filterValuesLifetime = TimeUnit.SECONDS.toMillis(filterValuesLifetime);
+		this.pagingTotal = pagingTotal;
+		this.recordArchive = recordArchive;
+		this.stacktraceService = stacktraceService;
+		this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+		DataSource dataSource = ((EntityManagerFactoryInfo) entityManagerFactory).getDataSource();
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.chunkTemplate = new JdbcTemplate(dataSource);
+		this.chunkTemplate.setMaxRows(this.cleanUpChunkSize);
+		this.cleanUpTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.cleanUpTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
 	public void recordJob(JobResult jobResult, Date fireTime, Date endTime, long jobRunTime, JobDataMap jobDataMap,
 			JobExecutionException jobException, String triggerName) {
+		saveRecords(Collections.singletonList(
+				createRecord(jobResult, fireTime, endTime, jobRunTime, jobDataMap, jobException, triggerName)));
+	}
+
+	/**
+	 * Saves the given records within a single transaction. Their stacktraces are replaced by references to the
+	 * deduplicated stacktraces (see {@link StacktraceService}).
+	 * 
+	 * @param records
+	 *                the records to save
+	 */
+	public void saveRecords(Collection<JobExecutionRecord> records) {
+		stacktraceService.deduplicate(records);
+		recordRepositoryFull.save(records);
+		jobCounterService.recorded(records);
+		for (JobExecutionRecord record : records) {
+			FilterValues values = filterValues.get(record.getSite());
+			if (null != values) {
+				values.add(record.getApplication(), record.getJobName());
+			}
+		}
+	}
 
+	/**
+	 * Creates a new, unsaved {@link JobExecutionRecord}.
+	 */
+	public static JobExecutionRecord createRecord(JobResult jobResult, Date fireTime, Date endTime, long jobRunTime,
+			JobDataMap jobDataMap, JobExecutionException jobException, String triggerName) {
 		ExecutionResult result = getResult(jobResult, jobException);
 		JobExecutionRecord record = new JobExecutionRecord();
 		record.setApplication(jobResult.getApplicationName());
@@ -82,11 +218,10 @@ public class JobRecordService {
 		record.setStacktraces(null == jobException ? null : ExceptionUtils.getStackTrace(jobException));
 		record.setCustomData(jobResult.getCustomData());
 		record.setTriggername(triggerName);
-
-		recordRepositoryFull.save(record);
+		return record;
 	}
 
-	private ExecutionResult getResult(JobResult jobResult, JobExecutionException jobException) {
+	static ExecutionResult getResult(JobResult jobResult, JobExecutionException jobException) {
 		// if the result is set, take it otherwise set it depending on the existence of
 		// an exception
 		if (null != jobResult.getResult()) {
@@ -97,18 +232,365 @@ public class JobRecordService {
 		return ExecutionResult.FAIL;
 	}
 
+	/**
+	 * Returns the distinct job names of the records of the given site, served from a per-site cache (see
+	 * {@link #refreshDistinctValues(String)}).
+	 * 
+	 * @param siteName
+	 *                 the name of the site
+	 * @return a new, modifiable list of job names
+	 */
 	public List<String> getDistinctJobNames(String siteName) {
-		return recordRepository.getDistinctJobNames(siteName);
+		return new ArrayList<>(getFilterValues(siteName).jobNames);
 	}
 
+	/**
+	 * Returns the distinct application names of the records of the given site, served from a per-site cache (see
+	 * {@link #refreshDistinctValues(String)}).
+	 * 
+	 * @param siteName
+	 *                 the name of the site
+	 * @return a new, modifiable list of application names
+	 */
 	public List<String> getDistinctApplications(String siteName) {
-		return recordRepository.getDistinctApplications(siteName);
+		return new ArrayList<>(getFilterValues(siteName).applications);
+	}
+
+	private FilterValues getFilterValues(String siteName) {
+		FilterValues values = filterValues.get(siteName);
+		if (null == values || values.isExpired()) {
+			values = refreshDistinctValues(siteName);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the distinct application and job names of the records of the given site from the database and caches
+	 * them. Saved records add their names to the cache, so the cache is only refreshed when it's empty, after
+	 * {@code recordFilterCacheLifetime} seconds (to pick up records saved by other nodes) and by the housekeeping,
+	 * which removes outdated records.
+	 * 
+	 * @param siteName
+	 *                 the name of the site
+	 * @return the cached values
+	 */
+	public FilterValues refreshDistinctValues(String siteName) {
+		long expires = filterValuesLifetime > 0 ? System.currentTimeMillis() + filterValuesLifetime : Long.MAX_VALUE;
+		FilterValues values = new FilterValues(expires);
+		values.applications.addAll(recordRepository.getDistinctApplications(siteName));
+		values.jobNames.addAll(recordRepository.getDistinctJobNames(siteName));
+		filterValues.put(siteName, values);
+		return values;
+	}
+
+	/** The distinct application and job names of the records of a site */
+	public static class FilterValues {
+		private final Set<String> applications = new ConcurrentSkipListSet<>();
+		private final Set<String> jobNames = new ConcurrentSkipListSet<>();
+		private final long expires;
+
+		FilterValues(long expires) {
+			this.expires = expires;
+		}
+
+		void add(String application, String jobName) {
+			if (null != application) {
+				applications.add(application);
+			}
+			if (null != jobName) {
+				jobNames.add(jobName);
+			}
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() >= expires;
+		}
 	}
 
-	public Page<JobRecord> getRecords(String siteName, String applicationFilter, String jobFilter, Date start, Date end,
+	/**
+	 * Returns the matching records, projected directly into {@link JobRecord}s without loading the entities.
+	 * 
+	 * @see #getRecords(Site, String, String, Date, Date, String, Integer, Pageable, PageCursor)
+	 */
+	public Page<JobRecord> getRecords(Site site, String applicationFilter, String jobFilter, Date start, Date end,
 			String result, Integer duration, Pageable pageable) {
-		return getJobRecords(siteName, applicationFilter, jobFilter, start, end, result, duration, pageable)
-				.map(r -> JobRecord.fromDomain(r));
+		return getRecords(site, applicationFilter, jobFilter, start, end, result, duration, pageable, null);
+	}
+
+	/**
+	 * Returns the matching records, projected directly into {@link JobRecord}s without loading the entities. If the
+	 * records are ordered by start time and id descending (the default), keyset pagination is used: each page provides
+	 * a {@link PageCursor} pointing to its last record. Passing that cursor along with the request for the following
+	 * page reads it by seeking to that record instead of skipping all previous rows. For other orders and without a
+	 * matching cursor, the rows are skipped. The total is determined according to {@code recordPagingTotal} (see
+	 * {@link PagingTotal}).
+	 * <p>
+	 * If the records are ordered by start time and the given start time lies before the latest archived record,
+	 * the matching records of the {@link RecordArchive} are appended to those of the database.
+	 * 
+	 * @param site
+	 *                          the {@link Site}
+	 * @param applicationFilter
+	 *                          the application name, optional
+	 * @param jobFilter
+	 *                          the job name, optional
+	 * @param start
+	 *                          the minimum start time, optional
+	 * @param end
+	 *                          the maximum start time, optional
+	 * @param result
+	 *                          the result, optional
+	 * @param duration
+	 *                          the minimum duration in seconds, optional
+	 * @param pageable
+	 *                          the page to return, {@code null} for all records
+	 * @param cursor
+	 *                          the cursor provided by the previous page, optional
+	 * @return the records
+	 */
+	public RecordPage getRecords(Site site, String applicationFilter, String jobFilter, Date start, Date end,
+			String result, Integer duration, Pageable pageable, PageCursor cursor) {
+		String siteName = site.getName();
+		String application = StringUtils.trimToNull(applicationFilter);
+		String jobName = StringUtils.trimToNull(jobFilter);
+		String executionResult = StringUtils.trimToNull(result);
+		StringBuilder filter = new StringBuilder(" WHERE r.site = :site");
+		Map<String, Object> params = new HashMap<>();
+		params.put(FIELD_SITE, siteName);
+		addFilter(filter, params, FIELD_APPLICATION, "r.application = :application", application);
+		addFilter(filter, params, FIELD_JOB_NAME, "r.jobName = :jobName", jobName);
+		addFilter(filter, params, FIELD_RESULT, "r.result = :result", executionResult);
+		addFilter(filter, params, "startedAfter", "r.startTime >= :startedAfter", start);
+		addFilter(filter, params, "startedBefore", "r.startTime <= :startedBefore", end);
+		addFilter(filter, params, FIELD_DURATION, "r.duration >= :duration", duration);
+
+		// the archived records are older than those in the database, so they follow them when ordered by start time
+		boolean archived = (null == pageable || isKeysetOrder(pageable.getSort())) && recordArchive.reaches(site, start);
+		Date archiveEnd = archived ? getArchiveEnd(siteName, end) : end;
+		boolean unfiltered = null == application && null == jobName && null == executionResult && null == duration;
+		Predicate<JobRecord> matches = unfiltered ? null
+				: r -> (null == application || application.equals(r.getApplicationName()))
+						&& (null == jobName || jobName.equals(r.getJobName()))
+						&& (null == executionResult || executionResult.equals(String.valueOf(r.getResult())))
+						&& (null == duration || (null != r.getDuration() && r.getDuration() >= duration));
+		if (null == pageable) {
+			List<JobRecord> records = resolve(
+					createQuery(SELECT_RECORDS + filter, JobRecord.class, params).getResultList());
+			if (archived) {
+				records = new ArrayList<>(records);
+				records.addAll(recordArchive.getRecords(site, start, archiveEnd, matches));
+			}
+			return new RecordPage(records, null, records.size(), null);
+		}
+
+		RecordPage page = getDatabasePage(filter.toString(), params, start, end, duration, pageable, cursor);
+		if (!archived) {
+			return page;
+		} else if (page.hasNext()) {
+			long total = page.getTotalElements() + recordArchive.estimate(site, start, archiveEnd);
+			return new RecordPage(page.getContent(), pageable, total, page.getNext());
+		}
+		long offset = pageable.getOffset();
+		long databaseTotal = page.hasContent() ? offset + page.getNumberOfElements()
+				: createQuery(COUNT_RECORDS + filter, Long.class, params).getSingleResult();
+		long archiveOffset = Math.max(0, offset - databaseTotal);
+		int limit = pageable.getPageSize() - page.getNumberOfElements();
+		// one more to know whether there's a next page
+		List<JobRecord> archivedRecords = recordArchive.getRecords(site, start, archiveEnd, matches, archiveOffset,
+				limit + 1);
+		List<JobRecord> content = new ArrayList<>(page.getContent());
+		content.addAll(archivedRecords.subList(0, Math.min(limit, archivedRecords.size())));
+		long total = databaseTotal + archiveOffset + archivedRecords.size();
+		if (archivedRecords.size() > limit) {
+			total = Math.max(total, databaseTotal + recordArchive.estimate(site, start, archiveEnd));
+		}
+		return new RecordPage(content, pageable, total, null);
+	}
+
+	/**
+	 * Returns the end of the range to read from the archive. Records are archived before they're deleted, so the
+	 * archive only provides records started before the oldest record in the database. Otherwise, records archived but
+	 * not deleted yet would be returned and counted twice.
+	 */
+	private Date getArchiveEnd(String siteName, Date end) {
+		Timestamp oldest = jdbcTemplate.queryForObject(SELECT_OLDEST, Timestamp.class, siteName);
+		if (null == oldest) {
+			return end;
+		}
+		Date before = new Date(oldest.getTime() - 1);
+		return null == end || before.before(end) ? before : end;
+	}
+
+	private RecordPage getDatabasePage(String filter, Map<String, Object> params, Date start, Date end,
+			Integer duration, Pageable pageable, PageCursor cursor) {
+		int pageNumber = pageable.getPageNumber();
+		int pageSize = pageable.getPageSize();
+		boolean keyset = isKeysetOrder(pageable.getSort());
+		String filterKey = Integer.toHexString(String.join("|", String.valueOf(params.get(FIELD_SITE)),
+				String.valueOf(params.get(FIELD_APPLICATION)), String.valueOf(params.get(FIELD_JOB_NAME)),
+				String.valueOf(params.get(FIELD_RESULT)), String.valueOf(null == start ? null : start.getTime()),
+				String.valueOf(null == end ? null : end.getTime()), String.valueOf(duration)).hashCode());
+		// a cursor is only valid for the page and the filters it has been created for
+		boolean seek = keyset && null != cursor && pageNumber > 0 && cursor.getPage() == pageNumber
+				&& filterKey.equals(cursor.getFilter());
+
+		StringBuilder query = new StringBuilder(SELECT_RECORDS).append(filter);
+		Map<String, Object> queryParams = new HashMap<>(params);
+		if (keyset) {
+			if (seek) {
+				query.append(" AND (r.startTime < :cursorStart OR (r.startTime = :cursorStart AND r.id < :cursorId))");
+				queryParams.put("cursorStart", cursor.getAfter().getStart());
+				queryParams.put("cursorId", cursor.getAfter().getId());
+			}
+			query.append(" ORDER BY r.startTime DESC, r.id DESC");
+		} else {
+			query.append(getOrderBy(pageable.getSort()));
+		}
+		TypedQuery<JobRecord> recordQuery = createQuery(query.toString(), JobRecord.class, queryParams);
+		recordQuery.setFirstResult(seek ? 0 : pageNumber * pageSize);
+		// one more to know whether there's a next page
+		recordQuery.setMaxResults(pageSize + 1);
+		List<JobRecord> content = recordQuery.getResultList();
+		boolean hasNext = content.size() > pageSize;
+		if (hasNext) {
+			content = content.subList(0, pageSize);
+		}
+		resolve(content);
+
+		long offset = (long) pageNumber * pageSize;
+		long known = offset + content.size() + (hasNext ? 1 : 0);
+		Long count = null;
+		long total;
+		if (PagingTotal.UNKNOWN.equals(pagingTotal)) {
+			total = known;
+		} else {
+			count = PagingTotal.ESTIMATED.equals(pagingTotal) && seek ? cursor.getTotal() : null;
+			if (null == count) {
+				count = createQuery(COUNT_RECORDS + filter, Long.class, params).getSingleResult();
+			}
+			// an estimate must not contradict the current page
+			total = hasNext ? Math.max(count, known) : known;
+		}
+		PageCursor next = null;
+		if (keyset && hasNext) {
+			JobRecord last = content.get(content.size() - 1);
+			next = new PageCursor(pageNumber + 1, filterKey, new RecordCursor(last.getStart(), last.getId()), count);
+		}
+		return new RecordPage(content, pageable, total, next);
+	}
+
+	private <T> TypedQuery<T> createQuery(String jpql, Class<T> type, Map<String, Object> params) {
+		TypedQuery<T> query = entityManager.createQuery(jpql, type);
+		params.forEach(query::setParameter);
+		return query;
+	}
+
+	private void addFilter(StringBuilder filter, Map<String, Object> params, String name, String condition,
+			Object value) {
+		if (null != value) {
+			filter.append(" AND ").append(condition);
+			params.put(name, value);
+		}
+	}
+
+	private boolean isKeysetOrder(Sort sort) {
+		if (null == sort) {
+			return true;
+		}
+		Iterator<Order> orders = sort.iterator();
+		if (!orders.hasNext() || !isDescending(orders.next(), FIELD_START)) {
+			return false;
+		}
+		return !orders.hasNext() || (isDescending(orders.next(), "id") && !orders.hasNext());
+	}
+
+	private boolean isDescending(Order order, String property) {
+		return Direction.DESC.equals(order.getDirection()) && property.equals(order.getProperty());
+	}
+
+	private String getOrderBy(Sort sort) {
+		StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+		for (Order order : sort) {
+			// only mapped properties, since the sort is provided by the client
+			if (SORT_FIELDS.contains(order.getProperty())) {
+				orderBy.append("r.").append(order.getProperty()).append(" ").append(order.getDirection().name())
+						.append(", ");
+			}
+		}
+		// a unique order, so pages do not overlap
+		return orderBy.append("r.id DESC").toString();
+	}
+
+	/** A page of records, providing the {@link PageCursor} of the following page if it can be read by seeking */
+	public static class RecordPage extends PageImpl<JobRecord> {
+		private static final long serialVersionUID = 1L;
+		private final transient PageCursor next;
+
+		public RecordPage(List<JobRecord> content, Pageable pageable, long total, PageCursor next) {
+			super(content, pageable, total);
+			this.next = next;
+		}
+
+		/**
+		 * Returns the cursor of the following page.
+		 * 
+		 * @return the cursor, or {@code null} if there's no following page or it can't be read by seeking
+		 */
+		public PageCursor getNext() {
+			return next;
+		}
+	}
+
+	/**
+	 * The position of a page of records ordered by start time and id descending, i.e. the last record of the previous
+	 * page. It is passed along with the link to that page, so no state is kept on the server. Besides the number of the
+	 * page, it contains a hash of the filters it is valid for and the number of matching records in the database, if
+	 * known. Its string representation is {@code <page>:<filter hash>:<record cursor>[:<total>]}, see
+	 * {@link RecordCursor}.
+	 */
+	@Getter
+	public static class PageCursor {
+		private final int page;
+		private final String filter;
+		private final RecordCursor after;
+		private final Long total;
+
+		public PageCursor(int page, String filter, RecordCursor after, Long total) {
+			this.page = page;
+			this.filter = filter;
+			this.after = after;
+			this.total = total;
+		}
+
+		/**
+		 * Parses a cursor from its string representation.
+		 * 
+		 * @param value
+		 *              the value to parse
+		 * @return the cursor, or {@code null} if the value is blank
+		 * @throws IllegalArgumentException
+		 *                                  if the value is not a valid cursor
+		 */
+		public static PageCursor parse(String value) {
+			if (StringUtils.isBlank(value)) {
+				return null;
+			}
+			String[] parts = value.trim().split(":");
+			if (parts.length < 3 || parts.length > 4) {
+				throw new IllegalArgumentException("invalid page cursor: " + value);
+			}
+			try {
+				Long total = parts.length == 4 ? Long.valueOf(parts[3]) : null;
+				return new PageCursor(Integer.parseInt(parts[0]), parts[1], RecordCursor.parse(parts[2]), total);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("invalid page cursor: " + value, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return page + ":" + filter + ":" + after + (null == total ? "" : ":" + total);
+		}
 	}
 
 	public Page<org.appng.core.domain.JobRecord> getJobRecords(String siteName, String applicationFilter, String jobFilter,
@@ -117,6 +599,160 @@ public class JobRecordService {
 				getRecordSearchQuery(siteName, applicationFilter, jobFilter, start, end, result, duration), pageable);
 	}
 
+	/**
+	 * Passes the matching records to the given consumer, ordered by start time and id. The records are read page by
+	 * page using keyset pagination, so memory consumption does not depend on the number of records.
+	 * 
+	 * @param siteName
+	 *                          the name of the site
+	 * @param applicationFilter
+	 *                          the application name, optional
+	 * @param jobFilter
+	 *                          the job name, optional
+	 * @param start
+	 *                          the minimum start time, optional
+	 * @param end
+	 *                          the maximum start time, optional
+	 * @param result
+	 *                          the result, optional
+	 * @param duration
+	 *                          the minimum duration in seconds, optional
+	 * @param after
+	 *                          only records after this cursor are returned, optional
+	 * @param limit
+	 *                          the maximum number of records, 0 for no limit
+	 * @param consumer
+	 *                          the consumer for the records and their cursors
+	 * @return the number of records that have been passed to the consumer
+	 */
+	@Transactional(transactionManager = "coreTxManager", propagation = Propagation.NOT_SUPPORTED)
+	public int streamRecords(String siteName, String applicationFilter, String jobFilter, Date start, Date end,
+			String result, Integer duration, RecordCursor after, int limit,
+			BiConsumer<JobRecord, RecordCursor> consumer) {
+		StringBuilder filter = new StringBuilder(" WHERE site = ?");
+		List<Object> filterArgs = new ArrayList<>();
+		filterArgs.add(siteName);
+		addFilter(filter, filterArgs, "application = ?", StringUtils.trimToNull(applicationFilter));
+		addFilter(filter, filterArgs, "job_name = ?", StringUtils.trimToNull(jobFilter));
+		addFilter(filter, filterArgs, "result = ?", StringUtils.trimToNull(result));
+		addFilter(filter, filterArgs, "start_time >= ?", null == start ? null : new Timestamp(start.getTime()));
+		addFilter(filter, filterArgs, "start_time <= ?", null == end ? null : new Timestamp(end.getTime()));
+		addFilter(filter, filterArgs, "duration >= ?", duration);
+		String firstPage = SELECT_STREAM + filter + " ORDER BY start_time, id";
+		String nextPage = SELECT_STREAM + filter
+				+ " AND (start_time > ? OR (start_time = ? AND id > ?)) ORDER BY start_time, id";
+
+		RecordCursor cursor = after;
+		int count = 0;
+		int pageSize;
+		do {
+			pageSize = limit > 0 ? Math.min(STREAM_PAGE_SIZE, limit - count) : STREAM_PAGE_SIZE;
+			List<Object> args = new ArrayList<>(filterArgs);
+			if (null != cursor) {
+				args.addAll(Arrays.asList(cursor.getStart(), cursor.getStart(), cursor.getId()));
+			}
+			List<JobRecord> page = resolve(getPage(null == cursor ? firstPage : nextPage, args, pageSize));
+			for (JobRecord record : page) {
+				cursor = new RecordCursor(record.getStart(), record.getId());
+				consumer.accept(record, cursor);
+			}
+			count += page.size();
+			if (page.size() < pageSize) {
+				break;
+			}
+		} while (limit <= 0 || count < limit);
+		return count;
+	}
+
+	private void addFilter(StringBuilder filter, List<Object> args, String condition, Object value) {
+		if (null != value) {
+			filter.append(" AND ").append(condition);
+			args.add(value);
+		}
+	}
+
+	private List<JobRecord> getPage(String sql, List<Object> args, int pageSize) {
+		return jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			statement.setMaxRows(pageSize);
+			statement.setFetchSize(pageSize);
+			new ArgumentPreparedStatementSetter(args.toArray()).setValues(statement);
+			return statement;
+		}, (rs, i) -> {
+			JobRecord record = new JobRecord();
+			record.setId(rs.getInt("id"));
+			record.setSiteName(rs.getString("site"));
+			record.setApplicationName(rs.getString("application"));
+			record.setJobName(rs.getString("job_name"));
+			record.setTriggerName(rs.getString("triggername"));
+			record.setRunOnce(rs.getBoolean("run_once"));
+			record.setDuration(rs.getLong("duration"));
+			record.setStart(rs.getTimestamp("start_time"));
+			record.setEnd(rs.getTimestamp("end_time"));
+			record.setStacktraces(rs.getString("stacktraces"));
+			ScheduledJobResult scheduledJobResult = new ScheduledJobResult();
+			scheduledJobResult.setResult(ExecutionResult.valueOf(rs.getString("result")));
+			record.setScheduledJobResult(scheduledJobResult);
+			return record;
+		});
+	}
+
+	/**
+	 * The position of a record within the stream of records ordered by start time and id, used for resuming
+	 * {@link JobRecordService#streamRecords(String, String, String, Date, Date, String, Integer, RecordCursor, int, BiConsumer)}.
+	 * The start time keeps the precision of the database, which may exceed milliseconds. Its string representation is
+	 * {@code <start time in seconds>.<nanoseconds>_<id>}, for compatibility {@code <start time in milliseconds>_<id>}
+	 * is also accepted.
+	 */
+	@Getter
+	public static class RecordCursor {
+		private final Timestamp start;
+		private final int id;
+
+		public RecordCursor(Date start, int id) {
+			this.start = start instanceof Timestamp ? (Timestamp) start : new Timestamp(start.getTime());
+			this.id = id;
+		}
+
+		/**
+		 * Parses a cursor from its string representation.
+		 * 
+		 * @param value
+		 *              the value to parse
+		 * @return the cursor, or {@code null} if the value is blank
+		 * @throws IllegalArgumentException
+		 *                                  if the value is not a valid cursor
+		 */
+		public static RecordCursor parse(String value) {
+			if (StringUtils.isBlank(value)) {
+				return null;
+			}
+			String[] parts = value.trim().split("_");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("invalid cursor: " + value);
+			}
+			try {
+				Timestamp start;
+				int separator = parts[0].indexOf('.');
+				if (separator < 0) {
+					start = new Timestamp(Long.parseLong(parts[0]));
+				} else {
+					start = new Timestamp(TimeUnit.SECONDS.toMillis(Long.parseLong(parts[0].substring(0, separator))));
+					start.setNanos(Integer.parseInt(parts[0].substring(separator + 1)));
+				}
+				return new RecordCursor(start, Integer.parseInt(parts[1]));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("invalid cursor: " + value, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			long seconds = Math.floorDiv(start.getTime(), 1000L);
+			return String.format("%d.%09d_%d", seconds, start.getNanos(), id);
+		}
+	}
+
 	public org.appng.core.domain.JobRecord getFirstRun(String siteName, String applicationFilter, String jobFilter) {
 		SearchQuery<org.appng.core.domain.JobRecord> query = getRecordSearchQuery(siteName, applicationFilter, jobFilter, null, null,
 				null, null);
@@ -125,6 +761,77 @@ public class JobRecordService {
 		return oldestRun.hasContent() ? oldestRun.getContent().get(0) : null;
 	}
 
+	/**
+	 * Counts the successful and failed executions of several jobs of a site with a single query, grouped by job name
+	 * and result. Each job has its own time window, starting at the given date and ending at {@code end}.
+	 * 
+	 * @param siteName
+	 *                     the name of the site
+	 * @param startedAfter
+	 *                     the minimum start time for each job name, {@code null} meaning no lower bound
+	 * @param end
+	 *                     the maximum start time
+	 * @return for each of the given job names, the number of successful executions at index 0 and the number of failed
+	 *         executions at index 1
+	 */
+	public Map<String, int[]> countResults(String siteName, Map<String, Date> startedAfter, Date end) {
+		Map<String, int[]> counts = new HashMap<>();
+		startedAfter.keySet().forEach(jobName -> counts.put(jobName, new int[2]));
+		if (startedAfter.isEmpty()) {
+			return counts;
+		}
+		// one column per distinct window, so jobs with different time units share the same query
+		List<Date> windows = new ArrayList<>(new LinkedHashSet<>(startedAfter.values()));
+		StringBuilder columns = new StringBuilder();
+		List<Object> args = new ArrayList<>();
+		for (Date window : windows) {
+			if (null == window) {
+				columns.append(", COUNT(*)");
+			} else {
+				columns.append(", SUM(CASE WHEN start_time >= ? THEN 1 ELSE 0 END)");
+				args.add(window);
+			}
+		}
+		args.add(siteName);
+		args.add(end);
+		String lowerBound = "";
+		if (!windows.contains(null)) {
+			lowerBound = " AND start_time >= ?";
+			args.add(Collections.min(windows));
+		}
+		String sql = String.format(COUNT_RESULTS, columns, lowerBound);
+		jdbcTemplate.query(sql, rs -> {
+			String jobName = rs.getString(1);
+			String result = rs.getString(2);
+			int[] jobCounts = counts.get(jobName);
+			if (null != jobCounts) {
+				int count = rs.getInt(3 + windows.indexOf(startedAfter.get(jobName)));
+				if (ExecutionResult.SUCCESS.name().equals(result)) {
+					jobCounts[0] += count;
+				} else if (ExecutionResult.FAIL.name().equals(result)) {
+					jobCounts[1] += count;
+				}
+			}
+		}, args.toArray());
+		return counts;
+	}
+
+	/**
+	 * Returns the start time of the first recorded execution of each job of a site, using a single query.
+	 * 
+	 * @param siteName
+	 *                 the name of the site
+	 * @return the start time of the first execution per job name
+	 * @see #getFirstRun(String, String, String)
+	 */
+	public Map<String, Date> getFirstRuns(String siteName) {
+		Map<String, Date> firstRuns = new HashMap<>();
+		jdbcTemplate.query(SELECT_FIRST_RUNS, rs -> {
+			firstRuns.put(rs.getString(1), rs.getTimestamp(2));
+		}, siteName);
+		return firstRuns;
+	}
+
 	public SearchQuery<org.appng.core.domain.JobRecord> getRecordSearchQuery(String siteName, String applicationFilter,
 			String jobFilter, Date start, Date end, String result, Integer duration) {
 		SearchQuery<org.appng.core.domain.JobRecord> query = recordRepository.createSearchQuery();
@@ -138,24 +845,123 @@ public class JobRecordService {
 		return query;
 	}
 
-	public Integer cleanUp(Site site, Application application) {
-		if (StringUtils.isNoneBlank(application.getProperties().getString(PropertyConstants.RECORD_LIFE_TIME))) {
-			Integer lifetime = application.getProperties().getInteger(PropertyConstants.RECORD_LIFE_TIME);
+	/**
+	 * Deletes the outdated records of the given site (see {@link #getOutdated(Application)}). The records are deleted
+	 * in chunks of at most {@code recordCleanUpChunkSize} rows, each chunk within its own transaction. When
+	 * {@code recordCleanUpTimeBudget} seconds have passed, no further chunks are deleted and the remaining records are
+	 * left for the next run. If the {@link RecordArchive} is enabled, each chunk is archived before it's deleted, and
+	 * outdated archive segments are removed.
+	 * 
+	 * @param site
+	 *                    the current {@link Site}
+	 * @param application
+	 *                    the current {@link Application}
+	 * @return the {@link CleanUpResult}
+	 */
+	@Transactional(transactionManager = "coreTxManager", propagation = Propagation.NOT_SUPPORTED)
+	public CleanUpResult cleanUp(Site site, Application application) {
+		long start = System.currentTimeMillis();
+		Date outdated = getOutdated(application);
+		if (null == outdated) {
+			return new CleanUpResult(0, 0, 0, true, 0);
+		}
+		Timestamp outdatedTime = new Timestamp(outdated.getTime());
+		long deadline = start + TimeUnit.SECONDS.toMillis(cleanUpTimeBudget);
+		int deleted = 0;
+		int archived = 0;
+		int chunks = 0;
+		boolean complete = false;
+		while (!complete && (0 == chunks || System.currentTimeMillis() < deadline)) {
+			List<Integer> ids = chunkTemplate.queryForList(SELECT_OUTDATED, Integer.class, site.getName(),
+					outdatedTime);
+			if (ids.isEmpty()) {
+				complete = true;
+			} else {
+				Integer first = ids.get(0);
+				Integer last = ids.get(ids.size() - 1);
+				if (recordArchive.isEnabled()) {
+					archive(site, ids);
+					archived += ids.size();
+				}
+				deleted += cleanUpTransaction.execute(
+						s -> chunkTemplate.update(DELETE_OUTDATED, site.getName(), outdatedTime, first, last));
+				chunks++;
+				complete = ids.size() < cleanUpChunkSize;
+				log.debug("deleted chunk {} of outdated records for site {} (ids {} to {})", chunks, site.getName(),
+						first, last);
+			}
+		}
+		if (deleted > 0) {
+			SiteVersions.changed(site.getName());
+		}
+		if (recordArchive.isEnabled()) {
+			int segments = recordArchive.cleanUp(site);
+			log.debug("deleted {} outdated archive segment(s) for site {}", segments, site.getName());
+		}
+		if (complete) {
+			// otherwise, remaining records may still refer to them
+			int stacktraces = stacktraceService.cleanUp(site.getName(), outdated);
+			log.debug("deleted {} outdated stacktrace(s) for site {}", stacktraces, site.getName());
+		}
+		return new CleanUpResult(deleted, archived, chunks, complete, System.currentTimeMillis() - start);
+	}
 
-			Date outdated = DateUtils.addDays(new Date(), -lifetime);
+	private void archive(Site site, List<Integer> ids) {
+		try {
+			List<JobExecutionRecord> records = recordRepositoryFull.findAll(ids);
+			// the archive must not depend on the stacktrace table
+			stacktraceService.resolve(records, JobExecutionRecord::getSite, JobExecutionRecord::getStacktraces,
+					JobExecutionRecord::setStacktraces);
+			recordArchive.append(site, records);
+		} catch (IOException e) {
+			// keep the records, so they're archived by the next run
+			throw new UncheckedIOException(String.format("error archiving records of site %s", site.getName()), e);
+		}
+	}
 
-			SearchQuery<org.appng.core.domain.JobRecord> query = recordRepository.createSearchQuery()
-					.equals(FIELD_SITE, site.getName()).lessEquals(FIELD_START, outdated);
-			Page<org.appng.core.domain.JobRecord> outdatedRecords = recordRepository.search(query, null);
-			recordRepository.delete(outdatedRecords);
+	/** The outcome of {@link JobRecordService#cleanUp(Site, Application)} */
+	@Getter
+	@AllArgsConstructor
+	public static class CleanUpResult {
+		/** the number of deleted records */
+		private final int deleted;
+		/** the number of records archived before deletion */
+		private final int archived;
+		/** the number of chunks (transactions) used */
+		private final int chunks;
+		/** whether all outdated records have been deleted */
+		private final boolean complete;
+		/** the time spent in milliseconds */
+		private final long duration;
+	}
 
-			return (int) outdatedRecords.getTotalElements();
+	/**
+	 * Returns the date before which records are outdated, according to
+	 * {@value PropertyConstants#RECORD_LIFE_TIME}.
+	 * 
+	 * @param application
+	 *                    the current {@link Application}
+	 * @return the date, or {@code null} if records never get outdated
+	 */
+	public Date getOutdated(Application application) {
+		if (StringUtils.isNoneBlank(application.getProperties().getString(PropertyConstants.RECORD_LIFE_TIME))) {
+			Integer lifetime = application.getProperties().getInteger(PropertyConstants.RECORD_LIFE_TIME);
+			return DateUtils.addDays(new Date(), -lifetime);
 		}
-		return 0;
+		return null;
 	}
 
 	public JobRecord getRecord(Integer recordId) {
-		return JobRecord.fromDomain(recordRepositoryFull.findOne(recordId));
+		JobRecord record = JobRecord.fromDomain(recordRepositoryFull.findOne(recordId));
+		resolve(Collections.singletonList(record));
+		return record;
+	}
+
+	/** resolves the references to deduplicated stacktraces, see {@link StacktraceService} */
+	private List<JobRecord> resolve(List<JobRecord> records) {
+		stacktraceService.resolve(records, JobRecord::getSiteName, JobRecord::getStacktraces,
+				JobRecord::setStacktraces);
+		return records;
 	}
 
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.core.domain.JobExecutionRecord;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes {@link JobExecutionRecord}s, either synchronously or asynchronously (see {@link Mode}). In asynchronous
+ * mode, the records are put into a bounded queue and saved in batches by a background thread, as soon as
+ * {@code jobRecordBatchSize} records are available or {@code jobRecordFlushInterval} milliseconds have passed. Since
+ * this class is also a {@link org.quartz.SchedulerListener}, pending records are flushed when the scheduler shuts
+ * down. Once saved, the {@link SiteVersions} of the respective sites are changed.
+ */
+@Slf4j
+@Component
+public class JobRecordWriter extends SchedulerListenerSupport {
+
+	/** Defines how records are written and what happens when the queue is full */
+	public enum Mode {
+		/** records are written synchronously by the thread that executed the job */
+		SYNC,
+		/** asynchronous, when the queue is full the caller waits until there's room */
+		BLOCK,
+		/** asynchronous, when the queue is full records of successful executions are discarded, others wait */
+		DROP_SUCCESS,
+		/** asynchronous, when the queue is full the caller writes the record synchronously */
+		SPILL;
+	}
+
+	private final JobRecordService jobRecordService;
+	private final Mode mode;
+	private final int batchSize;
+	private final long flushInterval;
+	private final BlockingQueue<JobExecutionRecord> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean running;
+	private boolean stopped;
+	private Thread flusher;
+
+	public JobRecordWriter(JobRecordService jobRecordService, @Value("${jobRecordWriterMode:SYNC}") Mode mode,
+			@Value("${jobRecordQueueSize:1000}") int queueSize, @Value("${jobRecordBatchSize:50}") int batchSize,
+			@Value("${jobRecordFlushInterval:2000}") long flushInterval) {
+		this.jobRecordService = jobRecordService;
+		this.mode = mode;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushInterval = Math.max(1, flushInterval);
+		this.queue = Mode.SYNC.equals(mode) ? null : new ArrayBlockingQueue<>(Math.max(1, queueSize));
+	}
+
+	/**
+	 * Writes the given record, according to the configured {@link Mode}.
+	 *
+	 * @param record
+	 *               the record to write
+	 */
+	public void write(JobExecutionRecord record) {
+		if (null == queue || !startFlusher()) {
+			saveRecords(Collections.singletonList(record));
+		} else if (!queue.offer(record)) {
+			if (Mode.SPILL.equals(mode)) {
+				saveRecords(Collections.singletonList(record));
+			} else if (Mode.DROP_SUCCESS.equals(mode) && ExecutionResult.SUCCESS.name().equals(record.getResult())) {
+				long count = dropped.incrementAndGet();
+				log.debug("queue is full, dropped record for {} ({} dropped so far)", record.getJobName(), count);
+			} else {
+				enqueue(record);
+			}
+		}
+		if (null != queue && !running) {
+			// stopped meanwhile, so don't leave the record behind
+			flush();
+		}
+	}
+
+	private void enqueue(JobExecutionRecord record) {
+		try {
+			while (!queue.offer(record, flushInterval, TimeUnit.MILLISECONDS)) {
+				if (!running) {
+					saveRecords(Collections.singletonList(record));
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			saveRecords(Collections.singletonList(record));
+		}
+	}
+
+	private synchronized boolean startFlusher() {
+		if (null == flusher && !stopped) {
+			running = true;
+			flusher = new Thread(this::flushLoop, "JobRecordWriter");
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+		return running;
+	}
+
+	private void flushLoop() {
+		while (running) {
+			try {
+				JobExecutionRecord first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+				if (null == first) {
+					continue;
+				}
+				List<JobExecutionRecord> batch = new ArrayList<>(batchSize);
+				batch.add(first);
+				long deadline = System.currentTimeMillis() + flushInterval;
+				long remaining;
+				while (batch.size() < batchSize && (remaining = deadline - System.currentTimeMillis()) > 0) {
+					JobExecutionRecord next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+					if (null == next) {
+						break;
+					}
+					batch.add(next);
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+				save(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	private void save(List<JobExecutionRecord> batch) {
+		try {
+			saveRecords(batch);
+			log.debug("saved {} job records", batch.size());
+		} catch (RuntimeException e) {
+			log.error(String.format("error saving %s job records", batch.size()), e);
+		}
+	}
+
+	private void saveRecords(List<JobExecutionRecord> records) {
+		jobRecordService.saveRecords(records);
+		// the records are committed now, so clients may see them
+		records.stream().map(JobExecutionRecord::getSite).distinct().forEach(SiteVersions::changed);
+	}
+
+	/**
+	 * Saves all queued records on the calling thread.
+	 */
+	public void flush() {
+		if (null != queue) {
+			List<JobExecutionRecord> batch = new ArrayList<>(batchSize);
+			while (queue.drainTo(batch, batchSize) > 0) {
+				save(batch);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+	}
+
+	/**
+	 * Stops the background thread and saves all queued records. Records written afterwards are saved synchronously.
+	 */
+	@PreDestroy
+	public void stop() {
+		Thread thread;
+		synchronized (this) {
+			stopped = true;
+			running = false;
+			thread = flusher;
+		}
+		if (null != thread) {
+			try {
+				thread.join(flushInterval * 2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+		if (dropped.get() > 0) {
+			log.info("dropped {} records of successful job executions since the queue was full", dropped.get());
+		}
+	}
+
+	@Override
+	public void schedulerShuttingdown() {
+		stop();
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getQueueSize() {
+		return null == queue ? 0 : queue.size();
+	}
+
+	/**
+	 * Returns the time in milliseconds the oldest queued record is waiting to be written.
+	 */
+	public long getLag() {
+		JobExecutionRecord oldest = null == queue ? null : queue.peek();
+		if (null == oldest || null == oldest.getEndTime()) {
+			return 0;
+		}
+		return Math.max(0, System.currentTimeMillis() - oldest.getEndTime().getTime());
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+}
@@ -18,12 +18,29 @@ package org.appng.application.scheduler.service;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.collections4.EnumerationUtils;
@@ -42,13 +59,16 @@ import org.appng.api.support.environment.DefaultEnvironment;
 import org.appng.application.scheduler.Constants;
 import org.appng.application.scheduler.PropertyConstants;
 import org.appng.application.scheduler.SchedulerUtils;
+import org.appng.application.scheduler.quartz.JobOverview;
 import org.appng.core.controller.HttpHeaders;
 import org.appng.scheduler.openapi.JobStateApi;
 import org.appng.scheduler.openapi.model.Job;
 import org.appng.scheduler.openapi.model.JobRecord;
 import org.appng.scheduler.openapi.model.JobState;
+import org.appng.scheduler.openapi.model.JobStates;
 import org.appng.scheduler.openapi.model.Jobs;
 import org.appng.scheduler.openapi.model.JobState.StateNameEnum;
+import org.appng.scheduler.openapi.model.SiteStatus;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
@@ -64,6 +84,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import com.google.common.collect.Lists;
 
@@ -82,12 +105,18 @@ public class JobStateRestController implements JobStateApi {
 
 	private static final FastDateFormat DATE_FORMAT = FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
 	private final JobRecordService jobRecordService;
+	private final JobCounterService jobCounterService;
+	private final SiteVersions siteVersions;
 	private final Scheduler scheduler;
 	private final Site site;
 	private final Application app;
 	private @Value("${" + PropertyConstants.BEARER_TOKEN + "}") String bearerToken;
 	private @Value("${skipAuth:false}") boolean skipAuth;
 	private @Value("${checkFirstRun:true}") boolean checkFirstRun;
+	private @Value("${jobStateSiteThreads:8}") int siteThreads;
+	private @Value("${jobStateSiteTimeout:5000}") long siteTimeout;
+	private @Value("${jobStateTimeout:15000}") long requestTimeout;
+	private ExecutorService executor;
 
 	public enum TimeUnit {
 		YEAR, MONTH, WEEK, DAY, HOUR, MINUTE;
@@ -123,22 +152,15 @@ public class JobStateRestController implements JobStateApi {
 		if (!isAuthorized()) {
 			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
 		}
+		Map<Site, Application> sites = addAll ? getSchedulerSites() : Collections.singletonMap(site, app);
+		if (!addAll && isNotModified(Collections.singleton(site.getName()))) {
+			return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+		}
 		List<Job> jobList = Lists.newArrayList();
+		Jobs jobs = new Jobs().jobs(jobList);
 		if (addAll) {
-			Environment env = getRequest().getEnvironment();
-			for (String siteName : new TreeSet<>(RequestUtil.getSiteNames(env))) {
-				Site site = RequestUtil.getSiteByName(env, siteName);
-				if (site.isActive() && SiteState.STARTED.equals(site.getState())) {
-					try {
-						Application schedulerApp = site.getApplication(app.getName());
-						if (null != schedulerApp) {
-							addJobs(addJobdata, thresholds, jobList, site, schedulerApp);
-						}
-					} catch (SchedulerException e) {
-						log.error("error while retrieving jobs for site " + site.getName(), e);
-					}
-				}
-			}
+			forAllSites(sites, (s, a, l) -> addJobs(addJobdata, thresholds, l, s, a), jobList)
+					.forEach(jobs::addSitesItem);
 		} else {
 			try {
 				addJobs(addJobdata, thresholds, jobList, site, app);
@@ -147,7 +169,194 @@ public class JobStateRestController implements JobStateApi {
 			}
 		}
 
-		return ResponseEntity.ok(new Jobs().jobs(jobList));
+		return ResponseEntity.ok(jobs);
+	}
+
+	/**
+	 * Returns the state of all jobs of the site (or of all sites), like {@link #getJobState(String, String, Integer,
+	 * Boolean)} does for a single job. Instead of counting the records of each job separately, the results of all jobs
+	 * of a site are counted with one grouped query, plus one grouped query for the first runs.
+	 */
+	@Override
+	public ResponseEntity<JobStates> getJobStates(
+			@RequestParam(value = "jobdata", required = false, defaultValue = "false") Boolean addJobdata,
+			@RequestParam(value = "all", required = false, defaultValue = "false") Boolean addAll,
+			@RequestParam(value = "thresholds", required = false) Boolean thresholds) {
+		if (!isAuthorized()) {
+			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
+		}
+		Map<Site, Application> sites = addAll ? getSchedulerSites() : Collections.singletonMap(site, app);
+		if (!addAll && isNotModified(Collections.singleton(site.getName()))) {
+			return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+		}
+		List<JobState> stateList = Lists.newArrayList();
+		JobStates states = new JobStates().states(stateList);
+		if (addAll) {
+			forAllSites(sites, (s, a, l) -> addStates(addJobdata, thresholds, l, s, a), stateList)
+					.forEach(states::addSitesItem);
+		} else {
+			try {
+				addStates(addJobdata, thresholds, stateList, site, app);
+			} catch (SchedulerException e) {
+				log.error("error while retrieving job states for site " + site.getName(), e);
+			}
+		}
+		return ResponseEntity.ok(states);
+	}
+
+	/**
+	 * Returns all active sites the scheduler application is assigned to, ordered by name.
+	 */
+	private Map<Site, Application> getSchedulerSites() {
+		Environment env = getRequest().getEnvironment();
+		Map<Site, Application> sites = new LinkedHashMap<>();
+		for (String siteName : new TreeSet<>(RequestUtil.getSiteNames(env))) {
+			Site site = RequestUtil.getSiteByName(env, siteName);
+			if (site.isActive() && SiteState.STARTED.equals(site.getState())) {
+				Application schedulerApp = site.getApplication(app.getName());
+				if (null != schedulerApp) {
+					sites.put(site, schedulerApp);
+				}
+			}
+		}
+		return sites;
+	}
+
+	/**
+	 * Checks the ETag of the request against the versions of the given sites. Only used for the current site: each site
+	 * loads this application with its own classloader, so the versions of other sites are never changed here.
+	 */
+	private boolean isNotModified(Collection<String> siteNames) {
+		// the methods of the generated API can't declare the servlet request and response as arguments
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (!(attributes instanceof ServletRequestAttributes)) {
+			return false;
+		}
+		ServletRequestAttributes servletAttributes = (ServletRequestAttributes) attributes;
+		return siteVersions.checkNotModified(servletAttributes.getRequest(), servletAttributes.getResponse(),
+				siteNames);
+	}
+
+	/**
+	 * Loads the items of the given sites in parallel, each site with its own timeout. All sites share a deadline of
+	 * {@code jobStateTimeout} milliseconds after submitting them, so workers that are blocked (even after being
+	 * cancelled) can't delay the response any further. Sites that have not been started by then are reported as
+	 * partial right away.
+	 * 
+	 * @param sites
+	 *               the sites to load the items for
+	 * @param loader
+	 *               loads the items of a single site
+	 * @param items
+	 *               receives the items of all sites that have been loaded completely
+	 * @return the status of each site
+	 */
+	<T> List<SiteStatus> forAllSites(Map<Site, Application> sites, SiteLoader<T> loader, List<T> items) {
+		List<SiteTask<T>> tasks = Lists.newArrayList();
+		sites.forEach((s, a) -> tasks.add(new SiteTask<>(s, a, loader)));
+		ExecutorService executor = getExecutor();
+		long deadline = System.currentTimeMillis() + Math.max(siteTimeout, requestTimeout);
+		tasks.forEach(t -> t.future = executor.submit(t));
+		List<SiteStatus> statuses = Lists.newArrayList();
+		for (SiteTask<T> t : tasks) {
+			SiteStatus status = t.await(deadline);
+			if (status.getPartial()) {
+				log.warn("jobs for site {} are missing: {}", status.getSite(), status.getMessage());
+			} else {
+				items.addAll(t.items);
+			}
+			statuses.add(status);
+		}
+		return statuses;
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (null == executor) {
+			AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(siteThreads, siteThreads, 60,
+					java.util.concurrent.TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+						Thread thread = new Thread(r, "JobState-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (null != executor) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	@FunctionalInterface
+	interface SiteLoader<T> {
+		void load(Site site, Application schedulerApp, List<T> items) throws SchedulerException;
+	}
+
+	/**
+	 * Retrieves the items of a single site. The timeout starts when the task starts running, so sites waiting for a
+	 * free thread are not penalized, but it never exceeds the deadline of the whole request.
+	 */
+	private class SiteTask<T> implements Callable<List<T>> {
+		private final Site site;
+		private final Application schedulerApp;
+		private final SiteLoader<T> loader;
+		private final List<T> items = Lists.newArrayList();
+		private volatile long started;
+		private Future<List<T>> future;
+
+		SiteTask(Site site, Application schedulerApp, SiteLoader<T> loader) {
+			this.site = site;
+			this.schedulerApp = schedulerApp;
+			this.loader = loader;
+		}
+
+		public List<T> call() throws SchedulerException {
+			started = System.currentTimeMillis();
+			loader.load(site, schedulerApp, items);
+			return items;
+		}
+
+		SiteStatus await(long deadline) {
+			SiteStatus status = new SiteStatus().site(site.getName()).partial(true);
+			try {
+				while (true) {
+					long startedAt = started;
+					long now = System.currentTimeMillis();
+					// not started yet: wait for at most one site timeout, then check again
+					long end = Math.min(deadline, (0 == startedAt ? now : startedAt) + siteTimeout);
+					if (end > now) {
+						try {
+							future.get(end - now, java.util.concurrent.TimeUnit.MILLISECONDS);
+							return status.partial(false);
+						} catch (TimeoutException e) {
+							if (0 == startedAt) {
+								// possibly started while waiting for a free thread
+								continue;
+							}
+						}
+					}
+					future.cancel(true);
+					if (0 == started) {
+						return status.message(String.format("no thread available within %sms",
+								Math.max(siteTimeout, requestTimeout)));
+					}
+					return status.message(String.format("timed out after %sms", System.currentTimeMillis() - started));
+				}
+			} catch (ExecutionException e) {
+				log.error("error while retrieving jobs for site " + site.getName(), e.getCause());
+				return status.message(e.getCause().getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				future.cancel(true);
+				return status.message("interrupted");
+			}
+		}
 	}
 
 	protected void addJobs(Boolean addJobdata, Boolean thresholds, List<Job> jobList, Site site,
@@ -157,15 +366,13 @@ public class JobStateRestController implements JobStateApi {
 		for (JobKey jobKey : jobKeys) {
 			JobDetail jobDetail = siteScheduler.getJobDetail(jobKey);
 			JobDataMap jobDataMap = jobDetail.getJobDataMap();
-			Boolean thresholdsPresent = jobDataMap.containsKey(Constants.THRESHOLD_TIMEUNIT)
-					&& (jobDataMap.containsKey(Constants.THRESHOLD_WARN)
-							|| jobDataMap.containsKey(Constants.THRESHOLD_ERROR));
+			Boolean thresholdsPresent = hasThresholds(jobDataMap);
 
 			if (null == thresholds || thresholdsPresent.equals(thresholds)) {
 				Job job = new Job();
 				job.setSite(site.getName());
 				String name = jobKey.getName();
-				String application = name.substring(0, name.indexOf(SchedulerUtils.JOB_SEPARATOR));
+				String application = getApplication(name);
 				job.setApplication(application);
 				job.setJob(name.substring(application.length() + 1, name.length()));
 				String servicePath = site.getProperties().getString(SiteProperties.SERVICE_PATH);
@@ -195,6 +402,9 @@ public class JobStateRestController implements JobStateApi {
 		if (!isAuthorized()) {
 			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
 		}
+		if (isNotModified(Collections.singleton(site.getName()))) {
+			return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+		}
 
 		JobState jobState = getState(application, job, pageSize, records);
 		if (null != jobState) {
@@ -203,6 +413,52 @@ public class JobStateRestController implements JobStateApi {
 		return ResponseEntity.notFound().build();
 	}
 
+	/**
+	 * Adds the state of each job of the given site, using {@link JobRecordService#countResults(String, Map, Date)}
+	 * and {@link JobRecordService#getFirstRuns(String)} instead of querying each job separately.
+	 */
+	protected void addStates(Boolean addJobdata, Boolean thresholds, List<JobState> stateList, Site site,
+			Application schedulerApp) throws SchedulerException {
+		Scheduler siteScheduler = schedulerApp.getBean(Scheduler.class);
+		Map<String, JobDataMap> jobs = new TreeMap<>();
+		List<JobOverview> overviews = new SchedulerUtils(siteScheduler, null).getJobOverviews(site.getName());
+		if (null != overviews) {
+			overviews.forEach(o -> jobs.put(o.getJobKey().getName(), o.getJobDataMap()));
+		} else {
+			for (JobKey jobKey : siteScheduler.getJobKeys(GroupMatcher.jobGroupEquals(site.getName()))) {
+				JobDetail jobDetail = siteScheduler.getJobDetail(jobKey);
+				if (null != jobDetail) {
+					jobs.put(jobKey.getName(), jobDetail.getJobDataMap());
+				}
+			}
+		}
+		if (null != thresholds) {
+			jobs.values().removeIf(jobDataMap -> hasThresholds(jobDataMap) != thresholds);
+		}
+
+		Date now = new Date();
+		Map<String, Date> startedAfter = new HashMap<>();
+		boolean checkThresholds = false;
+		for (Entry<String, JobDataMap> job : jobs.entrySet()) {
+			TimeUnit timeunit = getTimeUnit(job.getValue());
+			startedAfter.put(job.getKey(), null == timeunit ? null : timeunit.getStartDate(now));
+			checkThresholds |= null != timeunit && hasThresholds(job.getValue());
+		}
+		Map<String, int[]> counts = jobRecordService.countResults(site.getName(), startedAfter, now);
+		Map<String, Date> firstRuns = checkFirstRun && checkThresholds ? jobRecordService.getFirstRuns(site.getName())
+				: Collections.emptyMap();
+
+		for (Entry<String, JobDataMap> job : jobs.entrySet()) {
+			String jobName = job.getKey();
+			JobDataMap jobDataMap = job.getValue();
+			JobState jobState = newJobState(site.getName(), getApplication(jobName), jobName, jobDataMap, addJobdata);
+			int[] jobCounts = counts.get(jobName);
+			evaluate(jobState, jobDataMap, getTimeUnit(jobDataMap), startedAfter.get(jobName), jobCounts[0],
+					jobCounts[1], () -> firstRuns.get(jobName));
+			stateList.add(jobState);
+		}
+	}
+
 	private JobState getState(String application, String job, Integer pageSize, boolean withRecords) {
 		JobState jobState = null;
 		try {
@@ -210,110 +466,149 @@ public class JobStateRestController implements JobStateApi {
 			JobKey jobKey = new JobKey(jobName, site.getName());
 			JobDetail jobDetail = scheduler.getJobDetail(jobKey);
 			if (null != jobDetail) {
-
-				jobState = new JobState();
-				jobState.setSite(site.getName());
-				jobState.setApplication(application);
-				jobState.setJob(jobName);
-
 				JobDataMap jobDataMap = jobDetail.getJobDataMap();
-				jobState.setJobData(jobDataMap.getWrappedMap());
-
-				int thresholdWarn = -1;
-				int thresholdError = -1;
-				if (jobDataMap.containsKey(Constants.THRESHOLD_WARN)) {
-					thresholdWarn = jobDataMap.getInt(Constants.THRESHOLD_WARN);
-				}
-				if (jobDataMap.containsKey(Constants.THRESHOLD_ERROR)) {
-					thresholdError = jobDataMap.getInt(Constants.THRESHOLD_ERROR);
+				jobState = newJobState(site.getName(), application, jobName, jobDataMap, true);
+				TimeUnit timeunit = getTimeUnit(jobDataMap);
+				Date now = new Date();
+				Date startedAfter = null == timeunit ? null : timeunit.getStartDate(now);
+
+				int totalSuccess;
+				int totalFailed;
+				int[] counts = jobCounterService.getCounts(site.getName(), application, jobKey.getName(),
+						startedAfter, now);
+				if (null != counts) {
+					totalSuccess = counts[0];
+					totalFailed = counts[1];
+				} else {
+					Page<org.appng.core.domain.JobRecord> okRecords = jobRecordService.getJobRecords(site.getName(),
+							application, jobKey.getName(), startedAfter, now, ExecutionResult.SUCCESS.name(), null,
+							new PageRequest(0, 1));
+					Page<org.appng.core.domain.JobRecord> failedRecords = jobRecordService.getJobRecords(
+							site.getName(), application, jobKey.getName(), startedAfter, now,
+							ExecutionResult.FAIL.name(), null, new PageRequest(0, 1));
+					totalSuccess = (int) okRecords.getTotalElements();
+					totalFailed = (int) failedRecords.getTotalElements();
 				}
 
-				TimeUnit timeunit = null;
-				if (jobDataMap.containsKey(Constants.THRESHOLD_TIMEUNIT)) {
-					timeunit = TimeUnit.valueOf(jobDataMap.getString(Constants.THRESHOLD_TIMEUNIT).toUpperCase());
+				if (withRecords) {
+					Page<org.appng.application.scheduler.model.JobRecord> allRecords = jobRecordService.getRecords(site,
+							application, jobKey.getName(), startedAfter, now, null, null, new PageRequest(0, pageSize));
+					jobState.setRecords(allRecords.map(r -> toRecord(r)).getContent());
 				}
 
-				Date now = new Date();
-				boolean hasTimeUnit = null != timeunit;
-				Date startedAfter = hasTimeUnit ? timeunit.getStartDate(now) : null;
+				evaluate(jobState, jobDataMap, timeunit, startedAfter, totalSuccess, totalFailed, () -> {
+					org.appng.core.domain.JobRecord firstRun = jobRecordService.getFirstRun(site.getName(),
+							application, jobKey.getName());
+					return null == firstRun ? null : firstRun.getStartTime();
+				});
+			}
+		} catch (SchedulerException e) {
+			log.error("error while retrieving job", e);
+		}
+		return jobState;
+	}
 
-				Page<org.appng.core.domain.JobRecord> okRecords = jobRecordService.getJobRecords(site.getName(), application,
-						jobKey.getName(), startedAfter, now, ExecutionResult.SUCCESS.name(), null,
-						new PageRequest(0, 1));
+	private JobState newJobState(String siteName, String application, String jobName, JobDataMap jobDataMap,
+			boolean addJobdata) {
+		JobState jobState = new JobState();
+		jobState.setSite(siteName);
+		jobState.setApplication(application);
+		jobState.setJob(jobName);
+		if (addJobdata) {
+			jobState.setJobData(jobDataMap.getWrappedMap());
+		}
+		return jobState;
+	}
 
-				Page<org.appng.core.domain.JobRecord> failedRecords = jobRecordService.getJobRecords(site.getName(), application,
-						jobKey.getName(), startedAfter, now, ExecutionResult.FAIL.name(), null, new PageRequest(0, 1));
+	private static String getApplication(String jobName) {
+		return jobName.substring(0, jobName.indexOf(SchedulerUtils.JOB_SEPARATOR));
+	}
 
-				if (hasTimeUnit) {
-					jobState.setStartedAfter(toOffsetDateTime(startedAfter));
-				}
-				int totalSuccess = (int) okRecords.getTotalElements();
-				int totalFailed = (int) failedRecords.getTotalElements();
-				int total = totalSuccess + totalFailed;
+	private static boolean hasThresholds(JobDataMap jobDataMap) {
+		return jobDataMap.containsKey(Constants.THRESHOLD_TIMEUNIT) && (jobDataMap.containsKey(Constants.THRESHOLD_WARN)
+				|| jobDataMap.containsKey(Constants.THRESHOLD_ERROR));
+	}
 
-				jobState.setTotalFailed(totalFailed);
-				jobState.setTotalSuccess(totalSuccess);
-				jobState.setTotalRecords(total);
+	private static TimeUnit getTimeUnit(JobDataMap jobDataMap) {
+		if (jobDataMap.containsKey(Constants.THRESHOLD_TIMEUNIT)) {
+			return TimeUnit.valueOf(jobDataMap.getString(Constants.THRESHOLD_TIMEUNIT).toUpperCase());
+		}
+		return null;
+	}
 
-				if (withRecords) {
-					Page<org.appng.core.domain.JobRecord> allRecords = jobRecordService.getJobRecords(site.getName(), application,
-							jobKey.getName(), startedAfter, now, null, null, new PageRequest(0, pageSize));
-					jobState.setRecords(allRecords.map(r -> toRecord(r)).getContent());
-				}
+	/**
+	 * Sets the totals, the state and the message of the given {@link JobState}, by validating the given counts
+	 * against the thresholds of the job.
+	 * 
+	 * @param firstRun
+	 *                 supplies the start time of the first recorded execution of the job, only called when needed
+	 */
+	private void evaluate(JobState jobState, JobDataMap jobDataMap, TimeUnit timeunit, Date startedAfter,
+			int totalSuccess, int totalFailed, Supplier<Date> firstRun) {
+		int thresholdWarn = -1;
+		int thresholdError = -1;
+		if (jobDataMap.containsKey(Constants.THRESHOLD_WARN)) {
+			thresholdWarn = jobDataMap.getInt(Constants.THRESHOLD_WARN);
+		}
+		if (jobDataMap.containsKey(Constants.THRESHOLD_ERROR)) {
+			thresholdError = jobDataMap.getInt(Constants.THRESHOLD_ERROR);
+		}
 
-				String message = "Thresholds and/or time unit have not been definded.";
-				boolean hasErrorThreshold = thresholdError > 0;
-				boolean hasWarnThreshold = thresholdWarn > 0;
-				StateNameEnum state = StateNameEnum.OK;
-
-				if (jobDataMap.getBoolean(Constants.THRESHOLDS_DISABLED)) {
-					message = "Thresholds are disabled";
-				} else if (hasTimeUnit && (hasWarnThreshold || hasErrorThreshold)) {
-					org.appng.core.domain.JobRecord firstRun = jobRecordService.getFirstRun(site.getName(), application,
-							jobKey.getName());
-					if (checkFirstRun && null != firstRun && firstRun.getStartTime().after(startedAfter)) {
-						message = String.format(
-								"Job first run at %s, so not enough data to validate tresholds based on %s.",
-								DATE_FORMAT.format(firstRun.getStartTime()), DATE_FORMAT.format(startedAfter));
-					} else {
-						int treshold;
-						String operand = "less than";
-						StateNameEnum logState = state;
-						String messageFormat = "The job failed %s time(s) and succeeded %s time(s) during the last %s, which is %s the %s treshold of %s.";
-						if (hasErrorThreshold && totalSuccess < thresholdError) {
-							logState = state = StateNameEnum.ERROR;
-							treshold = thresholdError;
-						} else if (hasWarnThreshold && totalSuccess < thresholdWarn) {
-							logState = state = StateNameEnum.WARN;
-							treshold = thresholdWarn;
-						} else {
-							treshold = hasWarnThreshold ? thresholdWarn : (hasErrorThreshold ? thresholdError : -1);
-							logState = hasWarnThreshold ? StateNameEnum.WARN
-									: (hasErrorThreshold ? StateNameEnum.ERROR : StateNameEnum.OK);
-							operand = "greater than/equal to";
-						}
-						message = String.format(messageFormat, totalFailed, totalSuccess, timeunit, operand, logState,
-								treshold);
-					}
+		boolean hasTimeUnit = null != timeunit;
+		if (hasTimeUnit) {
+			jobState.setStartedAfter(toOffsetDateTime(startedAfter));
+		}
+		jobState.setTotalFailed(totalFailed);
+		jobState.setTotalSuccess(totalSuccess);
+		jobState.setTotalRecords(totalSuccess + totalFailed);
+
+		String message = "Thresholds and/or time unit have not been definded.";
+		boolean hasErrorThreshold = thresholdError > 0;
+		boolean hasWarnThreshold = thresholdWarn > 0;
+		StateNameEnum state = StateNameEnum.OK;
+
+		if (jobDataMap.getBoolean(Constants.THRESHOLDS_DISABLED)) {
+			message = "Thresholds are disabled";
+		} else if (hasTimeUnit && (hasWarnThreshold || hasErrorThreshold)) {
+			Date firstRunStart = checkFirstRun ? firstRun.get() : null;
+			if (null != firstRunStart && firstRunStart.after(startedAfter)) {
+				message = String.format("Job first run at %s, so not enough data to validate tresholds based on %s.",
+						DATE_FORMAT.format(firstRunStart), DATE_FORMAT.format(startedAfter));
+			} else {
+				int treshold;
+				String operand = "less than";
+				StateNameEnum logState = state;
+				String messageFormat = "The job failed %s time(s) and succeeded %s time(s) during the last %s, which is %s the %s treshold of %s.";
+				if (hasErrorThreshold && totalSuccess < thresholdError) {
+					logState = state = StateNameEnum.ERROR;
+					treshold = thresholdError;
+				} else if (hasWarnThreshold && totalSuccess < thresholdWarn) {
+					logState = state = StateNameEnum.WARN;
+					treshold = thresholdWarn;
+				} else {
+					treshold = hasWarnThreshold ? thresholdWarn : (hasErrorThreshold ? thresholdError : -1);
+					logState = hasWarnThreshold ? StateNameEnum.WARN
+							: (hasErrorThreshold ? StateNameEnum.ERROR : StateNameEnum.OK);
+					operand = "greater than/equal to";
 				}
-				jobState.setStateName(state);
-				jobState.setState(state.ordinal());
-				jobState.setMessage(message);
+				message = String.format(messageFormat, totalFailed, totalSuccess, timeunit, operand, logState,
+						treshold);
 			}
-		} catch (SchedulerException e) {
-			log.error("error while retrieving job", e);
 		}
-		return jobState;
+		jobState.setStateName(state);
+		jobState.setState(state.ordinal());
+		jobState.setMessage(message);
 	}
 
-	private JobRecord toRecord(org.appng.core.domain.JobRecord r) {
+	private JobRecord toRecord(org.appng.application.scheduler.model.JobRecord r) {
 		JobRecord jobRecord = new JobRecord();
 		jobRecord.setId(r.getId());
-		jobRecord.setStart(toOffsetDateTime(r.getStartTime()));
-		jobRecord.setEnd(toOffsetDateTime(r.getEndTime()));
+		jobRecord.setStart(toOffsetDateTime(r.getStart()));
+		jobRecord.setEnd(toOffsetDateTime(r.getEnd()));
 		jobRecord.setRunOnce(r.isRunOnce());
 		jobRecord.setDuration(r.getDuration().intValue());
-		ExecutionResult execResult = ExecutionResult.valueOf(r.getResult());
+		jobRecord.setStacktrace(r.getStacktraces());
+		ExecutionResult execResult = r.getResult();
 		jobRecord.setState(
 				ExecutionResult.SUCCESS.equals(execResult) ? JobRecord.StateEnum.OK : JobRecord.StateEnum.ERROR);
 		return jobRecord;
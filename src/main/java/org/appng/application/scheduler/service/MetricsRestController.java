@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.appng.application.scheduler.PropertyConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@link RestController} providing the {@link SchedulerMetrics} in the Prometheus text format. Only in-memory values
+ * are read, so the endpoint can be scraped frequently.
+ */
+@RestController
+@RequiredArgsConstructor
+public class MetricsRestController {
+
+	static final String PROMETHEUS_TEXT_VALUE = "text/plain;version=0.0.4;charset=UTF-8";
+
+	private final SchedulerMetrics schedulerMetrics;
+	private @Value("${" + PropertyConstants.BEARER_TOKEN + "}") String bearerToken;
+
+	@RequestMapping(value = "/metrics", method = RequestMethod.GET)
+	public ResponseEntity<String> getMetrics(
+			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) List<String> auths) {
+		if (null == auths || StringUtils.isBlank(bearerToken) || !auths.contains("Bearer " + bearerToken)) {
+			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
+		}
+		StringBuilder metrics = new StringBuilder(4096);
+		schedulerMetrics.write(metrics);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType(PROMETHEUS_TEXT_VALUE));
+		return new ResponseEntity<>(metrics.toString(), headers, HttpStatus.OK);
+	}
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.appng.api.SiteProperties;
+import org.appng.api.model.Site;
+import org.appng.application.scheduler.model.JobRecord;
+import org.appng.core.domain.JobExecutionRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The archive tier for job records. Instead of just being deleted, outdated records are appended to compressed
+ * segment files, one per site and month of the start time. The segments are kept for
+ * {@code recordArchiveLifeTime} days, within the folder {@code recordArchiveFolder} of the site's root directory.
+ * <p>
+ * Each append adds a gzip member containing one JSON record per line, so a segment is never rewritten. For each
+ * member, a line holding its position, length, number of records and the range of start times is appended to the
+ * sparse index of the segment ({@code <segment>.idx}). Reading a time range only decompresses the members overlapping
+ * that range.
+ */
+@Slf4j
+@Component
+public class RecordArchive {
+
+	static final String SEGMENT_SUFFIX = ".ndjson.gz";
+	static final String INDEX_SUFFIX = ".idx";
+	private static final String SEPARATOR = "\t";
+	private static final FastDateFormat MONTH_FORMAT = FastDateFormat.getInstance("yyyy-MM");
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private final String folder;
+	private final int lifeTime;
+
+	public RecordArchive(@Value("${recordArchiveFolder:WEB-INF/archive}") String folder,
+			@Value("${recordArchiveLifeTime:0}") int lifeTime) {
+		this.folder = folder;
+		this.lifeTime = lifeTime;
+	}
+
+	/**
+	 * Whether outdated records should be archived.
+	 */
+	public boolean isEnabled() {
+		return lifeTime > 0;
+	}
+
+	File getFolder(Site site) {
+		return new File(site.getProperties().getString(SiteProperties.SITE_ROOT_DIR), folder);
+	}
+
+	/**
+	 * Appends the given records of a site to the segments of the respective months.
+	 *
+	 * @param site
+	 *                the {@link Site} the records belong to
+	 * @param records
+	 *                the records to archive
+	 * @throws IOException
+	 *                     if a segment can not be written, in which case the records must not be deleted
+	 */
+	public synchronized void append(Site site, Collection<JobExecutionRecord> records) throws IOException {
+		File archiveFolder = getFolder(site);
+		Files.createDirectories(archiveFolder.toPath());
+		Map<String, List<JobExecutionRecord>> months = records.stream().collect(
+				Collectors.groupingBy(r -> MONTH_FORMAT.format(r.getStartTime()), TreeMap::new, Collectors.toList()));
+		for (Map.Entry<String, List<JobExecutionRecord>> month : months.entrySet()) {
+			File segment = new File(archiveFolder, site.getName() + "-" + month.getKey() + SEGMENT_SUFFIX);
+			Block block = write(segment, month.getValue());
+			try (Writer index = Files.newBufferedWriter(getIndex(segment).toPath(), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+				index.write(block.toString());
+				index.write(System.lineSeparator());
+			}
+			log.debug("archived {} records to {}", block.count, segment);
+		}
+	}
+
+	private Block write(File segment, List<JobExecutionRecord> records) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8))) {
+			for (JobExecutionRecord record : records) {
+				writer.write(objectMapper.writeValueAsString(record));
+				writer.newLine();
+			}
+		}
+		long offset = segment.length();
+		try (OutputStream out = Files.newOutputStream(segment.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			bytes.writeTo(out);
+		}
+		long first = records.stream().mapToLong(r -> r.getStartTime().getTime()).min().getAsLong();
+		long last = records.stream().mapToLong(r -> r.getStartTime().getTime()).max().getAsLong();
+		return new Block(offset, bytes.size(), records.size(), first, last);
+	}
+
+	/**
+	 * Returns the archived records of a site started within the given range and matching the given filter, ordered by
+	 * start time and id descending.
+	 *
+	 * @see #getRecords(Site, Date, Date, Predicate, long, int)
+	 */
+	public List<JobRecord> getRecords(Site site, Date start, Date end, Predicate<JobRecord> filter) {
+		return getRecords(site, start, end, filter, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a range of the archived records of a site started within the given range and matching the given filter,
+	 * ordered by start time and id descending.
+	 * <p>
+	 * The blocks are processed from the latest to the earliest. Blocks with overlapping start times are read together,
+	 * since their records interleave and a record archived twice is contained in both. Without a filter, a block that
+	 * doesn't overlap with others and lies completely within the range is skipped by its count, without decompressing
+	 * it. Reading stops as soon as {@code limit} records have been found.
+	 *
+	 * @param site
+	 *               the {@link Site}
+	 * @param start
+	 *               the minimum start time, optional
+	 * @param end
+	 *               the maximum start time, optional
+	 * @param filter
+	 *               the filter for the records, {@code null} for all records
+	 * @param offset
+	 *               the number of matching records to skip
+	 * @param limit
+	 *               the maximum number of records to return
+	 * @return the records
+	 */
+	public List<JobRecord> getRecords(Site site, Date start, Date end, Predicate<JobRecord> filter, long offset,
+			int limit) {
+		List<Member> members = new ArrayList<>();
+		for (File segment : getSegments(site, start, end)) {
+			readIndex(segment).stream().filter(b -> b.overlaps(start, end)).map(b -> new Member(segment, b))
+					.forEach(members::add);
+		}
+		members.sort(Comparator.comparingLong((Member m) -> m.block.last).thenComparingLong(m -> m.block.first)
+				.reversed());
+
+		List<JobRecord> result = new ArrayList<>();
+		long skipped = 0;
+		int i = 0;
+		while (i < members.size() && result.size() < limit) {
+			List<Member> cluster = new ArrayList<>();
+			long first = Long.MAX_VALUE;
+			do {
+				Member member = members.get(i++);
+				cluster.add(member);
+				first = Math.min(first, member.block.first);
+			} while (i < members.size() && members.get(i).block.last >= first);
+
+			Block single = cluster.get(0).block;
+			if (null == filter && cluster.size() == 1 && single.isWithin(start, end)
+					&& skipped + single.count <= offset) {
+				skipped += single.count;
+				continue;
+			}
+			for (JobRecord record : read(cluster, start, end, filter)) {
+				if (skipped < offset) {
+					skipped++;
+				} else if (result.size() < limit) {
+					result.add(record);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** reads the matching records of some blocks, ordered by start time and id descending */
+	private List<JobRecord> read(List<Member> members, Date start, Date end, Predicate<JobRecord> filter) {
+		// a record may have been archived twice if deleting it failed
+		Map<Integer, JobRecord> records = new LinkedHashMap<>();
+		for (Member member : members) {
+			try (RandomAccessFile file = new RandomAccessFile(member.segment, "r")) {
+				byte[] data = new byte[member.block.length];
+				file.seek(member.block.offset);
+				file.readFully(data);
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+						new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+					String line;
+					while (null != (line = reader.readLine())) {
+						JobRecord record = JobRecord.fromDomain(objectMapper.readValue(line, JobExecutionRecord.class));
+						if (isWithin(record.getStart(), start, end) && (null == filter || filter.test(record))) {
+							records.put(record.getId(), record);
+						}
+					}
+				}
+			} catch (IOException e) {
+				log.error(String.format("error reading %s", member.segment), e);
+			}
+		}
+		List<JobRecord> result = new ArrayList<>(records.values());
+		result.sort(Comparator.comparing(JobRecord::getStart).thenComparing(JobRecord::getId).reversed());
+		return result;
+	}
+
+	/**
+	 * Estimates the number of archived records of a site started within the given range, using the sparse index
+	 * only. To leave out records that have been archived but not yet deleted, the range should end before the oldest
+	 * record in the database.
+	 */
+	public long estimate(Site site, Date start, Date end) {
+		return getSegments(site, start, end).stream().flatMap(s -> readIndex(s).stream())
+				.filter(b -> b.overlaps(start, end)).mapToLong(b -> b.count).sum();
+	}
+
+	/**
+	 * Returns the start time of the latest archived record of a site.
+	 *
+	 * @return the start time, or {@code null} if there are no archived records
+	 */
+	public Date getLatest(Site site) {
+		List<File> segments = getSegments(site, null, null);
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			long latest = readIndex(segments.get(i)).stream().mapToLong(b -> b.last).max().orElse(-1);
+			if (latest >= 0) {
+				return new Date(latest);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Whether a query for records started after the given date reaches into the archive. Queries without a start date
+	 * cover the whole archive.
+	 */
+	public boolean reaches(Site site, Date start) {
+		if (!isEnabled()) {
+			return false;
+		}
+		Date latest = getLatest(site);
+		return null != latest && (null == start || !start.after(latest));
+	}
+
+	/**
+	 * Deletes the segments of a site that ended more than {@code recordArchiveLifeTime} days ago.
+	 *
+	 * @return the number of deleted segments
+	 */
+	public synchronized int cleanUp(Site site) {
+		Date outdated = DateUtils.addDays(new Date(), -lifeTime);
+		int deleted = 0;
+		for (File segment : getSegments(site, null, null)) {
+			Date end = DateUtils.addMonths(getMonth(segment), 1);
+			if (!end.after(outdated)) {
+				if (segment.delete() && getIndex(segment).delete()) {
+					deleted++;
+				} else {
+					log.warn("could not delete {}", segment);
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/** the segments of a site covering the given range, ordered by month */
+	private List<File> getSegments(Site site, Date start, Date end) {
+		String prefix = site.getName() + "-";
+		File[] files = getFolder(site)
+				.listFiles(f -> f.getName().startsWith(prefix) && f.getName().endsWith(SEGMENT_SUFFIX));
+		List<File> segments = new ArrayList<>();
+		if (null != files) {
+			for (File segment : files) {
+				Date month = getMonth(segment);
+				if (null != month && (null == start || DateUtils.addMonths(month, 1).after(start))
+						&& (null == end || !month.after(end))) {
+					segments.add(segment);
+				}
+			}
+		}
+		segments.sort(Comparator.comparing(File::getName));
+		return segments;
+	}
+
+	private Date getMonth(File segment) {
+		String name = segment.getName();
+		int end = name.length() - SEGMENT_SUFFIX.length();
+		try {
+			return MONTH_FORMAT.parse(name.substring(end - MONTH_FORMAT.getPattern().length(), end));
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+
+	private File getIndex(File segment) {
+		return new File(segment.getParentFile(), segment.getName() + INDEX_SUFFIX);
+	}
+
+	private List<Block> readIndex(File segment) {
+		List<Block> blocks = new ArrayList<>();
+		File index = getIndex(segment);
+		if (index.exists()) {
+			try {
+				for (String line : Files.readAllLines(index.toPath(), StandardCharsets.UTF_8)) {
+					String[] parts = line.split(SEPARATOR);
+					if (parts.length == 5) {
+						blocks.add(new Block(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+								Integer.parseInt(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				log.error(String.format("error reading %s", index), e);
+			}
+		}
+		return blocks;
+	}
+
+	private static boolean isWithin(Date date, Date start, Date end) {
+		return (null == start || !date.before(start)) && (null == end || !date.after(end));
+	}
+
+	/** A {@link Block} together with the segment containing it */
+	@AllArgsConstructor
+	private static class Member {
+		private final File segment;
+		private final Block block;
+	}
+
+	/** A gzip member within a segment, as listed in the sparse index */
+	@Getter
+	@AllArgsConstructor
+	static class Block {
+		/** the position within the segment */
+		private final long offset;
+		/** the compressed length */
+		private final int length;
+		/** the number of records */
+		private final int count;
+		/** the earliest start time */
+		private final long first;
+		/** the latest start time */
+		private final long last;
+
+		boolean overlaps(Date start, Date end) {
+			return (null == start || last >= start.getTime()) && (null == end || first <= end.getTime());
+		}
+
+		boolean isWithin(Date start, Date end) {
+			return (null == start || first >= start.getTime()) && (null == end || last <= end.getTime());
+		}
+
+		@Override
+		public String toString() {
+			return String.join(SEPARATOR, String.valueOf(offset), String.valueOf(length), String.valueOf(count),
+					String.valueOf(first), String.valueOf(last));
+		}
+	}
+}
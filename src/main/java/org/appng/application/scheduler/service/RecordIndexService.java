@@ -0,0 +1,246 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Manages a composite index on the job record table, matching the queries for records, thresholds and the
+ * housekeeping: equality on site, application, job name and result, and a range on the start time. The core schema
+ * does not provide such an index.
+ * <p>
+ * On startup, the indexes of the table are checked. If there is no index starting with these columns, a warning
+ * containing the statement is logged. The index can then be created from the records page (see
+ * {@link #createIndex()}), since this may take a while on large tables. The statement depends on the database (see
+ * {@link Dialect}).
+ */
+@Slf4j
+@Component
+public class RecordIndexService {
+
+	static final String RECORD_TABLE = "job_execution_record";
+	static final String INDEX_NAME = "idx_job_record_filter";
+	static final List<String> INDEX_COLUMNS = Arrays.asList("site", "application", "job_name", "result",
+			"start_time");
+
+	/** The databases supported by appNG, with the statements to create the index and to estimate the row count */
+	enum Dialect {
+		/** with prefixes, since the columns exceed the maximum key length, and without locking the table */
+		MYSQL("CREATE INDEX %s ON %s (site(150), application(150), job_name(150), result(16), start_time)"
+				+ " ALGORITHM=INPLACE LOCK=NONE",
+				"SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?"),
+		MSSQL("CREATE INDEX %s ON %s (site, application, job_name, result, start_time)",
+				"SELECT SUM(rows) FROM sys.partitions WHERE object_id = OBJECT_ID(?) AND index_id IN (0, 1)"),
+		/** without blocking writes, which requires auto-commit */
+		POSTGRESQL("CREATE INDEX CONCURRENTLY %s ON %s (site, application, job_name, result, start_time)",
+				"SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE relname = ?"),
+		/** no statistics available, but only used for development and testing */
+		HSQLDB("CREATE INDEX %s ON %s (site, application, job_name, result, start_time)", null),
+		UNKNOWN(null, null);
+
+		private final String createIndex;
+		private final String estimateRows;
+
+		private Dialect(String createIndex, String estimateRows) {
+			this.createIndex = createIndex;
+			this.estimateRows = estimateRows;
+		}
+
+		static Dialect of(String databaseProductName) {
+			String name = databaseProductName.toLowerCase();
+			if (name.contains("mysql") || name.contains("mariadb")) {
+				return MYSQL;
+			} else if (name.contains("microsoft sql server")) {
+				return MSSQL;
+			} else if (name.contains("postgres")) {
+				return POSTGRESQL;
+			} else if (name.contains("hsql")) {
+				return HSQLDB;
+			}
+			return UNKNOWN;
+		}
+
+		String getCreateIndex() {
+			return null == createIndex ? null : String.format(createIndex, INDEX_NAME, RECORD_TABLE);
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private Dialect dialect;
+
+	public RecordIndexService(EntityManagerFactory entityManagerFactory) {
+		this.jdbcTemplate = new JdbcTemplate(((EntityManagerFactoryInfo) entityManagerFactory).getDataSource());
+	}
+
+	@PostConstruct
+	public void initialize() {
+		try {
+			if (hasIndex()) {
+				log.debug("{} has an index on {}", RECORD_TABLE, INDEX_COLUMNS);
+			} else {
+				log.warn("{} has no index on {}, consider creating it on the records page or with: {}", RECORD_TABLE,
+						INDEX_COLUMNS, getDialect().getCreateIndex());
+			}
+		} catch (DataAccessException e) {
+			log.warn(String.format("error checking the index on %s", RECORD_TABLE), e);
+		}
+	}
+
+	/**
+	 * Creates the composite index, if supported for the database and not present yet.
+	 *
+	 * @return whether the index has been created
+	 */
+	public boolean createIndex() {
+		String createIndex = getDialect().getCreateIndex();
+		if (null == createIndex) {
+			log.warn("can not create an index on {} for {}", RECORD_TABLE, getDialect());
+			return false;
+		}
+		try {
+			// possibly created meanwhile by another site
+			if (hasIndex()) {
+				log.info("{} already has an index on {}", RECORD_TABLE, INDEX_COLUMNS);
+				return false;
+			}
+			long start = System.currentTimeMillis();
+			jdbcTemplate.execute(createIndex);
+			log.info("created index {} on {} within {}ms", INDEX_NAME, RECORD_TABLE,
+					System.currentTimeMillis() - start);
+			return true;
+		} catch (DataAccessException e) {
+			log.error(String.format("error creating the index on %s", RECORD_TABLE), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the job record table has an index starting with the required columns, regardless of its name.
+	 */
+	public boolean hasIndex() {
+		return getIndexColumns().values().stream().anyMatch(this::isComposite);
+	}
+
+	/**
+	 * Returns the indexes of the job record table. If there is no composite index, an entry for the missing index is
+	 * added.
+	 */
+	public List<IndexInfo> getIndexes() {
+		Map<String, List<String>> indexes = getIndexColumns();
+		Long rows = getEstimatedRows();
+		List<IndexInfo> infos = new ArrayList<>();
+		indexes.forEach((name, columns) -> infos.add(new IndexInfo(name, String.join(", ", columns),
+				isComposite(columns), true, rows)));
+		if (infos.stream().noneMatch(IndexInfo::isComposite)) {
+			infos.add(new IndexInfo(INDEX_NAME, String.join(", ", INDEX_COLUMNS), true, false, rows));
+		}
+		return infos;
+	}
+
+	private boolean isComposite(List<String> columns) {
+		return columns.size() >= INDEX_COLUMNS.size()
+				&& columns.subList(0, INDEX_COLUMNS.size()).equals(INDEX_COLUMNS);
+	}
+
+	private Map<String, List<String>> getIndexColumns() {
+		return jdbcTemplate.execute((ConnectionCallback<Map<String, List<String>>>) connection -> {
+			DatabaseMetaData metaData = connection.getMetaData();
+			Map<String, Map<Short, String>> indexes = new TreeMap<>();
+			for (String tableName : Arrays.asList(RECORD_TABLE, RECORD_TABLE.toUpperCase())) {
+				try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, true)) {
+					while (rs.next()) {
+						String name = rs.getString("INDEX_NAME");
+						String column = rs.getString("COLUMN_NAME");
+						if (null != name && null != column) {
+							indexes.computeIfAbsent(name.toLowerCase(), n -> new TreeMap<>())
+									.put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase());
+						}
+					}
+				}
+				if (!indexes.isEmpty()) {
+					break;
+				}
+			}
+			Map<String, List<String>> columns = new TreeMap<>();
+			indexes.forEach((name, positions) -> columns.put(name, new ArrayList<>(positions.values())));
+			return columns;
+		});
+	}
+
+	/**
+	 * Returns the number of rows of the job record table, as estimated by the database's statistics. For HSQLDB, the
+	 * rows are counted.
+	 *
+	 * @return the number of rows, or {@code null} if unknown
+	 */
+	public Long getEstimatedRows() {
+		try {
+			Dialect dialect = getDialect();
+			if (Dialect.HSQLDB.equals(dialect)) {
+				return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + RECORD_TABLE, Long.class);
+			} else if (null != dialect.estimateRows) {
+				List<Long> rows = jdbcTemplate.queryForList(dialect.estimateRows, Long.class, RECORD_TABLE);
+				return rows.isEmpty() ? null : rows.get(0);
+			}
+		} catch (DataAccessException e) {
+			log.warn("error estimating the rows of {}: {}", RECORD_TABLE, e.getMessage());
+		}
+		return null;
+	}
+
+	Dialect getDialect() {
+		if (null == dialect) {
+			dialect = jdbcTemplate.execute((ConnectionCallback<Dialect>) connection -> Dialect
+					.of(connection.getMetaData().getDatabaseProductName()));
+		}
+		return dialect;
+	}
+
+	/** An index of the job record table */
+	@Getter
+	@AllArgsConstructor
+	public static class IndexInfo {
+		/** the name of the index */
+		private final String name;
+		/** the indexed columns */
+		private final String columns;
+		/** whether the index serves the record queries */
+		private final boolean composite;
+		/** whether the index exists */
+		private final boolean present;
+		/** the estimated number of rows of the table */
+		private final Long estimatedRows;
+	}
+}
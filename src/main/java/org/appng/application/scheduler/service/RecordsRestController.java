@@ -15,14 +15,24 @@
  */
 package org.appng.application.scheduler.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.lang3.StringUtils;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
 import org.appng.application.scheduler.PropertyConstants;
 import org.appng.application.scheduler.business.Records;
+import org.appng.application.scheduler.model.FailureSignature;
 import org.appng.application.scheduler.model.JobRecord;
+import org.appng.application.scheduler.service.JobRecordService.RecordCursor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
@@ -35,6 +45,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -46,7 +59,13 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class RecordsRestController {
 
+	static final String NDJSON_VALUE = "application/x-ndjson";
+
 	private final JobRecordService jobRecordService;
+	private final StacktraceService stacktraceService;
+	private final SiteVersions siteVersions;
+	/** the same mapper the regular responses are written with */
+	private final ObjectMapper objectMapper;
 	private @Value("${" + PropertyConstants.BEARER_TOKEN + "}") String bearerToken;
 
 	@RequestMapping(value = "/jobRecords", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
@@ -58,17 +77,90 @@ public class RecordsRestController {
 			@RequestParam(required = false, name = "result") String result,
 			@RequestParam(required = false, name = "minDuration") Integer duration,
 			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) List<String> auths,
-			Application application, Site site) {
+			Application application, Site site, HttpServletRequest request, HttpServletResponse response) {
 		if (!verifyToken(auths)) {
 			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
 		}
+		if (siteVersions.checkNotModified(request, response, Collections.singleton(site.getName()))) {
+			return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+		}
 
-		Page<JobRecord> records = jobRecordService.getRecords(site.getName(), applicationName, jobName,
+		Page<JobRecord> records = jobRecordService.getRecords(site, applicationName, jobName,
 				Records.getDate(startedAfter), Records.getDate(startedBefore), result, duration, null);
 		return new ResponseEntity<>(records.getContent(), HttpStatus.OK);
 
 	}
 
+	/**
+	 * Streams the matching records as <a href="http://ndjson.org/">newline delimited JSON</a>, ordered by start time
+	 * and id. Each record contains a {@code cursor}, which can be passed as parameter to resume the stream after that
+	 * record.
+	 */
+	@RequestMapping(value = "/jobRecords", method = RequestMethod.GET, params = "stream=true")
+	public void streamJobRecords(@RequestParam(required = false, name = "application") String applicationName,
+			@RequestParam(required = false, name = "job") String jobName,
+			@RequestParam(required = false, name = "startedAfter") String startedAfter,
+			@RequestParam(required = false, name = "startedBefore") String startedBefore,
+			@RequestParam(required = false, name = "result") String result,
+			@RequestParam(required = false, name = "minDuration") Integer duration,
+			@RequestParam(required = false, name = "cursor") String cursor,
+			@RequestParam(required = false, name = "limit", defaultValue = "0") int limit,
+			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) List<String> auths,
+			Application application, Site site, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		if (!verifyToken(auths)) {
+			response.setStatus(HttpStatus.UNAUTHORIZED.value());
+			return;
+		}
+		if (siteVersions.checkNotModified(request, response, Collections.singleton(site.getName()))) {
+			return;
+		}
+		RecordCursor after;
+		try {
+			after = RecordCursor.parse(cursor);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(NDJSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		OutputStream out = response.getOutputStream();
+		try {
+			jobRecordService.streamRecords(site.getName(), applicationName, jobName, Records.getDate(startedAfter),
+					Records.getDate(startedBefore), result, duration, after, Math.max(0, limit), (r, c) -> {
+						ObjectNode node = objectMapper.valueToTree(r);
+						node.put("cursor", c.toString());
+						try {
+							out.write(objectMapper.writeValueAsBytes(node));
+							out.write('\n');
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the failures of job executions grouped by the signature of their stacktrace, most recent first.
+	 */
+	@RequestMapping(value = "/jobRecords/failures", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+	public ResponseEntity<List<FailureSignature>> getFailures(
+			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) List<String> auths,
+			Application application, Site site, HttpServletRequest request, HttpServletResponse response) {
+		if (!verifyToken(auths)) {
+			return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
+		}
+		if (siteVersions.checkNotModified(request, response, Collections.singleton(site.getName()))) {
+			return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+		}
+		return new ResponseEntity<>(stacktraceService.getFailures(site.getName()), HttpStatus.OK);
+	}
+
 	boolean verifyToken(List<String> auths) {
 		if (null == auths) {
 			return false;
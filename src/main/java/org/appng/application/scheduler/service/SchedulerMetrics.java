@@ -0,0 +1,291 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.application.scheduler.model.JobResult;
+import org.appng.application.scheduler.quartz.DelegateStatistics;
+import org.appng.application.scheduler.quartz.DelegateStatistics.MethodStatistics;
+import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects metrics about job executions in memory, so they can be scraped frequently without touching the database.
+ * Execution counts, durations and fire lateness are fed by the
+ * {@link org.appng.application.scheduler.quartz.RecordingJobListener}, misfires by this class being a
+ * {@link TriggerListener} and scheduler errors by being a {@link org.quartz.SchedulerListener}. If enabled, the
+ * {@link DelegateStatistics} of the job store are included.
+ * 
+ * @see #write(StringBuilder)
+ */
+@Component
+public class SchedulerMetrics extends SchedulerListenerSupport implements TriggerListener {
+
+	static final double[] DURATION_BUCKETS = { 0.1, 0.5, 1, 5, 10, 30, 60, 300, 900, 3600 };
+	static final double[] LATENESS_BUCKETS = { 0.01, 0.1, 0.5, 1, 5, 10, 30, 60, 300 };
+
+	private final ConcurrentMap<String, JobMeters> jobs = new ConcurrentHashMap<>();
+	private final AtomicInteger running = new AtomicInteger();
+	private final LongAdder errors = new LongAdder();
+	private final JobRecordWriter jobRecordWriter;
+	private final Scheduler scheduler;
+
+	public SchedulerMetrics(JobRecordWriter jobRecordWriter, Scheduler scheduler) {
+		this.jobRecordWriter = jobRecordWriter;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * To be called when a job is about to be executed.
+	 */
+	public void jobStarted(JobExecutionContext context) {
+		running.incrementAndGet();
+		if (null != context.getScheduledFireTime()) {
+			long lateness = context.getFireTime().getTime() - context.getScheduledFireTime().getTime();
+			getMeters(context.getTrigger().getJobKey().getName()).lateness.observe(Math.max(0, lateness) / 1000d);
+		}
+	}
+
+	/**
+	 * To be called when a job has been executed.
+	 */
+	public void jobExecuted(JobExecutionContext context, JobExecutionException jobException) {
+		running.decrementAndGet();
+		Object result = context.getResult();
+		ExecutionResult executionResult;
+		if (result instanceof JobResult) {
+			executionResult = JobRecordService.getResult((JobResult) result, jobException);
+		} else {
+			executionResult = null == jobException ? ExecutionResult.SUCCESS : ExecutionResult.FAIL;
+		}
+		JobMeters meters = getMeters(context.getTrigger().getJobKey().getName());
+		meters.executions.get(executionResult).increment();
+		meters.duration.observe(context.getJobRunTime() / 1000d);
+	}
+
+	private JobMeters getMeters(String jobName) {
+		return jobs.computeIfAbsent(jobName, n -> new JobMeters());
+	}
+
+	@Override
+	public String getName() {
+		return getClass().getName();
+	}
+
+	@Override
+	public void triggerFired(Trigger trigger, JobExecutionContext context) {
+		// measured in jobStarted(), since the execution might get vetoed
+	}
+
+	@Override
+	public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+		return false;
+	}
+
+	@Override
+	public void triggerMisfired(Trigger trigger) {
+		getMeters(trigger.getJobKey().getName()).misfires.increment();
+	}
+
+	@Override
+	public void triggerComplete(Trigger trigger, JobExecutionContext context,
+			CompletedExecutionInstruction triggerInstructionCode) {
+		// handled by jobExecuted()
+	}
+
+	@Override
+	public void schedulerError(String msg, SchedulerException cause) {
+		errors.increment();
+	}
+
+	/**
+	 * Writes all metrics in the
+	 * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/#text-based-format">Prometheus text
+	 * format</a>.
+	 * 
+	 * @param out
+	 *            the {@link StringBuilder} to write to
+	 */
+	public void write(StringBuilder out) {
+		header(out, "scheduler_job_executions_total", "counter", "Number of job executions by result");
+		jobs.forEach((job, meters) -> meters.executions.forEach((result, count) -> sample(out,
+				"scheduler_job_executions_total", count.sum(), "job", job, "result", result.name())));
+
+		header(out, "scheduler_job_duration_seconds", "histogram", "Duration of job executions");
+		jobs.forEach((job, meters) -> meters.duration.write(out, "scheduler_job_duration_seconds", job));
+
+		header(out, "scheduler_job_fire_lateness_seconds", "histogram",
+				"Delay between the scheduled and the actual fire time");
+		jobs.forEach((job, meters) -> meters.lateness.write(out, "scheduler_job_fire_lateness_seconds", job));
+
+		header(out, "scheduler_trigger_misfires_total", "counter", "Number of misfired triggers");
+		jobs.forEach((job, meters) -> sample(out, "scheduler_trigger_misfires_total", meters.misfires.sum(), "job",
+				job));
+
+		int busy = Math.max(0, running.get());
+		header(out, "scheduler_thread_pool_threads", "gauge", "Threads of the scheduler's thread pool by state");
+		sample(out, "scheduler_thread_pool_threads", busy, "state", "busy");
+		sample(out, "scheduler_thread_pool_threads", Math.max(0, getThreadPoolSize() - busy), "state", "idle");
+
+		header(out, "scheduler_errors_total", "counter", "Number of errors reported by the scheduler");
+		sample(out, "scheduler_errors_total", errors.sum());
+
+		header(out, "scheduler_job_record_queue_size", "gauge", "Number of job records waiting to be written");
+		sample(out, "scheduler_job_record_queue_size", jobRecordWriter.getQueueSize());
+
+		header(out, "scheduler_job_record_lag_seconds", "gauge",
+				"Time the oldest queued job record is waiting to be written");
+		sample(out, "scheduler_job_record_lag_seconds", jobRecordWriter.getLag() / 1000d);
+
+		header(out, "scheduler_job_records_dropped_total", "counter",
+				"Number of records of successful executions dropped since the queue was full");
+		sample(out, "scheduler_job_records_dropped_total", jobRecordWriter.getDropped());
+
+		DelegateStatistics statistics = DriverDelegateWrapper.getStatistics(getSchedulerName());
+		if (null != statistics) {
+			List<MethodStatistics> methods = statistics.getMethods();
+			header(out, "scheduler_jobstore_calls_total", "counter", "Number of calls to the job store by method");
+			methods.forEach(m -> sample(out, "scheduler_jobstore_calls_total", m.getCalls(), "method", m.getMethod()));
+			header(out, "scheduler_jobstore_errors_total", "counter", "Number of failed calls to the job store by method");
+			methods.forEach(m -> sample(out, "scheduler_jobstore_errors_total", m.getErrors(), "method", m.getMethod()));
+			header(out, "scheduler_jobstore_seconds_total", "counter", "Time spent in the job store by method");
+			methods.forEach(m -> sample(out, "scheduler_jobstore_seconds_total", m.getTotalMillis() / 1000, "method",
+					m.getMethod()));
+			header(out, "scheduler_jobstore_max_seconds", "gauge", "Longest call to the job store by method");
+			methods.forEach(m -> sample(out, "scheduler_jobstore_max_seconds", m.getMaxMillis() / 1000, "method",
+					m.getMethod()));
+			header(out, "scheduler_jobstore_rows_total", "counter",
+					"Number of rows returned or affected by the job store by method");
+			methods.forEach(m -> sample(out, "scheduler_jobstore_rows_total", m.getRows(), "method", m.getMethod()));
+		}
+	}
+
+	private String getSchedulerName() {
+		try {
+			return scheduler.getSchedulerName();
+		} catch (SchedulerException e) {
+			return null;
+		}
+	}
+
+	private int getThreadPoolSize() {
+		try {
+			// in-memory, the job store is not involved here
+			return scheduler.getMetaData().getThreadPoolSize();
+		} catch (SchedulerException e) {
+			return 0;
+		}
+	}
+
+	private static void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder out, String name, double value, String... labels) {
+		out.append(name);
+		if (labels.length > 0) {
+			out.append('{');
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) {
+					out.append(',');
+				}
+				out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+			}
+			out.append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static class JobMeters {
+		private final Map<ExecutionResult, LongAdder> executions = new EnumMap<>(ExecutionResult.class);
+		private final Histogram duration = new Histogram(DURATION_BUCKETS);
+		private final Histogram lateness = new Histogram(LATENESS_BUCKETS);
+		private final LongAdder misfires = new LongAdder();
+
+		JobMeters() {
+			for (ExecutionResult result : ExecutionResult.values()) {
+				executions.put(result, new LongAdder());
+			}
+		}
+	}
+
+	private static class Histogram {
+		private final double[] bounds;
+		private final LongAdder[] buckets;
+		private final LongAdder count = new LongAdder();
+		private final DoubleAdder sum = new DoubleAdder();
+
+		Histogram(double[] bounds) {
+			this.bounds = bounds;
+			this.buckets = new LongAdder[bounds.length];
+			for (int i = 0; i < bounds.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void observe(double value) {
+			for (int i = 0; i < bounds.length; i++) {
+				if (value <= bounds[i]) {
+					buckets[i].increment();
+					break;
+				}
+			}
+			count.increment();
+			sum.add(value);
+		}
+
+		void write(StringBuilder out, String name, String job) {
+			long cumulated = 0;
+			for (int i = 0; i < bounds.length; i++) {
+				cumulated += buckets[i].sum();
+				sample(out, name + "_bucket", cumulated, "job", job, "le", String.valueOf(bounds[i]));
+			}
+			long total = Math.max(cumulated, count.sum());
+			sample(out, name + "_bucket", total, "job", job, "le", "+Inf");
+			sample(out, name + "_sum", sum.sum(), "job", job);
+			sample(out, name + "_count", total, "job", job);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates and updates the tables of the scheduler within the core database, like appNG does for its own tables. The
+ * migrations are located in {@value #LOCATION}{@code <database>} on the classpath, one folder per database type. The
+ * applied migrations are tracked in the table {@value #HISTORY_TABLE}, independently of those of appNG. While
+ * migrating, Flyway locks that table, so sites and cluster nodes starting at the same time wait for each other instead
+ * of creating the same table twice.
+ * <p>
+ * Services using these tables depend on this service, so the migrations are applied before they're initialized.
+ */
+@Slf4j
+@Component
+public class SchemaMigrationService {
+
+	static final String HISTORY_TABLE = "scheduler_schema_history";
+	static final String LOCATION = "classpath:db/scheduler/";
+
+	private final DataSource dataSource;
+
+	public SchemaMigrationService(EntityManagerFactory entityManagerFactory) {
+		this.dataSource = ((EntityManagerFactoryInfo) entityManagerFactory).getDataSource();
+	}
+
+	@PostConstruct
+	public void migrate() {
+		String type = new JdbcTemplate(dataSource).execute((ConnectionCallback<String>) connection -> {
+			String databaseProductName = connection.getMetaData().getDatabaseProductName().toLowerCase();
+			if (databaseProductName.contains("mysql") || databaseProductName.contains("mariadb")) {
+				return "mysql";
+			} else if (databaseProductName.contains("microsoft sql server")) {
+				return "mssql";
+			} else if (databaseProductName.contains("postgres")) {
+				return "postgresql";
+			} else if (databaseProductName.contains("hsql")) {
+				return "hsqldb";
+			}
+			log.warn("no migrations for {}, the tables of the scheduler must be created manually",
+					databaseProductName);
+			return null;
+		});
+		if (null == type) {
+			return;
+		}
+		try {
+			// the core schema is not empty, so start with the first migration of the scheduler
+			MigrateResult result = Flyway.configure(getClass().getClassLoader()).dataSource(dataSource)
+					.locations(LOCATION + type).table(HISTORY_TABLE).baselineOnMigrate(true).baselineVersion("0")
+					.cleanDisabled(true).load().migrate();
+			log.info("applied {} migration(s), schema version is {}", result.migrationsExecuted,
+					result.targetSchemaVersion);
+		} catch (FlywayException e) {
+			// the features depending on the tables check for them on their own
+			log.error("error migrating the tables of the scheduler", e);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Keeps a version per site that changes whenever a job execution has been recorded or a job or trigger of the site
+ * has been changed. The REST controllers use these versions to support conditional requests (see
+ * {@link #checkNotModified(HttpServletRequest, HttpServletResponse, Collection)}), so polling clients get a
+ * {@code 304 Not Modified} without any query being executed.
+ * <p>
+ * The versions are held per classloader, and each site has its own classloader for this application. So only the
+ * versions of the current site are reliable, responses covering all sites must not be conditional.
+ * <p>
+ * The job state also depends on the current time (thresholds are evaluated within a sliding time window) and other
+ * cluster nodes don't change the version of this node, so each ETag is valid for at most {@code etagMaxAge} seconds.
+ */
+@Component
+public class SiteVersions {
+
+	private static final Map<String, Version> VERSIONS = new ConcurrentHashMap<>();
+
+	private final long maxAge;
+
+	public SiteVersions(@Value("${etagMaxAge:60}") int maxAge) {
+		this.maxAge = TimeUnit.SECONDS.toMillis(Math.max(1, maxAge));
+	}
+
+	/**
+	 * Changes the version of the given site.
+	 * 
+	 * @param siteName
+	 *                 the name of the site
+	 */
+	public static void changed(String siteName) {
+		if (null != siteName) {
+			getVersion(siteName).change();
+		}
+	}
+
+	private static Version getVersion(String siteName) {
+		return VERSIONS.computeIfAbsent(siteName, s -> new Version());
+	}
+
+	/**
+	 * Checks the {@code If-None-Match} and {@code If-Modified-Since} headers of the request against the versions of the
+	 * given sites and sets the {@code ETag} and {@code Last-Modified} headers of the response. Since different resources
+	 * of the same sites have different representations, the ETag also depends on the path and the parameters of the
+	 * request.
+	 * 
+	 * @param request
+	 *                  the current request
+	 * @param response
+	 *                  the response to the current request
+	 * @param siteNames
+	 *                  the names of the sites the response depends on
+	 * @return {@code true} if the client's representation is still valid, the status of the response then is
+	 *         {@code 304 Not Modified}
+	 */
+	public boolean checkNotModified(HttpServletRequest request, HttpServletResponse response,
+			Collection<String> siteNames) {
+		long now = System.currentTimeMillis();
+		long validSince = now - now % maxAge;
+		long lastModified = validSince;
+		StringBuilder etag = new StringBuilder(request.getRequestURI()).append('?');
+		// the order of the parameters doesn't matter
+		for (Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+			etag.append(parameter.getKey()).append('=').append(Arrays.toString(parameter.getValue())).append('&');
+		}
+		for (String siteName : new TreeSet<>(siteNames)) {
+			Version version = getVersion(siteName);
+			etag.append(siteName).append(':').append(version.value.get()).append(';');
+			lastModified = Math.max(lastModified, version.lastModified);
+		}
+		String tag = String.format("\"%x-%x\"", etag.toString().hashCode(), validSince / maxAge);
+		// HTTP dates have a resolution of seconds
+		return new ServletWebRequest(request, response).checkNotModified(tag, lastModified - lastModified % 1000);
+	}
+
+	private static class Version {
+		// start with the current time, so versions differ after a restart
+		private final AtomicLong value = new AtomicLong(System.currentTimeMillis());
+		private volatile long lastModified = System.currentTimeMillis();
+
+		void change() {
+			value.incrementAndGet();
+			lastModified = System.currentTimeMillis();
+		}
+	}
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.appng.application.scheduler.model.FailureSignature;
+import org.appng.core.domain.JobExecutionRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.google.common.collect.Lists;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores each distinct stacktrace of failed job executions only once. The stacktrace is normalized according to
+ * {@code recordStacktraceSignature} (see {@link Normalization}) and hashed into a signature. The first stacktrace
+ * with a given signature is saved to a separate table, together with the number of occurrences and the time of the
+ * first and the last occurrence. The record only holds a reference to it ({@value #REFERENCE_PREFIX} followed by the
+ * signature), which {@link JobRecordService} resolves for all records it returns.
+ * <p>
+ * The table is created by the {@link SchemaMigrationService}.
+ */
+@Slf4j
+@Component
+@DependsOn("schemaMigrationService")
+public class StacktraceService {
+
+	static final String STACKTRACE_TABLE = "job_execution_stacktrace";
+	static final String REFERENCE_PREFIX = "signature:";
+
+	private static final String UPDATE_STACKTRACE = "UPDATE " + STACKTRACE_TABLE
+			+ " SET occurrences = occurrences + ?, last_seen = ? WHERE site = ? AND signature = ?";
+	private static final String INSERT_STACKTRACE = "INSERT INTO " + STACKTRACE_TABLE
+			+ " (occurrences, last_seen, site, signature, application, job_name, first_seen, exception, stacktrace) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String SELECT_STACKTRACES = "SELECT signature, stacktrace FROM " + STACKTRACE_TABLE
+			+ " WHERE site = ? AND signature IN (%s)";
+	private static final int MAX_SIGNATURES = 100;
+	private static final String SELECT_FAILURES = "SELECT signature, exception, application, job_name, occurrences, first_seen, last_seen FROM "
+			+ STACKTRACE_TABLE + " WHERE site = ? ORDER BY last_seen DESC";
+	private static final Pattern LINE_NUMBER = Pattern.compile("(\\([^()\\s]+):\\d+\\)");
+	private static final Pattern HEADER = Pattern.compile("^(\\s*(?:Caused by: |Suppressed: )?[\\w$.]+)(?::\\s.*)?$");
+
+	/**
+	 * Defines how stacktraces are normalized before computing their signature. {@link #LINES} and {@link #MESSAGES}
+	 * are lossy: all records sharing a signature show the stacktrace of its first occurrence, also when archived.
+	 */
+	public enum Normalization {
+		/** stacktraces are not deduplicated, but stored with each record */
+		OFF,
+		/** only identical stacktraces share a signature */
+		EXACT,
+		/** line numbers are ignored */
+		LINES,
+		/** line numbers and exception messages are ignored */
+		MESSAGES;
+	}
+
+	private final Normalization normalization;
+	private final JdbcTemplate jdbcTemplate;
+	private boolean tableExists;
+
+	public StacktraceService(EntityManagerFactory entityManagerFactory,
+			@Value("${recordStacktraceSignature:EXACT}") Normalization normalization) {
+		this.normalization = normalization;
+		DataSource dataSource = ((EntityManagerFactoryInfo) entityManagerFactory).getDataSource();
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@PostConstruct
+	public void initialize() {
+		tableExists = tableExists();
+		if (isEnabled() && !tableExists) {
+			log.warn("table {} does not exist, stacktraces are stored with each record", STACKTRACE_TABLE);
+		}
+	}
+
+	private boolean tableExists() {
+		return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			DatabaseMetaData metaData = connection.getMetaData();
+			for (String tableName : Arrays.asList(STACKTRACE_TABLE, STACKTRACE_TABLE.toUpperCase())) {
+				try (ResultSet tables = metaData.getTables(null, null, tableName, new String[] { "TABLE" })) {
+					if (tables.next()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		});
+	}
+
+	public boolean isEnabled() {
+		return !Normalization.OFF.equals(normalization);
+	}
+
+	/**
+	 * Saves the stacktraces of the given records to the stacktrace table, if not present yet, and replaces them with
+	 * a reference. This happens within the current transaction (if any), so a stacktrace is only saved together with
+	 * the records referring to it. If saving a stacktrace fails, it remains with the records.
+	 *
+	 * @param records
+	 *                the records about to be saved
+	 */
+	public void deduplicate(Collection<JobExecutionRecord> records) {
+		if (!isEnabled() || !tableExists) {
+			return;
+		}
+		Map<String, Occurrences> occurrences = new LinkedHashMap<>();
+		for (JobExecutionRecord record : records) {
+			String stacktrace = record.getStacktraces();
+			if (StringUtils.isNotBlank(stacktrace) && !stacktrace.startsWith(REFERENCE_PREFIX)) {
+				String signature = getSignature(stacktrace);
+				occurrences.computeIfAbsent(record.getSite() + "|" + signature,
+						k -> new Occurrences(signature, stacktrace)).add(record);
+			}
+		}
+		if (occurrences.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			for (Occurrences occurrence : occurrences.values()) {
+				// some databases abort the whole transaction on an error, so roll back to before this stacktrace
+				Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+				try {
+					save(connection, occurrence);
+					occurrence.records.forEach(r -> r.setStacktraces(REFERENCE_PREFIX + occurrence.signature));
+				} catch (RuntimeException e) {
+					if (null != savepoint) {
+						connection.rollback(savepoint);
+					}
+					log.warn(String.format("error saving stacktrace %s", occurrence.signature), e);
+				}
+			}
+			return null;
+		});
+	}
+
+	private void save(Connection connection, Occurrences occurrence) throws SQLException {
+		JobExecutionRecord first = occurrence.records.get(0);
+		JobExecutionRecord last = occurrence.records.get(occurrence.records.size() - 1);
+		Object[] args = { occurrence.records.size(), new Timestamp(last.getStartTime().getTime()), last.getSite(),
+				occurrence.signature };
+		if (0 == jdbcTemplate.update(UPDATE_STACKTRACE, args)) {
+			// the application and job of the first occurrence are kept
+			String exception = StringUtils.abbreviate(
+					StringUtils.substringBefore(occurrence.stacktrace.trim(), ":").trim(), 255);
+			Object[] insertArgs = Arrays.copyOf(args, args.length + 5);
+			insertArgs[args.length] = first.getApplication();
+			insertArgs[args.length + 1] = first.getJobName();
+			insertArgs[args.length + 2] = new Timestamp(first.getStartTime().getTime());
+			insertArgs[args.length + 3] = exception;
+			insertArgs[args.length + 4] = occurrence.stacktrace;
+			Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+			try {
+				jdbcTemplate.update(INSERT_STACKTRACE, insertArgs);
+			} catch (DuplicateKeyException e) {
+				// inserted concurrently by another thread or node
+				if (null != savepoint) {
+					connection.rollback(savepoint);
+				}
+				jdbcTemplate.update(UPDATE_STACKTRACE, args);
+			}
+		}
+	}
+
+	/**
+	 * Computes the signature of a stacktrace, the MD5 hash of its normalized form.
+	 */
+	String getSignature(String stacktrace) {
+		return DigestUtils.md5DigestAsHex(normalize(stacktrace).getBytes(StandardCharsets.UTF_8));
+	}
+
+	String normalize(String stacktrace) {
+		if (Normalization.EXACT.equals(normalization) || Normalization.OFF.equals(normalization)) {
+			return stacktrace;
+		}
+		StringBuilder normalized = new StringBuilder();
+		for (String line : stacktrace.split("\\r?\\n")) {
+			String trimmed = line.trim();
+			if (trimmed.startsWith("at ") || trimmed.startsWith("...")) {
+				normalized.append(LINE_NUMBER.matcher(line).replaceAll("$1)"));
+			} else if (Normalization.MESSAGES.equals(normalization)) {
+				Matcher header = HEADER.matcher(line);
+				if (!header.matches()) {
+					// continuation of a multi-line message
+					continue;
+				}
+				normalized.append(header.group(1));
+			} else {
+				normalized.append(line);
+			}
+			normalized.append('\n');
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Replaces the references within the stacktraces of the given records with the stacktraces they refer to, using one
+	 * query per site and {@value #MAX_SIGNATURES} signatures. Stacktraces that are not a reference, or refer to an
+	 * unknown signature, are left as they are.
+	 *
+	 * @param records
+	 *                    the records
+	 * @param site
+	 *                    returns the name of the site of a record
+	 * @param stacktraces
+	 *                    returns the stacktraces of a record
+	 * @param resolved
+	 *                    receives a record and its resolved stacktrace
+	 */
+	public <T> void resolve(Collection<T> records, Function<T, String> site, Function<T, String> stacktraces,
+			BiConsumer<T, String> resolved) {
+		if (!tableExists) {
+			return;
+		}
+		Map<String, Set<String>> signatures = new HashMap<>();
+		for (T record : records) {
+			String value = stacktraces.apply(record);
+			if (null != value && value.startsWith(REFERENCE_PREFIX)) {
+				signatures.computeIfAbsent(site.apply(record), k -> new LinkedHashSet<>())
+						.add(value.substring(REFERENCE_PREFIX.length()));
+			}
+		}
+		Map<String, String> resolvedStacktraces = new HashMap<>();
+		for (Map.Entry<String, Set<String>> siteSignatures : signatures.entrySet()) {
+			for (List<String> chunk : Lists.partition(new ArrayList<>(siteSignatures.getValue()), MAX_SIGNATURES)) {
+				String sql = String.format(SELECT_STACKTRACES, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+				List<Object> args = new ArrayList<>();
+				args.add(siteSignatures.getKey());
+				args.addAll(chunk);
+				jdbcTemplate.query(sql, rs -> {
+					resolvedStacktraces.put(siteSignatures.getKey() + "|" + rs.getString(1).trim(), rs.getString(2));
+				}, args.toArray());
+			}
+		}
+		if (resolvedStacktraces.isEmpty()) {
+			return;
+		}
+		for (T record : records) {
+			String value = stacktraces.apply(record);
+			if (null != value && value.startsWith(REFERENCE_PREFIX)) {
+				String stacktrace = resolvedStacktraces
+						.get(site.apply(record) + "|" + value.substring(REFERENCE_PREFIX.length()));
+				if (null != stacktrace) {
+					resolved.accept(record, stacktrace);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the distinct stacktraces of a site, most recent first.
+	 *
+	 * @param site
+	 *             the name of the site
+	 * @return the signatures along with their occurrences
+	 */
+	public List<FailureSignature> getFailures(String site) {
+		if (!tableExists) {
+			return new ArrayList<>();
+		}
+		return jdbcTemplate.query(SELECT_FAILURES, (rs, i) -> {
+			FailureSignature failure = new FailureSignature();
+			failure.setSignature(rs.getString(1).trim());
+			failure.setException(rs.getString(2));
+			failure.setApplicationName(rs.getString(3));
+			failure.setJobName(rs.getString(4));
+			failure.setOccurrences(rs.getInt(5));
+			failure.setFirstSeen(rs.getTimestamp(6));
+			failure.setLastSeen(rs.getTimestamp(7));
+			return failure;
+		}, site);
+	}
+
+	/**
+	 * Deletes the stacktraces of a site that did not occur since the given date. Records referring to them have been
+	 * deleted (or archived along with their stacktrace) before.
+	 *
+	 * @param site
+	 *                 the name of the site
+	 * @param outdated
+	 *                 the date
+	 * @return the number of deleted stacktraces
+	 */
+	public int cleanUp(String site, Date outdated) {
+		if (!tableExists) {
+			return 0;
+		}
+		return jdbcTemplate.update("DELETE FROM " + STACKTRACE_TABLE + " WHERE site = ? AND last_seen < ?", site,
+				new Timestamp(outdated.getTime()));
+	}
+
+	private static class Occurrences {
+		private final String signature;
+		private final String stacktrace;
+		private final List<JobExecutionRecord> records = new ArrayList<>();
+
+		Occurrences(String signature, String stacktrace) {
+			this.signature = signature;
+			this.stacktrace = stacktrace;
+		}
+
+		void add(JobExecutionRecord record) {
+			records.add(record);
+		}
+	}
+}
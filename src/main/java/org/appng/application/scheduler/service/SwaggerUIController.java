@@ -15,11 +15,17 @@
  */
 package org.appng.application.scheduler.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -29,30 +35,70 @@ import org.appng.api.model.Resource;
 import org.appng.api.model.ResourceType;
 import org.appng.api.model.Site;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
- * {@link RestController}delivering Swagger-UI stuff
+ * {@link RestController}delivering Swagger-UI stuff. The contents are prepared once per site, including a gzipped
+ * variant that is delivered to clients accepting this encoding. Each response carries a strong {@code ETag}, so
+ * conditional requests are answered with {@code 304 Not Modified}.
  * 
  * @author Matthias Müller
  */
+@Slf4j
 @RestController
 public class SwaggerUIController {
 
+	private static final String SWAGGER_UI = "swagger-ui/";
+	private static final String API_SPEC = "scheduler-api.yaml";
+	private static final String GZIP = "gzip";
+
+	private final Site site;
+	private final Application application;
+	private final CacheControl cacheControl;
+	private final Map<String, Content> contents = new ConcurrentHashMap<>();
 	private @Value("${swaggerBasicAuth:}") String basicAuth;
 
+	public SwaggerUIController(Site site, Application application, @Value("${swaggerMaxAge:86400}") long maxAge) {
+		this.site = site;
+		this.application = application;
+		this.cacheControl = CacheControl.maxAge(maxAge, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Prepares the API specification and all Swagger-UI resources of the application.
+	 */
+	@PostConstruct
+	public void prepare() {
+		try {
+			getContent(API_SPEC);
+			for (Resource resource : application.getResources().getResources(ResourceType.RESOURCE)) {
+				if (resource.getName().startsWith(SWAGGER_UI)) {
+					getContent(resource.getName().substring(SWAGGER_UI.length()));
+				}
+			}
+			log.debug("prepared {} Swagger-UI contents for site {}", contents.size(), site.getName());
+		} catch (Exception e) {
+			log.warn("error preparing Swagger-UI contents, they will be prepared on first request", e);
+		}
+	}
+
 	@GetMapping(path = "/swagger-ui/{path:.+}", produces = { MediaType.TEXT_HTML_VALUE, "text/css",
-			"application/javascript", MediaType.TEXT_PLAIN_VALUE })
-	public ResponseEntity<byte[]> swaggerUI(Site site, Application application,
+			"application/javascript", MediaType.TEXT_PLAIN_VALUE, MediaType.IMAGE_PNG_VALUE })
+	public ResponseEntity<byte[]> swaggerUI(
 			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization,
-			@PathVariable(required = true) String path) throws IOException, URISyntaxException {
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			@PathVariable(required = true) String path) throws IOException {
 
 		HttpHeaders headers = new HttpHeaders();
 		if (StringUtils.isNotBlank(basicAuth)) {
@@ -63,29 +109,105 @@ public class SwaggerUIController {
 			}
 		}
 
-		byte[] data = null;
+		Content content = getContent(path);
+		if (null == content) {
+			return ResponseEntity.notFound().build();
+		}
+		if (null != content.mediaType) {
+			headers.add(HttpHeaders.CONTENT_TYPE, content.mediaType);
+		}
+		headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		// with basic auth, shared caches must not store the response
+		CacheControl cache = StringUtils.isBlank(basicAuth) ? cacheControl : cacheControl.cachePrivate();
+		if (null != content.gzipped && acceptsGzip(acceptEncoding)) {
+			headers.add(HttpHeaders.CONTENT_ENCODING, GZIP);
+			// a strong ETag must differ for each encoding
+			return ResponseEntity.ok().headers(headers).cacheControl(cache).eTag(content.getETag(GZIP))
+					.body(content.gzipped);
+		}
+		return ResponseEntity.ok().headers(headers).cacheControl(cache).eTag(content.getETag(null))
+				.body(content.data);
+	}
+
+	private Content getContent(String path) throws IOException {
+		Content content = contents.get(path);
+		if (null == content) {
+			byte[] data = path.endsWith(".yaml") ? getSpec(path) : getResource(path);
+			if (null == data) {
+				return null;
+			}
+			content = new Content(data, getMediaType(path));
+			contents.put(path, content);
+		}
+		return content;
+	}
+
+	private byte[] getSpec(String path) throws IOException {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream(path)) {
+			if (null == is) {
+				return null;
+			}
+			String spec = new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+			String servicePath = site.getProperties().getString(SiteProperties.SERVICE_PATH);
+			String fullPath = String.format("  \"%s/%s/%s/rest/jobState", servicePath, site.getName(),
+					application.getName());
+			return spec.replace("  \"/jobState", fullPath).getBytes();
+		}
+	}
+
+	private byte[] getResource(String path) {
+		Resource resource = application.getResources().getResource(ResourceType.RESOURCE, SWAGGER_UI + path);
+		return null == resource ? null : resource.getBytes();
+	}
+
+	private static String getMediaType(String path) {
 		if (path.endsWith(".yaml")) {
-			try (InputStream is = getClass().getClassLoader().getResourceAsStream(path)) {
-				if (null == is) {
-					return ResponseEntity.notFound().build();
+			return null;
+		} else if (path.endsWith(".html")) {
+			return MediaType.TEXT_HTML_VALUE;
+		} else if (path.endsWith(".js")) {
+			return "application/javascript";
+		} else if (path.endsWith(".png")) {
+			return MediaType.IMAGE_PNG_VALUE;
+		}
+		return "text/css";
+	}
+
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (null != acceptEncoding) {
+			for (String coding : acceptEncoding.split(",")) {
+				String[] parts = coding.trim().split(";");
+				if (GZIP.equalsIgnoreCase(parts[0].trim()) || "*".equals(parts[0].trim())) {
+					return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
 				}
-				String spec = new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
-				String servicePath = site.getProperties().getString(SiteProperties.SERVICE_PATH);
-				String fullPath = String.format("  \"%s/%s/%s/rest/jobState", servicePath, site.getName(),
-						application.getName());
-				data = spec.replace("  \"/jobState", fullPath).getBytes();
 			}
+		}
+		return false;
+	}
 
-		} else {
-			Resource resource = application.getResources().getResource(ResourceType.RESOURCE, "swagger-ui/" + path);
-			if (null == resource) {
-				return ResponseEntity.notFound().build();
+	private static class Content {
+		private final byte[] data;
+		private final byte[] gzipped;
+		private final String mediaType;
+		private final String hash;
+
+		Content(byte[] data, String mediaType) throws IOException {
+			this.data = data;
+			this.mediaType = mediaType;
+			this.hash = DigestUtils.md5DigestAsHex(data);
+			byte[] compressed = null;
+			if (!MediaType.IMAGE_PNG_VALUE.equals(mediaType)) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+					gzip.write(data);
+				}
+				compressed = out.toByteArray();
 			}
-			String mediaType = path.endsWith(".html") ? MediaType.TEXT_HTML_VALUE
-					: (path.endsWith(".js") ? "application/javascript" : "text/css");
-			headers.add(HttpHeaders.CONTENT_TYPE, mediaType);
-			data = resource.getBytes();
+			this.gzipped = null != compressed && compressed.length < data.length ? compressed : null;
+		}
+
+		String getETag(String encoding) {
+			return "\"" + hash + (null == encoding ? "" : "-" + encoding) + "\"";
 		}
-		return ResponseEntity.ok().headers(headers).body(data);
 	}
 }
@@ -0,0 +1,19 @@
+-- guarded, so tables an administrator has already created manually from this script don't fail the migration
+IF OBJECT_ID('job_execution_counter', 'U') IS NULL
+CREATE TABLE job_execution_counter (
+	site VARCHAR(255) NOT NULL,
+	application VARCHAR(255) NOT NULL,
+	job_name VARCHAR(255) NOT NULL,
+	bucket CHAR(1) NOT NULL,
+	bucket_start DATETIME2 NOT NULL,
+	success INTEGER NOT NULL,
+	failed INTEGER NOT NULL,
+	PRIMARY KEY (site, application, job_name, bucket, bucket_start)
+);
+
+IF OBJECT_ID('job_execution_counter_state', 'U') IS NULL
+CREATE TABLE job_execution_counter_state (
+	site VARCHAR(255) NOT NULL PRIMARY KEY,
+	incrementing_since DATETIME2,
+	rebuilt_until DATETIME2
+);
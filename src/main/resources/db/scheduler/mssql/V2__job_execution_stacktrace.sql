@@ -0,0 +1,14 @@
+-- guarded, so a table an administrator has already created manually from this script doesn't fail the migration
+IF OBJECT_ID('job_execution_stacktrace', 'U') IS NULL
+CREATE TABLE job_execution_stacktrace (
+	site VARCHAR(255) NOT NULL,
+	signature CHAR(32) NOT NULL,
+	exception VARCHAR(255),
+	application VARCHAR(255),
+	job_name VARCHAR(255),
+	stacktrace NVARCHAR(MAX) NOT NULL,
+	occurrences INTEGER NOT NULL,
+	first_seen DATETIME2 NOT NULL,
+	last_seen DATETIME2 NOT NULL,
+	PRIMARY KEY (site, signature)
+);
@@ -0,0 +1,17 @@
+-- guarded, so tables an administrator has already created manually from this script don't fail the migration
+CREATE TABLE IF NOT EXISTS job_execution_counter (
+	site VARCHAR(255) NOT NULL,
+	application VARCHAR(255) NOT NULL,
+	job_name VARCHAR(255) NOT NULL,
+	bucket CHAR(1) NOT NULL,
+	bucket_start DATETIME NOT NULL,
+	success INTEGER NOT NULL,
+	failed INTEGER NOT NULL,
+	PRIMARY KEY (site, application, job_name, bucket, bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS job_execution_counter_state (
+	site VARCHAR(255) NOT NULL PRIMARY KEY,
+	incrementing_since DATETIME,
+	rebuilt_until DATETIME
+);
@@ -0,0 +1,13 @@
+-- guarded, so a table an administrator has already created manually from this script doesn't fail the migration
+CREATE TABLE IF NOT EXISTS job_execution_stacktrace (
+	site VARCHAR(255) NOT NULL,
+	signature CHAR(32) NOT NULL,
+	exception VARCHAR(255),
+	application VARCHAR(255),
+	job_name VARCHAR(255),
+	stacktrace LONGTEXT NOT NULL,
+	occurrences INTEGER NOT NULL,
+	first_seen DATETIME NOT NULL,
+	last_seen DATETIME NOT NULL,
+	PRIMARY KEY (site, signature)
+);
@@ -17,24 +17,38 @@ package org.appng.application.scheduler;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
 
+import org.appng.application.scheduler.quartz.CompletionNotifyingDataSource;
+import org.appng.application.scheduler.quartz.DelegateStatistics;
+import org.appng.application.scheduler.quartz.DelegateStatistics.MethodStatistics;
 import org.appng.application.scheduler.quartz.DriverDelegateWrapper;
+import org.appng.application.scheduler.quartz.JobOverview;
+import org.appng.application.scheduler.quartz.JobOverview.TriggerOverview;
 import org.appng.application.scheduler.quartz.SchedulerJobDetail;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.quartz.CronScheduleBuilder;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
 import org.quartz.impl.jdbcjobstore.HSQLDBDelegate;
 import org.quartz.impl.jdbcjobstore.InvalidConfigurationException;
 import org.quartz.impl.jdbcjobstore.JobStoreSupport;
 import org.quartz.impl.jdbcjobstore.JobStoreTX;
 import org.quartz.simpl.SimpleClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
 import org.quartz.spi.SchedulerSignaler;
 import org.quartz.utils.ConnectionProvider;
 import org.quartz.utils.DBConnectionManager;
@@ -81,11 +95,139 @@ public class DriverDelegateWrapperTest {
 
 	}
 
+	@Test
+	public void testJobDetailCache() throws Exception {
+		String initString = "delegate=" + HSQLDBDelegate.class.getName() + "|"
+				+ DriverDelegateWrapper.JOB_DETAIL_CACHE_SIZE + "=10";
+		JobStoreSupport jobStore = getJobStore(initString, "cachingScheduler");
+		List<JobKey> invalidated = new ArrayList<>();
+		DriverDelegateWrapper.setInvalidationListener("cachingScheduler", (jobKey, calendar) -> invalidated.add(jobKey));
+
+		JobKey jobKey = new JobKey("cachedJob", "group");
+		JobDetail job = JobBuilder.newJob(Job.class).withIdentity(jobKey).usingJobData("foo", "bar").build();
+		jobStore.storeJob(new SchedulerJobDetail(job), true);
+		Assert.assertEquals(Arrays.asList(jobKey), invalidated);
+
+		JobDetail retrieved = jobStore.retrieveJob(jobKey);
+		retrieved.getJobDataMap().put("foo", "changed");
+		Assert.assertEquals("bar", jobStore.retrieveJob(jobKey).getJobDataMap().getString("foo"));
+
+		jobStore.storeJob(new SchedulerJobDetail(retrieved), true);
+		Assert.assertEquals(Arrays.asList(jobKey, jobKey), invalidated);
+		Assert.assertEquals("changed", jobStore.retrieveJob(jobKey).getJobDataMap().getString("foo"));
+
+		jobStore.removeJob(jobKey);
+		Assert.assertNull(jobStore.retrieveJob(jobKey));
+		DriverDelegateWrapper.unregister("cachingScheduler");
+	}
+
+	@Test
+	public void testInvalidationAfterCompletion() throws Exception {
+		String initString = "delegate=" + HSQLDBDelegate.class.getName() + "|"
+				+ DriverDelegateWrapper.JOB_DETAIL_CACHE_SIZE + "=10";
+		JobStoreSupport jobStore = getJobStore(initString, "completingScheduler");
+		List<JobKey> invalidated = new ArrayList<>();
+		DriverDelegateWrapper.setInvalidationListener("completingScheduler",
+				(jobKey, calendar) -> invalidated.add(jobKey));
+
+		JobKey jobKey = new JobKey("completingJob", "group");
+		JobDetail job = JobBuilder.newJob(Job.class).withIdentity(jobKey).usingJobData("foo", "bar").build();
+		jobStore.storeJob(new SchedulerJobDetail(job), true);
+		invalidated.clear();
+		Assert.assertEquals("bar", jobStore.retrieveJob(jobKey).getJobDataMap().getString("foo"));
+
+		DriverDelegateWrapper delegate = DriverDelegateWrapper.getBulkLoadingDelegate("completingScheduler");
+		try (Connection writing = DBConnectionManager.getInstance().getConnection("datasource")) {
+			writing.setAutoCommit(false);
+			JobDetail changed = JobBuilder.newJob(Job.class).withIdentity(jobKey).usingJobData("foo", "changed")
+					.build();
+			delegate.updateJobData(writing, changed);
+			Assert.assertTrue(invalidated.isEmpty());
+			// the uncommitted value must not be cached
+			Assert.assertEquals("changed", delegate.selectJobDetail(writing, jobKey, new SimpleClassLoadHelper())
+					.getJobDataMap().getString("foo"));
+			writing.rollback();
+			Assert.assertTrue(invalidated.isEmpty());
+			Assert.assertEquals("bar", jobStore.retrieveJob(jobKey).getJobDataMap().getString("foo"));
+
+			delegate.updateJobData(writing, changed);
+			writing.commit();
+			Assert.assertEquals(Arrays.asList(jobKey), invalidated);
+			Assert.assertEquals("changed", jobStore.retrieveJob(jobKey).getJobDataMap().getString("foo"));
+		}
+		DriverDelegateWrapper.unregister("completingScheduler");
+	}
+
+	@Test
+	public void testSelectJobOverviews() throws Exception {
+		JobStoreSupport jobStore = getJobStore("delegate=" + HSQLDBDelegate.class.getName(), "bulkScheduler");
+		JobKey jobKey = new JobKey("bulkJob", "bulkGroup");
+		JobDetail job = JobBuilder.newJob(Job.class).withIdentity(jobKey).usingJobData("foo", "bar").storeDurably()
+				.build();
+		OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("cron", "bulkGroup")
+				.forJob(jobKey).withSchedule(CronScheduleBuilder.cronSchedule("0 0 3 * * ?")).build();
+		trigger.computeFirstFireTime(null);
+		jobStore.storeJobAndTrigger(new SchedulerJobDetail(job), trigger);
+		jobStore.storeJob(new SchedulerJobDetail(JobBuilder.newJob(Job.class)
+				.withIdentity(new JobKey("untriggered", "bulkGroup")).storeDurably().build()), true);
+
+		DriverDelegateWrapper delegate = DriverDelegateWrapper.getBulkLoadingDelegate("bulkScheduler");
+		List<JobOverview> jobs;
+		try (Connection connection = DBConnectionManager.getInstance().getConnection("datasource")) {
+			jobs = delegate.selectJobOverviews(connection, "bulkGroup");
+		}
+		Assert.assertEquals(2, jobs.size());
+		JobOverview bulkJob = jobs.stream().filter(j -> j.getJobKey().equals(jobKey)).findFirst().get();
+		Assert.assertEquals("bar", bulkJob.getJobDataMap().getString("foo"));
+		Assert.assertEquals(1, bulkJob.getTriggers().size());
+		TriggerOverview cron = bulkJob.getTriggers().get(0);
+		Assert.assertEquals("0 0 3 * * ?", cron.getCronExpression());
+		Assert.assertEquals(TriggerState.NORMAL, cron.getState());
+		Assert.assertEquals(trigger.getNextFireTime(), cron.getNextFireTime());
+		Assert.assertNull(cron.getPreviousFireTime());
+		DriverDelegateWrapper.unregister("bulkScheduler");
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		String initString = "delegate=" + HSQLDBDelegate.class.getName() + "|" + DriverDelegateWrapper.STATISTICS
+				+ "=true";
+		JobStoreSupport jobStore = getJobStore(initString, "statisticsScheduler");
+		JobKey jobKey = new JobKey("statisticsJob", "group");
+		jobStore.storeJob(new SchedulerJobDetail(JobBuilder.newJob(Job.class).withIdentity(jobKey).build()), true);
+		Assert.assertNotNull(jobStore.retrieveJob(jobKey));
+		Assert.assertNull(jobStore.retrieveJob(new JobKey("unknown", "group")));
+
+		DelegateStatistics statistics = DriverDelegateWrapper.getStatistics("statisticsScheduler");
+		Map<String, MethodStatistics> methods = statistics.getMethods().stream()
+				.collect(Collectors.toMap(MethodStatistics::getMethod, m -> m));
+		MethodStatistics insertJobDetail = methods.get("insertJobDetail");
+		Assert.assertEquals(1, insertJobDetail.getCalls());
+		Assert.assertEquals(1, insertJobDetail.getRows());
+		Assert.assertEquals(0, insertJobDetail.getErrors());
+		MethodStatistics selectJobDetail = methods.get("selectJobDetail");
+		Assert.assertEquals(2, selectJobDetail.getCalls());
+		Assert.assertEquals(1, selectJobDetail.getRows());
+		Assert.assertTrue(selectJobDetail.getMaxNanos() > 0);
+		Assert.assertTrue(selectJobDetail.getTotalNanos() >= selectJobDetail.getMaxNanos());
+
+		statistics.reset();
+		Assert.assertTrue(statistics.getMethods().isEmpty());
+		Assert.assertNull(DriverDelegateWrapper.getStatistics("unknown"));
+		DriverDelegateWrapper.unregister("statisticsScheduler");
+	}
+
 	private JobStoreSupport getJobStore() throws InvalidConfigurationException, SchedulerConfigException {
+		return getJobStore("delegate=" + HSQLDBDelegate.class.getName(), null);
+	}
+
+	private JobStoreSupport getJobStore(String initString, String instanceName)
+			throws InvalidConfigurationException, SchedulerConfigException {
 		EmbeddedDatabaseFactoryBean edbfb = new EmbeddedDatabaseFactoryBean();
 		edbfb.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("sql/init_quartz_tables.sql")));
 		edbfb.afterPropertiesSet();
-		final DataSource datasource = edbfb.getObject();
+		// like the non-transactional data source of the scheduler
+		final DataSource datasource = new CompletionNotifyingDataSource(edbfb.getObject());
 
 		DBConnectionManager.getInstance().addConnectionProvider("datasource", new ConnectionProvider() {
 
@@ -101,7 +243,8 @@ public class DriverDelegateWrapperTest {
 		});
 		JobStoreSupport jobStore = new JobStoreTX();
 		jobStore.setDriverDelegateClass(DriverDelegateWrapper.class.getName());
-		jobStore.setDriverDelegateInitString("delegate=" + HSQLDBDelegate.class.getName());
+		jobStore.setDriverDelegateInitString(initString);
+		jobStore.setInstanceName(instanceName);
 		jobStore.setDataSource("datasource");
 		jobStore.initialize(new SimpleClassLoadHelper(), Mockito.mock(SchedulerSignaler.class));
 		return jobStore;
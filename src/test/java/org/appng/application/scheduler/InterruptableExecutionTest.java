@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.appng.application.scheduler.quartz.InterruptableExecution;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+
+/**
+ * Test for {@link InterruptableExecution}
+ */
+public class InterruptableExecutionTest {
+
+	private static final JobKey JOB_KEY = new JobKey("job", "group");
+
+	private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testDelayedStart() throws Exception {
+		// the only thread of the executor is busy, so the jobs can't start yet
+		CountDownLatch busy = new CountDownLatch(1);
+		executor.submit(() -> busy.await(10, TimeUnit.SECONDS));
+
+		AtomicBoolean completed = new AtomicBoolean();
+		InterruptableExecution execution = new InterruptableExecution(executor, JOB_KEY, 10000);
+		Thread worker = runInWorker(execution, () -> completed.set(true), null);
+		Thread.sleep(100);
+		Assert.assertTrue(worker.isAlive());
+		busy.countDown();
+		worker.join(5000);
+		Assert.assertFalse(worker.isAlive());
+		Assert.assertTrue(completed.get());
+
+		// interrupted before starting, the worker is released without waiting for the job to stop
+		CountDownLatch stillBusy = new CountDownLatch(1);
+		executor.submit(() -> stillBusy.await(10, TimeUnit.SECONDS));
+		AtomicBoolean started = new AtomicBoolean();
+		execution = new InterruptableExecution(executor, JOB_KEY, 10000);
+		worker = runInWorker(execution, () -> started.set(true), null);
+		Thread.sleep(100);
+		long interrupted = System.currentTimeMillis();
+		execution.interrupt();
+		worker.join(5000);
+		Assert.assertFalse(worker.isAlive());
+		Assert.assertTrue(System.currentTimeMillis() - interrupted < 5000);
+		stillBusy.countDown();
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		Assert.assertFalse(started.get());
+	}
+
+	@Test
+	public void testFailedStart() throws Exception {
+		executor.shutdown();
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread worker = runInWorker(new InterruptableExecution(executor, JOB_KEY, 1000), () -> {
+		}, failure);
+		worker.join(5000);
+		Assert.assertFalse(worker.isAlive());
+		Assert.assertTrue(failure.get() instanceof JobExecutionException);
+
+		// the job fails with an error
+		executor = Executors.newSingleThreadExecutor();
+		failure.set(null);
+		worker = runInWorker(new InterruptableExecution(executor, JOB_KEY, 1000), () -> {
+			throw new AssertionError("failed");
+		}, failure);
+		worker.join(5000);
+		Assert.assertTrue(failure.get() instanceof JobExecutionException);
+		Assert.assertEquals("failed", failure.get().getCause().getMessage());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		InterruptableExecution execution = new InterruptableExecution(executor, JOB_KEY, 200);
+		// ignores being interrupted
+		Thread worker = runInWorker(execution, () -> {
+			running.countDown();
+			while (release.getCount() > 0) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// keep running
+				}
+			}
+		}, null);
+		Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+		long interrupted = System.currentTimeMillis();
+		execution.interrupt();
+		worker.join(5000);
+		long waited = System.currentTimeMillis() - interrupted;
+		Assert.assertFalse(worker.isAlive());
+		Assert.assertTrue("waited " + waited + "ms", waited >= 150 && waited < 5000);
+		// the job is still running
+		Assert.assertEquals(1, release.getCount());
+		release.countDown();
+	}
+
+	private Thread runInWorker(InterruptableExecution execution, Runnable job, AtomicReference<Exception> failure) {
+		Thread worker = new Thread(() -> {
+			try {
+				execution.run(job);
+			} catch (JobExecutionException e) {
+				if (null != failure) {
+					failure.set(e);
+				}
+			}
+		});
+		worker.start();
+		return worker;
+	}
+
+}
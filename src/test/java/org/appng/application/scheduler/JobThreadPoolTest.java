@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.appng.application.scheduler.quartz.JobThreadPool;
+import org.appng.application.scheduler.quartz.PoolSizingPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link JobThreadPool}
+ */
+public class JobThreadPoolTest {
+
+	@Test
+	public void testConcurrencyCap() throws Exception {
+		JobThreadPool pool = new JobThreadPool();
+		pool.setThreadCount(2);
+		pool.setInstanceName("test");
+		pool.initialize();
+		Assert.assertEquals(2, pool.getPoolSize());
+		Assert.assertEquals(2, pool.blockForAvailableThreads());
+
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Runnable job = () -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			done.countDown();
+		};
+		Assert.assertTrue(pool.runInThread(job));
+		Assert.assertTrue(pool.runInThread(job));
+
+		Thread blocked = new Thread(() -> pool.runInThread(job));
+		blocked.start();
+		blocked.join(200);
+		Assert.assertTrue("third job must wait for a free thread", blocked.isAlive());
+
+		release.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(2, maxRunning.get());
+
+		pool.shutdown(true);
+		Assert.assertEquals(2, pool.blockForAvailableThreads());
+		Assert.assertFalse(pool.runInThread(job));
+	}
+
+	@Test
+	public void testSizingPolicy() {
+		PoolSizingPolicy policy = new PoolSizingPolicy(2, 8, 100);
+		// backlog and all threads busy
+		Assert.assertEquals(5, policy.adapt(4, 4, 3, 0, 10));
+		Assert.assertEquals(5, policy.adapt(4, 4, 0, 1, 10));
+		Assert.assertEquals(8, policy.adapt(8, 8, 3, 0, 10));
+		// backlog, but threads available
+		Assert.assertEquals(4, policy.adapt(4, 2, 3, 0, 10));
+		// slow database
+		Assert.assertEquals(4, policy.adapt(8, 8, 3, 0, 150));
+		Assert.assertEquals(2, policy.adapt(3, 3, 3, 0, 150));
+		// idle
+		Assert.assertEquals(3, policy.adapt(4, 1, 0, 0, 10));
+		Assert.assertEquals(2, policy.adapt(2, 0, 0, 0, 10));
+		Assert.assertEquals(4, policy.adapt(4, 2, 0, 0, 10));
+	}
+
+}
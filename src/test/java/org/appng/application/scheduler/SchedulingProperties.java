@@ -35,6 +35,7 @@ public class SchedulingProperties {
 		properties.put("houseKeepingEnabled", "false");
 		properties.put("bearerToken", "TheBearer");
 		properties.put("checkFirstRun", "false");
+		properties.put("recordStacktraceSignature", "LINES");
 		properties.put("quartzDriverDelegate", HSQLDBDelegate.class.getName());
 		properties.put("platform." + Platform.Property.JSP_FILE_TYPE, ".jsp");
 		properties.put("site." + SiteProperties.SERVICE_PATH, "/service");
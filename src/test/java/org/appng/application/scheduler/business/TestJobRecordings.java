@@ -17,22 +17,45 @@ package org.appng.application.scheduler.business;
 
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.commons.lang3.time.DateUtils;
 import org.appng.api.ScheduledJobResult;
 import org.appng.api.ScheduledJobResult.ExecutionResult;
 import org.appng.api.model.Application;
 import org.appng.api.model.Site;
 import org.appng.api.support.CallableDataSource;
 import org.appng.application.scheduler.SchedulingProperties;
+import org.appng.application.scheduler.model.FailureSignature;
+import org.appng.application.scheduler.model.JobRecord;
 import org.appng.application.scheduler.model.JobResult;
 import org.appng.application.scheduler.quartz.RecordingJobListener;
+import org.appng.application.scheduler.service.JobCounterService;
+import org.appng.application.scheduler.service.JobRecordService;
+import org.appng.application.scheduler.service.JobRecordService.CleanUpResult;
+import org.appng.application.scheduler.service.JobRecordService.PageCursor;
+import org.appng.application.scheduler.service.JobRecordService.PagingTotal;
+import org.appng.application.scheduler.service.JobRecordService.RecordCursor;
+import org.appng.application.scheduler.service.JobRecordService.RecordPage;
 import org.appng.application.scheduler.service.JobStateRestControllerTest;
+import org.appng.application.scheduler.service.RecordArchive;
+import org.appng.application.scheduler.service.RecordIndexService;
+import org.appng.application.scheduler.service.RecordIndexService.IndexInfo;
+import org.appng.application.scheduler.service.StacktraceService;
 import org.appng.core.domain.JobExecutionRecord;
 import org.appng.core.repository.JobExecutionRecordRepository;
+import org.appng.core.repository.JobRecordRepository;
 import org.appng.testsupport.TestBase;
 import org.appng.testsupport.validation.WritingXmlValidator;
 import org.appng.testsupport.validation.XPathDifferenceHandler;
@@ -44,11 +67,16 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
 import org.quartz.JobListener;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.impl.JobDetailImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.test.context.ContextConfiguration;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -60,6 +88,13 @@ public class TestJobRecordings extends TestBase {
 	private @Autowired RecordingJobListener listener;
 	private @Autowired JobExecutionRecordRepository recordRepo;
 	private @Autowired SchedulingController schedulingController;
+	private @Autowired EntityManagerFactory entityManagerFactory;
+	private @Autowired JobRecordService jobRecordService;
+	private @Autowired JobRecordRepository recordRepository;
+	private @Autowired JobCounterService jobCounterService;
+	private @Autowired RecordArchive recordArchive;
+	private @Autowired RecordIndexService recordIndexService;
+	private @Autowired StacktraceService stacktraceService;
 
 	static {
 		WritingXmlValidator.writeXml = false;
@@ -103,6 +138,224 @@ public class TestJobRecordings extends TestBase {
 		Assert.assertEquals(result.getResult().name(), saved.get(0).getResult());
 	}
 
+	@Test
+	public void testCleanUp() {
+		Date outdated = DateUtils.addDays(new Date(), -100);
+		for (int i = 0; i < 3; i++) {
+			saveRecord("outdated", ExecutionResult.SUCCESS, outdated);
+		}
+		// small chunks, for this test only
+		JobRecordService chunkingService = new JobRecordService(recordRepo, recordRepository, jobCounterService,
+				entityManagerFactory, 2, 300, 3600, PagingTotal.EXACT, recordArchive, stacktraceService);
+		CleanUpResult result = chunkingService.cleanUp(site, application);
+		Assert.assertEquals(3, result.getDeleted());
+		Assert.assertEquals(2, result.getChunks());
+		Assert.assertTrue(result.isComplete());
+		Assert.assertTrue(recordRepo.findBySiteAndJobName(site.getName(), "outdated").isEmpty());
+		Assert.assertEquals(1, recordRepo.findBySiteAndJobName(site.getName(), "thejob").size());
+	}
+
+	@Test
+	public void testStacktraces() {
+		JobResult jobResult = new JobResult(null, application.getName(), site.getName(), "failing");
+		Date now = new Date();
+		jobRecordService.recordJob(jobResult, now, now, 0, new JobDataMap(), new JobExecutionException("first"), "t");
+		// differs in line numbers only
+		jobRecordService.recordJob(jobResult, now, now, 0, new JobDataMap(),
+				new JobExecutionException("first"), "t");
+		jobRecordService.recordJob(jobResult, now, now, 0, new JobDataMap(), new JobExecutionException("second"), "t");
+
+		List<JobExecutionRecord> records = recordRepo.findAll().stream()
+				.filter(r -> "failing".equals(r.getJobName())).collect(Collectors.toList());
+		Assert.assertEquals(3, records.size());
+		Assert.assertTrue(records.stream().allMatch(r -> r.getStacktraces().startsWith("signature:")));
+		Assert.assertEquals(records.get(0).getStacktraces(), records.get(1).getStacktraces());
+		Assert.assertNotEquals(records.get(0).getStacktraces(), records.get(2).getStacktraces());
+		Assert.assertTrue(jobRecordService.getRecord(records.get(2).getId()).getStacktraces()
+				.startsWith("org.quartz.JobExecutionException: second"));
+		// resolved for lists and streams, too
+		List<JobRecord> listed = new ArrayList<>(jobRecordService
+				.getRecords(site, null, "failing", null, null, null, null, new PageRequest(0, 10)).getContent());
+		jobRecordService.streamRecords(site.getName(), null, "failing", null, null, null, null, null, 0,
+				(r, c) -> listed.add(r));
+		Assert.assertEquals(6, listed.size());
+		Assert.assertTrue(listed.stream()
+				.allMatch(r -> r.getStacktraces().startsWith("org.quartz.JobExecutionException: ")));
+
+		List<FailureSignature> failures = stacktraceService.getFailures(site.getName());
+		Assert.assertEquals(2, failures.size());
+		Assert.assertEquals(Arrays.asList(2, 1),
+				failures.stream().map(FailureSignature::getOccurrences).sorted(Comparator.reverseOrder())
+						.collect(Collectors.toList()));
+		Assert.assertTrue(failures.stream().allMatch(f -> "org.quartz.JobExecutionException".equals(f.getException())
+				&& "failing".equals(f.getJobName())));
+	}
+
+	@Test
+	public void testStreamRecords() {
+		Date start = DateUtils.addHours(new Date(), -1);
+		for (int i = 0; i < 5; i++) {
+			// within the same millisecond, in reverse order of the ids
+			Timestamp startTime = new Timestamp(start.getTime());
+			startTime.setNanos(startTime.getNanos() + (4 - i) * 1000);
+			saveRecord("streamed", ExecutionResult.SUCCESS, startTime);
+		}
+		List<JobRecord> records = new ArrayList<>();
+		List<RecordCursor> cursors = new ArrayList<>();
+		int count = jobRecordService.streamRecords(site.getName(), null, "streamed", null, null, null, null, null, 3,
+				(r, c) -> {
+					records.add(r);
+					cursors.add(c);
+				});
+		Assert.assertEquals(3, count);
+		RecordCursor cursor = RecordCursor.parse(cursors.get(2).toString());
+		count = jobRecordService.streamRecords(site.getName(), null, "streamed", null, null, null, null, cursor, 0,
+				(r, c) -> records.add(r));
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(5, records.stream().map(JobRecord::getId).distinct().count());
+		for (int i = 1; i < records.size(); i++) {
+			JobRecord previous = records.get(i - 1);
+			JobRecord current = records.get(i);
+			int order = previous.getStart().compareTo(current.getStart());
+			Assert.assertTrue(order < 0 || (0 == order && previous.getId() < current.getId()));
+		}
+	}
+
+	@Test
+	public void testDistinctValues() {
+		List<String> jobNames = jobRecordService.getDistinctJobNames(site.getName());
+		Assert.assertTrue(jobNames.contains("thejob"));
+		Assert.assertFalse(jobNames.contains("distinct"));
+
+		ScheduledJobResult result = new ScheduledJobResult();
+		result.setResult(ExecutionResult.SUCCESS);
+		createJobResult(listener, result, jobContext, site, application, "distinct");
+		Assert.assertTrue(jobRecordService.getDistinctJobNames(site.getName()).contains("distinct"));
+
+		// not saved by the service, so the cache is not updated
+		saveRecord("undetected", ExecutionResult.SUCCESS, new Date());
+		Assert.assertFalse(jobRecordService.getDistinctJobNames(site.getName()).contains("undetected"));
+		jobRecordService.refreshDistinctValues(site.getName());
+		jobNames = jobRecordService.getDistinctJobNames(site.getName());
+		Assert.assertTrue(jobNames.contains("undetected"));
+		Assert.assertEquals(jobNames, recordRepo.getDistinctJobNames(site.getName()));
+		Assert.assertEquals(Arrays.asList(application.getName()),
+				jobRecordService.getDistinctApplications(site.getName()));
+	}
+
+	@Test
+	public void testPaging() {
+		for (int i = 0; i < 5; i++) {
+			saveRecord("paged", ExecutionResult.SUCCESS, DateUtils.addMinutes(new Date(), -i));
+		}
+		List<Integer> expected = new ArrayList<>();
+		jobRecordService.getJobRecords(site.getName(), null, null, null, null, null, null,
+				new PageRequest(0, 1000, new Sort(Direction.DESC, "startTime", "id")))
+				.forEach(r -> expected.add(r.getId()));
+
+		Sort sort = new Sort(Direction.DESC, "startTime");
+		int pageSize = 2;
+		List<Integer> ids = new ArrayList<>();
+		RecordPage page = null;
+		do {
+			int pageNumber = null == page ? 0 : page.getNumber() + 1;
+			PageCursor cursor = null == page ? null : PageCursor.parse(page.getNext().toString());
+			page = jobRecordService.getRecords(site, null, null, null, null, null, null,
+					new PageRequest(pageNumber, pageSize, sort), cursor);
+			page.forEach(r -> ids.add(r.getId()));
+			Assert.assertEquals(expected.size(), page.getTotalElements());
+			Assert.assertEquals(page.hasNext(), null != page.getNext());
+		} while (page.hasNext());
+		Assert.assertEquals(expected, ids);
+
+		// skipping pages without a cursor
+		int last = (expected.size() - 1) / pageSize;
+		page = jobRecordService.getRecords(site, null, null, null, null, null, null,
+				new PageRequest(last, pageSize, sort), null);
+		Assert.assertEquals(expected.subList(last * pageSize, expected.size()),
+				page.getContent().stream().map(JobRecord::getId).collect(Collectors.toList()));
+
+		// a cursor for other filters is ignored
+		PageCursor first = jobRecordService.getRecords(site, null, null, null, null, null, null,
+				new PageRequest(0, pageSize, sort), null).getNext();
+		page = jobRecordService.getRecords(site, null, "paged", null, null, null, null,
+				new PageRequest(1, pageSize, sort), first);
+		Assert.assertEquals(jobRecordService.getRecords(site, null, "paged", null, null, null, null,
+				new PageRequest(1, pageSize, sort)).getContent(), page.getContent());
+
+		Page<JobRecord> byDuration = jobRecordService.getRecords(site, null, "paged", null, null,
+				ExecutionResult.SUCCESS.name(), null, new PageRequest(1, pageSize, new Sort("duration")));
+		Assert.assertEquals(5, byDuration.getTotalElements());
+		Assert.assertEquals(2, byDuration.getNumberOfElements());
+		Assert.assertEquals(ExecutionResult.SUCCESS, byDuration.getContent().get(0).getResult());
+	}
+
+	@Test
+	public void testRecordIndex() {
+		List<IndexInfo> indexes = recordIndexService.getIndexes();
+		if (!recordIndexService.hasIndex()) {
+			IndexInfo missing = indexes.get(indexes.size() - 1);
+			Assert.assertFalse(missing.isPresent());
+			Assert.assertTrue(missing.isComposite());
+			Assert.assertTrue(recordIndexService.createIndex());
+		}
+		Assert.assertTrue(recordIndexService.hasIndex());
+		indexes = recordIndexService.getIndexes();
+		Assert.assertTrue(indexes.stream().allMatch(IndexInfo::isPresent));
+		IndexInfo index = indexes.stream().filter(IndexInfo::isComposite).findFirst().get();
+		Assert.assertEquals("site, application, job_name, result, start_time", index.getColumns());
+		Assert.assertEquals(Long.valueOf(recordRepo.count()), index.getEstimatedRows());
+	}
+
+	@Test
+	public void testCounters() {
+		Date now = new Date();
+		Date twoDaysAgo = DateUtils.addDays(now, -2);
+		saveRecord("counted", ExecutionResult.SUCCESS, twoDaysAgo);
+		saveRecord("counted", ExecutionResult.FAIL, DateUtils.addDays(now, -1));
+		saveRecord("counted", ExecutionResult.SUCCESS, now);
+
+		JobCounterService jobCounterService = startCounters(true, Clock.systemUTC());
+		Assert.assertNull(jobCounterService.getCounts(site.getName(), application.getName(), "counted", twoDaysAgo, now));
+		Assert.assertTrue(jobCounterService.maintain(site.getName(), null) > 0);
+		// incrementing started today, after the end of the rebuild
+		Assert.assertNull(jobCounterService.getCounts(site.getName(), application.getName(), "counted", twoDaysAgo, now));
+
+		// as if the counters had been enabled three days ago
+		startCounters(false, Clock.systemUTC());
+		startCounters(true, Clock.offset(Clock.systemUTC(), Duration.ofDays(-3)));
+
+		try {
+			int[] counts = jobCounterService.getCounts(site.getName(), application.getName(), "counted", twoDaysAgo,
+					now);
+			Assert.assertArrayEquals(new int[] { 2, 1 }, counts);
+			counts = jobCounterService.getCounts(site.getName(), application.getName(), "counted",
+					DateUtils.addMinutes(twoDaysAgo, 1), now);
+			Assert.assertArrayEquals(new int[] { 1, 1 }, counts);
+		} finally {
+			startCounters(false, Clock.systemUTC());
+		}
+	}
+
+	private JobCounterService startCounters(boolean enabled, Clock clock) {
+		JobCounterService jobCounterService = new JobCounterService(entityManagerFactory, enabled, site.getName(),
+				clock);
+		jobCounterService.initialize();
+		return jobCounterService;
+	}
+
+	private void saveRecord(String jobName, ExecutionResult result, Date startTime) {
+		JobExecutionRecord record = new JobExecutionRecord();
+		record.setSite(site.getName());
+		record.setApplication(application.getName());
+		record.setJobName(jobName);
+		record.setResult(result.name());
+		record.setStartTime(startTime);
+		record.setEndTime(startTime);
+		record.setRunOnce(false);
+		recordRepo.save(record);
+	}
+
 	public static JobResult createJobResult(JobListener listener, ScheduledJobResult result,
 			JobExecutionContext jobContext, Site site, Application application, String jobName) {
 		JobResult jobResult = new JobResult(result, application.getName(), site.getName(), jobName);
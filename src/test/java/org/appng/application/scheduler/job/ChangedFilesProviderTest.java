@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.appng.api.model.Properties;
+import org.appng.api.model.Site;
+import org.appng.api.search.Document;
+import org.appng.api.search.DocumentEvent;
+import org.appng.api.search.DocumentProducer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class ChangedFilesProviderTest {
+
+	private static final String TEMPLATE = "<html><appNG:searchable index=\"true\" field=\"contents\">%s</appNG:searchable></html>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testChanges() throws Exception {
+		File root = folder.getRoot();
+		File de = new File(root, "www/de");
+		de.mkdirs();
+		File a = write(new File(de, "a.jsp"), String.format(TEMPLATE, "A"));
+		File b = write(new File(de, "b.jsp"), "b");
+		File d = write(new File(de, "d.jsp"), "d");
+		write(new File(de, "e.txt"), "ignored");
+
+		ChangedFilesProvider provider = new ChangedFilesProvider(getSite(root), "jsp");
+
+		File manifestFile = IndexManifest.getFile(new File(root, "index"));
+		provider.scan(manifestFile, 42).write();
+		IndexManifest manifest = IndexManifest.read(manifestFile);
+		Assert.assertEquals(42, manifest.getFullRebuild());
+		Assert.assertEquals(provider.getFingerprint(), manifest.getFingerprint());
+		Assert.assertEquals(Arrays.asList("/de/a.jsp", "/de/b.jsp", "/de/d.jsp"),
+				Arrays.asList(manifest.getEntries().keySet().toArray()));
+
+		write(a, String.format(TEMPLATE, "AA"));
+		b.setLastModified(b.lastModified() - 5000);
+		d.delete();
+		write(new File(de, "c.jsp"), "c");
+
+		Map<String, DocumentEvent> events = new TreeMap<>();
+		for (DocumentProducer producer : provider.getDocumentProducers(manifest)) {
+			DocumentEvent event;
+			while (null != (event = producer.get(10))) {
+				events.put(event.getDocument().getPath(), event);
+			}
+		}
+		Assert.assertEquals(3, provider.getChanges());
+		Assert.assertEquals(Arrays.asList("/de/a.jsp", "/de/c.jsp", "/de/d.jsp"),
+				Arrays.asList(events.keySet().toArray()));
+		Assert.assertEquals(Document.UPDATE, events.get("/de/a.jsp").getEvent());
+		Assert.assertEquals("AA", events.get("/de/a.jsp").getDocument().getContent().trim());
+		Assert.assertEquals(Document.CREATE, events.get("/de/c.jsp").getEvent());
+		Assert.assertEquals(Document.DELETE, events.get("/de/d.jsp").getEvent());
+		Assert.assertEquals("jsp", events.get("/de/d.jsp").getDocument().getType());
+		Assert.assertEquals(Arrays.asList("/de/a.jsp", "/de/b.jsp", "/de/c.jsp"),
+				Arrays.asList(manifest.getEntries().keySet().toArray()));
+		Assert.assertEquals(b.lastModified(), manifest.get("/de/b.jsp").getLastModified());
+	}
+
+	@Test
+	public void testTimeBudgetExceeded() throws Exception {
+		File root = folder.getRoot();
+		File de = new File(root, "www/de");
+		de.mkdirs();
+		File a = write(new File(de, "a.jsp"), "a");
+		File b = write(new File(de, "b.jsp"), "b");
+		Site site = getSite(root);
+		File manifestFile = IndexManifest.getFile(new File(root, "index"));
+		IndexManifest manifest = new ChangedFilesProvider(site, "jsp").scan(manifestFile, 42);
+		IndexManifest.Entry previous = manifest.get("/de/a.jsp");
+
+		write(a, "aa");
+		b.delete();
+		write(new File(de, "c.jsp"), "c");
+
+		ChangedFilesProvider provider = new ChangedFilesProvider(site, "jsp", new IndexThrottle(0, 0, 1));
+		List<DocumentEvent> events = new ArrayList<>();
+		for (DocumentProducer producer : provider.getDocumentProducers(manifest)) {
+			DocumentEvent event;
+			while (null != (event = producer.get(10))) {
+				events.add(event);
+			}
+		}
+		// removed files are deleted anyway, modified and new files are left for the next run
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(Document.DELETE, events.get(0).getEvent());
+		Assert.assertEquals(1, provider.getChanges());
+		Assert.assertEquals(2, provider.getRemaining());
+		Assert.assertEquals(Arrays.asList("/de/a.jsp"), Arrays.asList(manifest.getEntries().keySet().toArray()));
+		Assert.assertSame(previous, manifest.get("/de/a.jsp"));
+	}
+
+	private Site getSite(File root) {
+		Site site = Mockito.mock(Site.class);
+		Properties properties = Mockito.mock(Properties.class);
+		Mockito.when(site.getProperties()).thenReturn(properties);
+		Mockito.when(properties.getString("siteRootDir")).thenReturn(root.getAbsolutePath());
+		Mockito.when(properties.getString("wwwDir")).thenReturn("/www");
+		Mockito.when(properties.getString("indexConfig"))
+				.thenReturn("/de;de;org.apache.lucene.analysis.standard.StandardAnalyzer");
+		Mockito.when(properties.getString("tagPrefix")).thenReturn("appNG");
+		Mockito.when(properties.getInteger("indexTimeout", 5000)).thenReturn(1000);
+		Mockito.when(properties.getInteger("indexFileSystemQueueSize", 1000)).thenReturn(100);
+		Mockito.when(properties.getList("indexFileTypes", ",")).thenReturn(Arrays.asList("jsp"));
+		return site;
+	}
+
+	private File write(File file, String content) throws IOException {
+		long lastModified = file.exists() ? file.lastModified() : 0;
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		if (file.lastModified() == lastModified) {
+			file.setLastModified(lastModified + 1000);
+		}
+		return file;
+	}
+}
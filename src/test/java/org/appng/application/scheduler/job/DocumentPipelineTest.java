@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.appng.api.search.Consumer;
+import org.appng.api.search.Document;
+import org.appng.api.search.DocumentEvent;
+import org.appng.api.search.DocumentProducer;
+import org.appng.search.indexer.DocumentIndexer;
+import org.appng.search.indexer.SimpleDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DocumentPipelineTest {
+
+	@Test
+	public void testIndex() throws Exception {
+		Consumer<DocumentEvent, DocumentProducer> indexer = new Consumer<DocumentEvent, DocumentProducer>(10) {
+		};
+		List<Integer> items = IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toList());
+		List<Integer> indexed = new ArrayList<>();
+		AtomicBoolean interrupted = new AtomicBoolean();
+		DocumentPipeline pipeline = new DocumentPipeline(indexer, 4, 100, 200, IndexThrottle.NONE);
+		try {
+			pipeline.clearIndex();
+			int count = pipeline.index("test", StandardAnalyzer.class, items, i -> 0, i -> {
+				if (i == 5) {
+					sleep(1000);
+					interrupted.set(Thread.currentThread().isInterrupted());
+				}
+				if (i == 7) {
+					throw new IllegalStateException("failed");
+				}
+				SimpleDocument document = new SimpleDocument();
+				document.setId(String.valueOf(i));
+				return i == 9 ? null : new DocumentEvent(document, Document.CREATE);
+			}, (i, e) -> indexed.add(i));
+			Assert.assertEquals(17, count);
+		} finally {
+			pipeline.close();
+		}
+		Assert.assertEquals(17, pipeline.getDocuments());
+		Assert.assertEquals(3, pipeline.getSkipped());
+		Assert.assertEquals(1, pipeline.getTimedOut());
+		Assert.assertTrue("the worker must be interrupted", interrupted.get());
+
+		List<Integer> expected = new ArrayList<>(items);
+		expected.removeAll(Arrays.asList(5, 7, 9));
+		Assert.assertEquals(expected, indexed);
+
+		// a new producer is started after the slow document
+		DocumentProducer first = indexer.get(10);
+		Assert.assertEquals(DocumentIndexer.CLEAR_INDEX, first.get(10).getEvent());
+		Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), getIds(first));
+		DocumentProducer second = indexer.get(10);
+		Assert.assertEquals("test", second.getName());
+		Assert.assertEquals(StandardAnalyzer.class, second.getAnalyzerClass());
+		Assert.assertEquals("6", second.get(10).getDocument().getId());
+		Assert.assertNull(indexer.get(10));
+	}
+
+	private List<String> getIds(DocumentProducer producer) throws InterruptedException {
+		List<String> ids = new ArrayList<>();
+		DocumentEvent event;
+		while (null != (event = producer.get(10))) {
+			ids.add(event.getDocument().getId());
+		}
+		return ids;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
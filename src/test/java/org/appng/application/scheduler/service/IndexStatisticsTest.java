@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.FSDirectory;
+import org.appng.application.scheduler.service.IndexStatistics.Stats;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexStatisticsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStatistics() throws Exception {
+		File indexPath = folder.newFolder("index");
+		IndexStatistics indexStatistics = new IndexStatistics();
+		Assert.assertNull(indexStatistics.get(new File(folder.getRoot(), "missing")));
+		Assert.assertEquals(0, indexStatistics.get(indexPath).getNumDocs());
+
+		addDocuments(indexPath, "1", "2", "3");
+		Stats stats = indexStatistics.get(indexPath);
+		Assert.assertEquals(3, stats.getNumDocs());
+		Assert.assertTrue(stats.getFiles() > 0);
+		Assert.assertTrue(stats.getSize() > 0);
+		Assert.assertNotNull(stats.getLastModified());
+		Assert.assertSame(stats, indexStatistics.get(indexPath));
+
+		// written by another instance, e.g. the scheduler of another site
+		try (FSDirectory dir = FSDirectory.open(indexPath.toPath());
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+			writer.deleteDocuments(new Term("id", "2"));
+		}
+		Stats changed = indexStatistics.get(indexPath);
+		Assert.assertNotSame(stats, changed);
+		Assert.assertEquals(2, changed.getNumDocs());
+		Assert.assertSame(changed, indexStatistics.get(indexPath));
+	}
+
+	private void addDocuments(File indexPath, String... ids) throws IOException {
+		try (FSDirectory dir = FSDirectory.open(indexPath.toPath());
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+			for (String id : ids) {
+				Document document = new Document();
+				document.add(new StringField("id", id, Store.YES));
+				writer.addDocument(document);
+			}
+		}
+	}
+}
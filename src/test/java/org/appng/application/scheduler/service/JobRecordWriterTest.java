@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.Collection;
+
+import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.application.scheduler.service.JobRecordWriter.Mode;
+import org.appng.core.domain.JobExecutionRecord;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class JobRecordWriterTest {
+
+	@Test
+	public void testSync() {
+		JobRecordService service = Mockito.mock(JobRecordService.class);
+		JobRecordWriter writer = new JobRecordWriter(service, Mode.SYNC, 10, 10, 1000);
+		writer.write(getRecord(ExecutionResult.SUCCESS));
+		Mockito.verify(service).saveRecords(Mockito.anyCollectionOf(JobExecutionRecord.class));
+		Assert.assertEquals(0, writer.getQueueSize());
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testBatchedOnStop() {
+		JobRecordService service = Mockito.mock(JobRecordService.class);
+		JobRecordWriter writer = new JobRecordWriter(service, Mode.BLOCK, 10, 5, 60000);
+		for (int i = 0; i < 3; i++) {
+			writer.write(getRecord(ExecutionResult.SUCCESS));
+		}
+		writer.stop();
+		ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+		Mockito.verify(service, Mockito.atLeastOnce()).saveRecords(captor.capture());
+		Assert.assertEquals(3, captor.getAllValues().stream().mapToInt(Collection::size).sum());
+		Assert.assertEquals(0, writer.getQueueSize());
+
+		writer.write(getRecord(ExecutionResult.SUCCESS));
+		Mockito.verify(service, Mockito.atLeast(2)).saveRecords(Mockito.anyCollectionOf(JobExecutionRecord.class));
+	}
+
+	@Test
+	public void testDropSuccess() throws InterruptedException {
+		JobRecordService service = Mockito.mock(JobRecordService.class);
+		Mockito.doAnswer(i -> {
+			Thread.sleep(500);
+			return null;
+		}).when(service).saveRecords(Mockito.anyCollectionOf(JobExecutionRecord.class));
+		JobRecordWriter writer = new JobRecordWriter(service, Mode.DROP_SUCCESS, 1, 1, 10);
+		for (int i = 0; i < 5; i++) {
+			writer.write(getRecord(ExecutionResult.SUCCESS));
+		}
+		Assert.assertTrue(writer.getDropped() > 0);
+		writer.stop();
+	}
+
+	private JobExecutionRecord getRecord(ExecutionResult result) {
+		JobExecutionRecord record = new JobExecutionRecord();
+		record.setJobName("job");
+		record.setResult(result.name());
+		return record;
+	}
+
+}
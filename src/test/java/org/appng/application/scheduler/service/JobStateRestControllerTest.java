@@ -4,30 +4,43 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 
 import org.appng.api.ScheduledJobResult;
 import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.api.model.Application;
+import org.appng.api.model.Site;
 import org.appng.api.model.Site.SiteState;
 import org.appng.api.support.environment.DefaultEnvironment;
 import org.appng.application.scheduler.SchedulingProperties;
 import org.appng.application.scheduler.business.SchedulingController;
 import org.appng.application.scheduler.business.TestJobRecordings;
+import org.appng.application.scheduler.model.JobResult;
 import org.appng.application.scheduler.quartz.RecordingJobListener;
 import org.appng.core.domain.JobExecutionRecord;
 import org.appng.core.repository.JobExecutionRecordRepository;
+import org.appng.scheduler.openapi.model.SiteStatus;
 import org.appng.testsupport.TestBase;
 import org.appng.testsupport.config.RestTestConfig;
 import org.appng.testsupport.validation.WritingJsonValidator;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.http.HttpHeaders;
@@ -35,11 +48,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 @ContextConfiguration(inheritLocations = false, locations = { TestBase.BEANS_PATH, TestBase.TESTCONTEXT_CORE,
 		TestBase.TESTCONTEXT_JPA, "classpath:beans-test-core.xml" }, initializers = JobStateRestControllerTest.class)
@@ -48,6 +65,7 @@ public class JobStateRestControllerTest extends TestBase {
 	private @Mock JobExecutionContext jobContext;
 	private @Autowired RecordingJobListener listener;
 	private @Autowired SchedulingController schedulerController;
+	private @Autowired JobRecordService jobRecordService;
 	private MockMvc mvc;
 
 	public JobStateRestControllerTest() {
@@ -127,4 +145,106 @@ public class JobStateRestControllerTest extends TestBase {
 				"2021-09-23T09:01:15.476+02:00");
 		WritingJsonValidator.validate(json, controlFile);
 	}
+
+	@Test
+	public void testRecordsWithStacktraces() throws Exception {
+		Date now = new Date();
+		JobResult jobResult = new JobResult(null, application.getName(), site.getName(),
+				application.getName() + "_indexJob");
+		jobRecordService.recordJob(jobResult, now, now, 0, new JobDataMap(), new JobExecutionException("failed"), "t");
+
+		MockMvc recordsMvc = RestTestConfig.buildMvc(context, RecordsRestController.class);
+		for (String path : Arrays.asList("/jobRecords?result=FAIL", "/jobRecords?result=FAIL&stream=true",
+				"/jobState/appng-scheduler/indexJob?records=true")) {
+			MockMvc target = path.startsWith("/jobState") ? mvc : recordsMvc;
+			String content = target.perform(get(path).header(HttpHeaders.AUTHORIZATION, "Bearer TheBearer"))
+					.andExpect(status().is(HttpStatus.OK.value())).andReturn().getResponse().getContentAsString();
+			Assert.assertTrue(path, content.contains("org.quartz.JobExecutionException: failed"));
+			Assert.assertFalse(path, content.contains(StacktraceService.REFERENCE_PREFIX));
+		}
+	}
+
+	@Test
+	public void testSitesBlocked() throws Exception {
+		JobStateRestController controller = new JobStateRestController(null, null, null, null, null, null);
+		ReflectionTestUtils.setField(controller, "siteThreads", 2);
+		ReflectionTestUtils.setField(controller, "siteTimeout", 200L);
+		ReflectionTestUtils.setField(controller, "requestTimeout", 500L);
+		Map<Site, Application> sites = new LinkedHashMap<>();
+		for (int i = 0; i < 6; i++) {
+			Site blocked = Mockito.mock(Site.class);
+			Mockito.when(blocked.getName()).thenReturn("site" + i);
+			sites.put(blocked, application);
+		}
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			long start = System.currentTimeMillis();
+			List<SiteStatus> statuses = controller.forAllSites(sites, (s, a, items) -> {
+				// ignores being cancelled, like a worker stuck in I/O
+				while (release.getCount() > 0) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						// keep blocking
+					}
+				}
+			}, new ArrayList<>());
+			long duration = System.currentTimeMillis() - start;
+			Assert.assertTrue("took " + duration + "ms", duration < 1000);
+			Assert.assertEquals(6, statuses.size());
+			for (SiteStatus status : statuses) {
+				Assert.assertTrue(status.getSite(), status.getPartial());
+			}
+			Assert.assertTrue(statuses.get(0).getMessage().startsWith("timed out after"));
+			Assert.assertEquals("no thread available within 500ms", statuses.get(5).getMessage());
+		} finally {
+			release.countDown();
+			controller.shutdown();
+		}
+	}
+
+	@Test
+	public void testStates() throws Exception {
+		MvcResult result = mvc.perform(get("/jobState/states").contentType(MediaType.APPLICATION_JSON)
+				.characterEncoding("utf-8")).andExpect(status().is(HttpStatus.OK.value())).andReturn();
+		ObjectMapper objectMapper = new ObjectMapper();
+		JsonNode states = objectMapper.readTree(result.getResponse().getContentAsString()).get("states");
+		Assert.assertEquals(3, states.size());
+		for (JsonNode state : states) {
+			String job = state.get("job").asText();
+			Assert.assertEquals("appng", state.get("site").asText());
+			Assert.assertEquals("appng-scheduler", state.get("application").asText());
+			Assert.assertNull(state.get("jobData"));
+			MvcResult single = mvc.perform(get("/jobState/appng-scheduler/" + job)
+					.contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8")).andReturn();
+			JsonNode expected = objectMapper.readTree(single.getResponse().getContentAsString());
+			for (String field : Arrays.asList("totalRecords", "totalSuccess", "totalFailed", "state", "stateName")) {
+				Assert.assertEquals(job + ": " + field, expected.get(field), state.get(field));
+			}
+		}
+	}
+
+	@Test
+	public void testStatesNotModified() throws Exception {
+		MvcResult result = mvc.perform(get("/jobState/states")).andExpect(status().is(HttpStatus.OK.value()))
+				.andReturn();
+		String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+		Assert.assertNotNull(etag);
+		Assert.assertNotNull(result.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+		mvc.perform(get("/jobState/states").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.NOT_MODIFIED.value()));
+		// the ETag is only valid for the same resource
+		mvc.perform(get("/jobState/appng-scheduler/indexJob").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.OK.value()));
+		mvc.perform(get("/jobState/states?thresholds=true").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.OK.value()));
+		// other sites don't change the versions of this site
+		MvcResult all = mvc.perform(get("/jobState/states?all=true").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.OK.value())).andReturn();
+		Assert.assertNull(all.getResponse().getHeader(HttpHeaders.ETAG));
+
+		SiteVersions.changed("appng");
+		mvc.perform(get("/jobState/states").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.OK.value()));
+	}
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.appng.api.model.Properties;
+import org.appng.api.model.Site;
+import org.appng.application.scheduler.model.JobRecord;
+import org.appng.core.domain.JobExecutionRecord;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class RecordArchiveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testArchive() throws Exception {
+		Site site = getSite(folder.getRoot());
+		RecordArchive archive = new RecordArchive("archive", 365);
+		Assert.assertTrue(archive.isEnabled());
+		Assert.assertNull(archive.getLatest(site));
+
+		Date now = DateUtils.truncate(new Date(), Calendar.SECOND);
+		Date earlier = DateUtils.addMonths(now, -2);
+		archive.append(site, Arrays.asList(record(1, earlier, "FAIL"), record(2, now, "SUCCESS")));
+		archive.append(site, Arrays.asList(record(3, DateUtils.addMinutes(now, 1), "SUCCESS")));
+		// archived again, since deleting failed
+		archive.append(site, Arrays.asList(record(3, DateUtils.addMinutes(now, 1), "SUCCESS")));
+
+		File[] segments = new File(folder.getRoot(), "archive").listFiles(f -> f.getName().endsWith(".gz"));
+		Assert.assertEquals(2, segments.length);
+		Assert.assertEquals(DateUtils.addMinutes(now, 1), archive.getLatest(site));
+		Assert.assertTrue(archive.reaches(site, now));
+		Assert.assertFalse(archive.reaches(site, DateUtils.addMinutes(now, 2)));
+		Assert.assertTrue(archive.reaches(site, null));
+
+		List<JobRecord> records = archive.getRecords(site, null, null, r -> true);
+		Assert.assertEquals(Arrays.asList(3, 2, 1), ids(records));
+		Assert.assertEquals("custom data 1", records.get(2).getCustomData());
+		Assert.assertEquals(Arrays.asList(3, 2), ids(archive.getRecords(site, now, null, r -> true)));
+		Assert.assertEquals(Arrays.asList(1), ids(archive.getRecords(site, null, null,
+				r -> "FAIL".equals(r.getResult().name()))));
+		Assert.assertEquals(1, archive.estimate(site, null, DateUtils.addDays(earlier, 1)));
+		Assert.assertEquals(3, archive.estimate(site, now, null));
+
+		// the block of the latest record is read, since it overlaps with the record archived again
+		Assert.assertEquals(Arrays.asList(2), ids(archive.getRecords(site, null, null, null, 1, 1)));
+		Assert.assertEquals(Arrays.asList(1), ids(archive.getRecords(site, null, null, null, 2, 5)));
+		Assert.assertEquals(Arrays.asList(), ids(archive.getRecords(site, null, null, null, 3, 5)));
+
+		// the earlier segment ends before the lifetime of the new archive
+		Assert.assertEquals(1, new RecordArchive("archive", 1).cleanUp(site));
+		Assert.assertEquals(Arrays.asList(3, 2), ids(archive.getRecords(site, null, null, r -> true)));
+	}
+
+	private List<Integer> ids(List<JobRecord> records) {
+		return records.stream().map(JobRecord::getId).collect(Collectors.toList());
+	}
+
+	private JobExecutionRecord record(int id, Date start, String result) {
+		JobExecutionRecord record = new JobExecutionRecord();
+		record.setId(id);
+		record.setSite("localhost");
+		record.setApplication("appng-scheduler");
+		record.setJobName("job");
+		record.setResult(result);
+		record.setStartTime(start);
+		record.setEndTime(start);
+		record.setDuration(0);
+		record.setCustomData("custom data " + id);
+		return record;
+	}
+
+	private Site getSite(File root) {
+		Site site = Mockito.mock(Site.class);
+		Properties properties = Mockito.mock(Properties.class);
+		Mockito.when(site.getName()).thenReturn("localhost");
+		Mockito.when(site.getProperties()).thenReturn(properties);
+		Mockito.when(properties.getString("siteRootDir")).thenReturn(root.getAbsolutePath());
+		return site;
+	}
+}
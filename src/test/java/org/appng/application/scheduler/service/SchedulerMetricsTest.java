@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import java.util.Date;
+
+import org.appng.api.ScheduledJobResult;
+import org.appng.api.ScheduledJobResult.ExecutionResult;
+import org.appng.application.scheduler.model.JobResult;
+import org.appng.application.scheduler.service.JobRecordWriter.Mode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerMetaData;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+public class SchedulerMetricsTest {
+
+	@Test
+	public void testWrite() throws Exception {
+		Scheduler scheduler = Mockito.mock(Scheduler.class);
+		SchedulerMetaData metaData = Mockito.mock(SchedulerMetaData.class);
+		Mockito.when(metaData.getThreadPoolSize()).thenReturn(3);
+		Mockito.when(scheduler.getMetaData()).thenReturn(metaData);
+		JobRecordWriter writer = new JobRecordWriter(Mockito.mock(JobRecordService.class), Mode.SYNC, 10, 10, 1000);
+		SchedulerMetrics metrics = new SchedulerMetrics(writer, scheduler);
+
+		Trigger trigger = TriggerBuilder.newTrigger().forJob("app_job", "site").build();
+		JobExecutionContext context = Mockito.mock(JobExecutionContext.class);
+		Mockito.when(context.getTrigger()).thenReturn(trigger);
+		Mockito.when(context.getScheduledFireTime()).thenReturn(new Date(10000));
+		Mockito.when(context.getFireTime()).thenReturn(new Date(10200));
+		Mockito.when(context.getJobRunTime()).thenReturn(2000L);
+
+		metrics.jobStarted(context);
+		StringBuilder running = new StringBuilder();
+		metrics.write(running);
+		Assert.assertTrue(running.toString().contains("scheduler_thread_pool_threads{state=\"busy\"} 1\n"));
+		Assert.assertTrue(running.toString().contains("scheduler_thread_pool_threads{state=\"idle\"} 2\n"));
+
+		metrics.jobExecuted(context, null);
+		metrics.jobStarted(context);
+		Mockito.when(context.getResult()).thenReturn(new JobResult(new ScheduledJobResult(), "app", "site", "job"));
+		metrics.jobExecuted(context, new JobExecutionException());
+		metrics.triggerMisfired(trigger);
+
+		StringBuilder out = new StringBuilder();
+		metrics.write(out);
+		String text = out.toString();
+		Assert.assertTrue(text.contains("# TYPE scheduler_job_duration_seconds histogram\n"));
+		Assert.assertTrue(text.contains("scheduler_job_executions_total{job=\"app_job\",result=\"SUCCESS\"} 1\n"));
+		Assert.assertTrue(text.contains("scheduler_job_executions_total{job=\"app_job\",result=\"FAIL\"} 1\n"));
+		Assert.assertTrue(text.contains("scheduler_job_duration_seconds_bucket{job=\"app_job\",le=\"1.0\"} 0\n"));
+		Assert.assertTrue(text.contains("scheduler_job_duration_seconds_bucket{job=\"app_job\",le=\"5.0\"} 2\n"));
+		Assert.assertTrue(text.contains("scheduler_job_duration_seconds_bucket{job=\"app_job\",le=\"+Inf\"} 2\n"));
+		Assert.assertTrue(text.contains("scheduler_job_duration_seconds_sum{job=\"app_job\"} 4\n"));
+		Assert.assertTrue(text.contains("scheduler_job_fire_lateness_seconds_bucket{job=\"app_job\",le=\"0.1\"} 0\n"));
+		Assert.assertTrue(text.contains("scheduler_job_fire_lateness_seconds_bucket{job=\"app_job\",le=\"0.5\"} 2\n"));
+		Assert.assertTrue(text.contains("scheduler_trigger_misfires_total{job=\"app_job\"} 1\n"));
+		Assert.assertTrue(text.contains("scheduler_thread_pool_threads{state=\"busy\"} 0\n"));
+		Assert.assertTrue(text.contains("scheduler_job_record_queue_size 0\n"));
+		Assert.assertEquals(ExecutionResult.values().length, text.split("scheduler_job_executions_total\\{").length - 1);
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.appng.application.scheduler.service.StacktraceService.Normalization;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+
+public class StacktraceServiceTest {
+
+	private static final String TRACE = "java.lang.IllegalStateException: record %s not found\n"
+			+ "\tat org.appng.Foo.bar(Foo.java:%s)\n"
+			+ "\tat java.lang.reflect.Method.invoke(Native Method)\n"
+			+ "Caused by: java.io.IOException: read timed out\nafter %sms\n"
+			+ "\tat org.appng.Foo.read(Foo.java:12)\n"
+			+ "\t... 2 more\n";
+
+	@Test
+	public void testNormalize() {
+		String trace = String.format(TRACE, 1, 42, 100);
+		Assert.assertEquals(trace, getService(Normalization.EXACT).normalize(trace));
+		Assert.assertEquals("java.lang.IllegalStateException: record 1 not found\n"
+				+ "\tat org.appng.Foo.bar(Foo.java)\n"
+				+ "\tat java.lang.reflect.Method.invoke(Native Method)\n"
+				+ "Caused by: java.io.IOException: read timed out\nafter 100ms\n"
+				+ "\tat org.appng.Foo.read(Foo.java)\n"
+				+ "\t... 2 more\n", getService(Normalization.LINES).normalize(trace));
+		Assert.assertEquals("java.lang.IllegalStateException\n"
+				+ "\tat org.appng.Foo.bar(Foo.java)\n"
+				+ "\tat java.lang.reflect.Method.invoke(Native Method)\n"
+				+ "Caused by: java.io.IOException\n"
+				+ "\tat org.appng.Foo.read(Foo.java)\n"
+				+ "\t... 2 more\n", getService(Normalization.MESSAGES).normalize(trace));
+	}
+
+	@Test
+	public void testSignature() {
+		String trace = String.format(TRACE, 1, 42, 100);
+		String otherLine = String.format(TRACE, 1, 43, 100);
+		String otherMessage = String.format(TRACE, 2, 43, 200);
+		StacktraceService exact = getService(Normalization.EXACT);
+		Assert.assertNotEquals(exact.getSignature(trace), exact.getSignature(otherLine));
+		StacktraceService lines = getService(Normalization.LINES);
+		Assert.assertEquals(lines.getSignature(trace), lines.getSignature(otherLine));
+		Assert.assertNotEquals(lines.getSignature(trace), lines.getSignature(otherMessage));
+		StacktraceService messages = getService(Normalization.MESSAGES);
+		Assert.assertEquals(messages.getSignature(trace), messages.getSignature(otherMessage));
+		Assert.assertEquals(32, messages.getSignature(trace).length());
+	}
+
+	private StacktraceService getService(Normalization normalization) {
+		EntityManagerFactory entityManagerFactory = Mockito.mock(EntityManagerFactory.class,
+				Mockito.withSettings().extraInterfaces(EntityManagerFactoryInfo.class));
+		Mockito.when(((EntityManagerFactoryInfo) entityManagerFactory).getDataSource())
+				.thenReturn(Mockito.mock(DataSource.class));
+		return new StacktraceService(entityManagerFactory, normalization);
+	}
+}
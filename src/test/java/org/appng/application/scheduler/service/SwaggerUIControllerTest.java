@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.appng.application.scheduler.service;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.appng.api.SiteProperties;
+import org.appng.api.model.Application;
+import org.appng.api.model.Properties;
+import org.appng.api.model.Resource;
+import org.appng.api.model.ResourceType;
+import org.appng.api.model.Resources;
+import org.appng.api.model.Site;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class SwaggerUIControllerTest {
+
+	@Test
+	public void testSwaggerUI() throws Exception {
+		Site site = Mockito.mock(Site.class);
+		Properties properties = Mockito.mock(Properties.class);
+		Mockito.when(site.getName()).thenReturn("appng");
+		Mockito.when(site.getProperties()).thenReturn(properties);
+		Mockito.when(properties.getString(SiteProperties.SERVICE_PATH)).thenReturn("/service");
+		Application application = Mockito.mock(Application.class);
+		Mockito.when(application.getName()).thenReturn("appng-scheduler");
+		Resources resources = Mockito.mock(Resources.class);
+		Resource resource = Mockito.mock(Resource.class);
+		Mockito.when(resource.getName()).thenReturn("swagger-ui/index.html");
+		Mockito.when(resource.getBytes())
+				.thenReturn(String.join("", Collections.nCopies(100, "<p>swagger</p>")).getBytes());
+		Mockito.when(resources.getResources(ResourceType.RESOURCE)).thenReturn(Collections.singleton(resource));
+		Mockito.when(resources.getResource(ResourceType.RESOURCE, "swagger-ui/index.html")).thenReturn(resource);
+		Mockito.when(application.getResources()).thenReturn(resources);
+
+		SwaggerUIController controller = new SwaggerUIController(site, application, 3600);
+		controller.prepare();
+		Mockito.verify(resource).getBytes();
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+		MvcResult plain = mvc.perform(get("/swagger-ui/index.html")).andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600"))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING)).andReturn();
+		String etag = plain.getResponse().getHeader(HttpHeaders.ETAG);
+		Assert.assertEquals(1400, plain.getResponse().getContentAsByteArray().length);
+
+		MvcResult gzipped = mvc.perform(get("/swagger-ui/index.html").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+				.andExpect(status().isOk()).andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andReturn();
+		Assert.assertNotEquals(etag, gzipped.getResponse().getHeader(HttpHeaders.ETAG));
+		byte[] unzipped = IOUtils.toByteArray(
+				new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray())));
+		Assert.assertArrayEquals(plain.getResponse().getContentAsByteArray(), unzipped);
+
+		mvc.perform(get("/swagger-ui/index.html").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().is(HttpStatus.NOT_MODIFIED.value()));
+		mvc.perform(get("/swagger-ui/missing.js")).andExpect(status().isNotFound());
+
+		MvcResult spec = mvc.perform(get("/swagger-ui/scheduler-api.yaml")).andExpect(status().isOk()).andReturn();
+		String yaml = new String(spec.getResponse().getContentAsByteArray(), StandardCharsets.UTF_8);
+		Assert.assertTrue(yaml.contains("\"/service/appng/appng-scheduler/rest/jobState"));
+		// prepared once, delivered many times
+		Mockito.verify(resource).getBytes();
+	}
+
+	@Test
+	public void testAcceptsGzip() {
+		Assert.assertTrue(SwaggerUIController.acceptsGzip("gzip, deflate, br"));
+		Assert.assertTrue(SwaggerUIController.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+		Assert.assertTrue(SwaggerUIController.acceptsGzip("*"));
+		Assert.assertFalse(SwaggerUIController.acceptsGzip("gzip;q=0"));
+		Assert.assertFalse(SwaggerUIController.acceptsGzip("deflate"));
+		Assert.assertFalse(SwaggerUIController.acceptsGzip(null));
+	}
+}